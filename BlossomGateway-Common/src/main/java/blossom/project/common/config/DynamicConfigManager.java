@@ -5,6 +5,7 @@ import org.apache.commons.collections.CollectionUtils;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -19,12 +20,21 @@ public class DynamicConfigManager {
     //	服务的实例集合：uniqueId与一对服务实例对应
     private ConcurrentHashMap<String /* uniqueId */ , Set<ServiceInstance>>  serviceInstanceMap = new ConcurrentHashMap<>();
 
+    //	服务实例快照：服务实例变更时重新构建，负载均衡只读取快照
+    private ConcurrentHashMap<String /* uniqueId */ , ServiceInstanceSnapshot>  serviceInstanceSnapshotMap = new ConcurrentHashMap<>();
+
     //	规则集合
-    private ConcurrentHashMap<String /* ruleId */ , Rule>  ruleMap = new ConcurrentHashMap<>();
+    private volatile ConcurrentHashMap<String /* ruleId */ , Rule>  ruleMap = new ConcurrentHashMap<>();
 
     //路径以及规则集合
-    private ConcurrentHashMap<String /* 路径 */ , Rule>  pathRuleMap = new ConcurrentHashMap<>();
-    private ConcurrentHashMap<String /* 服务名 */ , List<Rule>>  serviceRuleMap = new ConcurrentHashMap<>();
+    private volatile ConcurrentHashMap<String /* 路径 */ , Rule>  pathRuleMap = new ConcurrentHashMap<>();
+    private volatile ConcurrentHashMap<String /* 服务名 */ , List<Rule>>  serviceRuleMap = new ConcurrentHashMap<>();
+
+    //服务的路由树 规则变更时整体替换
+    private volatile Map<String /* 服务名 */ , RouteTree>  routeTreeMap = Collections.emptyMap();
+
+    //规则版本号 规则每变更一次加一 依赖规则的缓存以此判断是否失效
+    private final AtomicLong ruleGeneration = new AtomicLong();
 
     private DynamicConfigManager() {
     }
@@ -80,13 +90,52 @@ public class DynamicConfigManager {
         return serviceInstances;
     }
 
-    public void addServiceInstance(String uniqueId, ServiceInstance serviceInstance) {
+    /**
+     * 获取服务实例快照
+     * @param uniqueId 唯一标识
+     * @return 服务实例快照，没有实例时返回空快照
+     */
+    public ServiceInstanceSnapshot getServiceInstanceSnapshot(String uniqueId) {
+        ServiceInstanceSnapshot snapshot = serviceInstanceSnapshotMap.get(uniqueId);
+        return snapshot == null ? ServiceInstanceSnapshot.EMPTY : snapshot;
+    }
+
+    /**
+     * 获取全部服务的当前服务实例ID
+     * @return 服务实例ID集合
+     */
+    public Set<String> getServiceInstanceIds() {
+        Set<String> serviceInstanceIds = new HashSet<>();
+        for (ServiceInstanceSnapshot snapshot : serviceInstanceSnapshotMap.values()) {
+            for (ServiceInstance serviceInstance : snapshot.getAll()) {
+                serviceInstanceIds.add(serviceInstance.getServiceInstanceId());
+            }
+        }
+        return serviceInstanceIds;
+    }
+
+    /**
+     * 根据当前的服务实例集合重新构建快照，调用方需要持有当前对象的锁
+     * @param uniqueId 唯一标识
+     */
+    private void refreshServiceInstanceSnapshot(String uniqueId) {
+        Set<ServiceInstance> set = serviceInstanceMap.get(uniqueId);
+        if (set == null) {
+            serviceInstanceSnapshotMap.remove(uniqueId);
+        } else {
+            serviceInstanceSnapshotMap.put(uniqueId, new ServiceInstanceSnapshot(set));
+        }
+    }
+
+    public synchronized void addServiceInstance(String uniqueId, ServiceInstance serviceInstance) {
         Set<ServiceInstance> set = serviceInstanceMap.get(uniqueId);
         set.add(serviceInstance);
+        refreshServiceInstanceSnapshot(uniqueId);
     }
 
-    public void addServiceInstance(String uniqueId, Set<ServiceInstance> serviceInstanceSet) {
+    public synchronized void addServiceInstance(String uniqueId, Set<ServiceInstance> serviceInstanceSet) {
         serviceInstanceMap.put(uniqueId, serviceInstanceSet);
+        refreshServiceInstanceSnapshot(uniqueId);
     }
 
     /**
@@ -94,7 +143,7 @@ public class DynamicConfigManager {
      * @param uniqueId 服务实例唯一标识
      * @param serviceInstance 要更新的服务实例
      */
-    public void updateServiceInstance(String uniqueId, ServiceInstance serviceInstance) {
+    public synchronized void updateServiceInstance(String uniqueId, ServiceInstance serviceInstance) {
         // 获取服务实例集合
         Set<ServiceInstance> set = serviceInstanceMap.get(uniqueId);
         // 遍历服务实例集合
@@ -110,13 +159,14 @@ public class DynamicConfigManager {
         }
         // 将要更新的服务实例添加到集合中
         set.add(serviceInstance);
+        refreshServiceInstanceSnapshot(uniqueId);
     }
     /**
      * 从服务实例映射中移除指定的服务实例
      * @param uniqueId 服务实例的唯一标识
      * @param serviceInstanceId 要移除的服务实例ID
      */
-    public void removeServiceInstance(String uniqueId, String serviceInstanceId) {
+    public synchronized void removeServiceInstance(String uniqueId, String serviceInstanceId) {
         Set<ServiceInstance> set = serviceInstanceMap.get(uniqueId);
         Iterator<ServiceInstance> it = set.iterator();
         while(it.hasNext()) {
@@ -126,10 +176,12 @@ public class DynamicConfigManager {
                 break;
             }
         }
+        refreshServiceInstanceSnapshot(uniqueId);
     }
 
-    public void removeServiceInstancesByUniqueId(String uniqueId) {
+    public synchronized void removeServiceInstancesByUniqueId(String uniqueId) {
         serviceInstanceMap.remove(uniqueId);
+        refreshServiceInstanceSnapshot(uniqueId);
     }
 
 
@@ -141,6 +193,7 @@ public class DynamicConfigManager {
      */
     public void putRule(String ruleId, Rule rule) {
         ruleMap.put(ruleId, rule);
+        ruleGeneration.incrementAndGet();
     }
 
     /**
@@ -175,6 +228,9 @@ public class DynamicConfigManager {
 
             // 获取规则的路径列表
             List<String> paths = rule.getPaths();
+            if(paths == null){
+                continue;
+            }
 
             // 遍历路径列表
             for(String path :paths){
@@ -186,10 +242,18 @@ public class DynamicConfigManager {
             }
         }
 
+        // 按服务编译路由树
+        Map<String,RouteTree> newRouteTreeMap = new HashMap<>();
+        for (Map.Entry<String,List<Rule>> entry : newServiceMap.entrySet()) {
+            newRouteTreeMap.put(entry.getKey(), RouteTree.build(entry.getValue()));
+        }
+
         // 更新当前对象的规则映射、路径映射和服务映射
+        routeTreeMap = Collections.unmodifiableMap(newRouteTreeMap);
         ruleMap = newRuleMap;
         pathRuleMap = newPathMap;
         serviceRuleMap = newServiceMap;
+        ruleGeneration.incrementAndGet();
     }
 
 
@@ -199,6 +263,11 @@ public class DynamicConfigManager {
 
     public void removeRule(String ruleId) {
         ruleMap.remove(ruleId);
+        ruleGeneration.incrementAndGet();
+    }
+
+    public long getRuleGeneration() {
+        return ruleGeneration.get();
     }
 
     public ConcurrentHashMap<String, Rule> getRuleMap() {
@@ -212,4 +281,15 @@ public class DynamicConfigManager {
     public List<Rule>  getRuleByServiceId(String serviceId){
         return serviceRuleMap.get(serviceId);
     }
+
+    /**
+     * 通过服务的路由树查找请求路径对应的规则
+     * @param serviceId 服务名
+     * @param path 请求路径
+     * @return 没有匹配的规则时返回null
+     */
+    public Rule matchRule(String serviceId, String path){
+        RouteTree routeTree = routeTreeMap.get(serviceId);
+        return routeTree == null ? null : routeTree.match(path);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,249 @@
+package blossom.project.common.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 单个服务的路由树，按路径段组织，构建完成后不再修改，可以被多个线程同时读取
+ * 规则的paths支持三种路径段：
+ * 普通路径段 /user/info
+ * 路径参数 /user/{id} 或 /user/* 匹配任意一个路径段
+ * 通配符 /user/** 匹配剩余的全部路径段，只能出现在末尾
+ * 规则的prefix按路径段做最长前缀匹配，/user 可以匹配 /user 和 /user/xxx，但不匹配 /users
+ * 匹配优先级：普通路径段 > 路径参数 > 通配符 > 前缀，同一位置有多条规则时取order最小的
+ * 查找过程不做字符串切分，不产生新对象
+ */
+public final class RouteTree {
+
+    private static final String PARAM = "*";
+
+    private static final String CATCH_ALL = "**";
+
+    private final Node root;
+
+    private RouteTree(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * 编译一个服务下的全部规则
+     * @param rules 服务下的规则
+     * @return 路由树
+     */
+    public static RouteTree build(List<Rule> rules) {
+        Builder root = new Builder();
+        for (Rule rule : rules) {
+            if (rule.getPaths() != null) {
+                for (String path : rule.getPaths()) {
+                    insertPath(root, path, rule);
+                }
+            }
+            if (rule.getPrefix() != null) {
+                Builder node = root;
+                for (String segment : segments(rule.getPrefix())) {
+                    node = node.statics.computeIfAbsent(segment, k -> new Builder());
+                }
+                node.prefixRule = prefer(node.prefixRule, rule);
+            }
+        }
+        return new RouteTree(root.compile());
+    }
+
+    private static void insertPath(Builder root, String path, Rule rule) {
+        Builder node = root;
+        for (String segment : segments(path)) {
+            if (CATCH_ALL.equals(segment)) {
+                node.catchAllRule = prefer(node.catchAllRule, rule);
+                return;
+            }
+            if (PARAM.equals(segment) || (segment.startsWith("{") && segment.endsWith("}"))) {
+                if (node.param == null) {
+                    node.param = new Builder();
+                }
+                node = node.param;
+            } else {
+                node = node.statics.computeIfAbsent(segment, k -> new Builder());
+            }
+        }
+        node.pathRule = prefer(node.pathRule, rule);
+    }
+
+    /**
+     * 同一位置出现多条规则时取order较小的，order相同保留先出现的
+     */
+    private static Rule prefer(Rule current, Rule candidate) {
+        if (current == null) {
+            return candidate;
+        }
+        return order(candidate) < order(current) ? candidate : current;
+    }
+
+    private static int order(Rule rule) {
+        return rule.getOrder() == null ? 0 : rule.getOrder();
+    }
+
+    private static List<String> segments(String path) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        int length = path.length();
+        while (start < length) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                segments.add(path.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return segments;
+    }
+
+    /**
+     * 查找请求路径对应的规则
+     * @param path 请求路径，不含查询参数
+     * @return 没有匹配的规则时返回null
+     */
+    public Rule match(String path) {
+        Rule rule = matchPath(root, path, skipSlash(path, 0));
+        if (rule != null) {
+            return rule;
+        }
+        return matchPrefix(path);
+    }
+
+    private static Rule matchPath(Node node, String path, int start) {
+        int length = path.length();
+        if (start >= length) {
+            return node.pathRule != null ? node.pathRule : node.catchAllRule;
+        }
+        int end = path.indexOf('/', start);
+        if (end < 0) {
+            end = length;
+        }
+        int next = skipSlash(path, end);
+        Node child = node.staticChild(path, start, end);
+        if (child != null) {
+            Rule rule = matchPath(child, path, next);
+            if (rule != null) {
+                return rule;
+            }
+        }
+        if (node.param != null) {
+            Rule rule = matchPath(node.param, path, next);
+            if (rule != null) {
+                return rule;
+            }
+        }
+        return node.catchAllRule;
+    }
+
+    private Rule matchPrefix(String path) {
+        Node node = root;
+        Rule matched = node.prefixRule;
+        int start = skipSlash(path, 0);
+        int length = path.length();
+        while (start < length) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            node = node.staticChild(path, start, end);
+            if (node == null) {
+                break;
+            }
+            if (node.prefixRule != null) {
+                matched = node.prefixRule;
+            }
+            start = skipSlash(path, end);
+        }
+        return matched;
+    }
+
+    private static int skipSlash(String path, int index) {
+        while (index < path.length() && path.charAt(index) == '/') {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * 比较路径段和请求路径的[start, end)区间，避免截取子串
+     */
+    private static int compare(String segment, String path, int start, int end) {
+        int len1 = segment.length();
+        int len2 = end - start;
+        int limit = Math.min(len1, len2);
+        for (int i = 0; i < limit; i++) {
+            char c1 = segment.charAt(i);
+            char c2 = path.charAt(start + i);
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return len1 - len2;
+    }
+
+    /**
+     * 编译后的节点，子节点按路径段排序后二分查找
+     */
+    private static final class Node {
+        private final String[] segments;
+        private final Node[] children;
+        private final Node param;
+        private final Rule pathRule;
+        private final Rule catchAllRule;
+        private final Rule prefixRule;
+
+        private Node(String[] segments, Node[] children, Node param,
+                     Rule pathRule, Rule catchAllRule, Rule prefixRule) {
+            this.segments = segments;
+            this.children = children;
+            this.param = param;
+            this.pathRule = pathRule;
+            this.catchAllRule = catchAllRule;
+            this.prefixRule = prefixRule;
+        }
+
+        private Node staticChild(String path, int start, int end) {
+            int low = 0;
+            int high = segments.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(segments[mid], path, start, end);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return children[mid];
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 构建阶段使用的可变节点
+     */
+    private static final class Builder {
+        private final Map<String, Builder> statics = new TreeMap<>();
+        private Builder param;
+        private Rule pathRule;
+        private Rule catchAllRule;
+        private Rule prefixRule;
+
+        private Node compile() {
+            String[] segments = statics.keySet().toArray(new String[0]);
+            Node[] children = new Node[segments.length];
+            int i = 0;
+            for (Builder child : statics.values()) {
+                children[i++] = child.compile();
+            }
+            return new Node(segments, children, param == null ? null : param.compile(),
+                    pathRule, catchAllRule, prefixRule);
+        }
+    }
+}
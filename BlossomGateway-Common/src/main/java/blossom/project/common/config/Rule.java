@@ -1,13 +1,19 @@
 package blossom.project.common.config;
 
+import blossom.project.common.constant.FilterConst;
+import blossom.project.common.utils.JSONUtil;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
 
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
@@ -65,6 +71,21 @@ public class Rule implements Comparable<Rule>, Serializable {
      */
     private Set<HystrixConfig> hystrixConfigs = new HashSet<>();
 
+    /**
+     * 是否开启流式转发，开启后请求体和响应体按块转发，不在网关内聚合
+     */
+    private boolean streaming;
+
+    /**
+     * 对冲请求配置，为空时不开启，只对GET和HEAD请求生效
+     */
+    private HedgeConfig hedgeConfig;
+
+    /**
+     * 请求合并配置，为空时不开启，只对GET请求生效
+     */
+    private CoalesceConfig coalesceConfig;
+
     public Rule() {
         super();
     }
@@ -89,6 +110,28 @@ public class Rule implements Comparable<Rule>, Serializable {
          * 过滤器规则描述，{"timeOut":500,"balance":random}
          */
         private String config;
+        /**
+         * 解析后的过滤器规则，规则下发时解析一次
+         */
+        private transient Map<String, Object> configMap;
+
+        /**
+         * 解析过滤器规则
+         */
+        public void parse() {
+            this.configMap = StringUtils.isEmpty(config) ? Collections.emptyMap() :
+                    Collections.unmodifiableMap(JSONUtil.parse(config, Map.class));
+        }
+
+        /**
+         * 获取解析后的过滤器规则，规则未经过预解析时在这里解析
+         */
+        public Map<String, Object> getConfigMap() {
+            if (configMap == null) {
+                parse();
+            }
+            return configMap;
+        }
         @Override
         public boolean equals(Object o) {
             if (this == o) {
@@ -121,12 +164,128 @@ public class Rule implements Comparable<Rule>, Serializable {
          * 限流规则,是一个JSON
          */
         private String config;
+        /**
+         * 解析后的流控时间，单位秒
+         */
+        private transient int duration;
+        /**
+         * 解析后的流控时间内允许的请求次数
+         */
+        private transient int permits;
+        /**
+         * 解析后的突发请求数，没有配置时等于permits
+         */
+        private transient int burst;
+        /**
+         * 解析后的最大在途请求数，只对服务流控生效，不大于0时不限制
+         */
+        private transient int concurrency;
+        /**
+         * 解析后的租约比例，只对leased模式生效，不大于0时使用默认值
+         */
+        private transient double leaseRatio;
+        /**
+         * 是否已经解析过限流规则
+         */
+        private transient volatile boolean parsed;
+
+        /**
+         * 解析限流规则，缺少duration或permits时视为没有配置限流
+         */
+        public void parse() {
+            int duration = 0;
+            int permits = 0;
+            int burst = 0;
+            int concurrency = 0;
+            double leaseRatio = 0;
+            if (StringUtils.isNotEmpty(config)) {
+                Map<String, Object> configMap = JSONUtil.parse(config, Map.class);
+                Object durationValue = configMap.get(FilterConst.FLOW_CTL_LIMIT_DURATION);
+                Object permitsValue = configMap.get(FilterConst.FLOW_CTL_LIMIT_PERMITS);
+                Object burstValue = configMap.get(FilterConst.FLOW_CTL_LIMIT_BURST);
+                if (durationValue instanceof Number && permitsValue instanceof Number) {
+                    duration = ((Number) durationValue).intValue();
+                    permits = ((Number) permitsValue).intValue();
+                    burst = burstValue instanceof Number && ((Number) burstValue).intValue() > 0
+                            ? ((Number) burstValue).intValue() : permits;
+                }
+                Object concurrencyValue = configMap.get(FilterConst.FLOW_CTL_LIMIT_CONCURRENCY);
+                if (concurrencyValue instanceof Number) {
+                    concurrency = ((Number) concurrencyValue).intValue();
+                }
+                Object leaseRatioValue = configMap.get(FilterConst.FLOW_CTL_LIMIT_LEASE_RATIO);
+                if (leaseRatioValue instanceof Number) {
+                    leaseRatio = Math.min(1, ((Number) leaseRatioValue).doubleValue());
+                }
+            }
+            this.duration = duration;
+            this.permits = permits;
+            this.burst = burst;
+            this.concurrency = concurrency;
+            this.leaseRatio = leaseRatio;
+            this.parsed = true;
+        }
+
+        /**
+         * 是否配置了有效的限流规则
+         */
+        public boolean isLimited() {
+            if (!parsed) {
+                parse();
+            }
+            return duration > 0 && permits > 0;
+        }
+
+        public int getDuration() {
+            if (!parsed) {
+                parse();
+            }
+            return duration;
+        }
+
+        public int getPermits() {
+            if (!parsed) {
+                parse();
+            }
+            return permits;
+        }
+
+        public int getBurst() {
+            if (!parsed) {
+                parse();
+            }
+            return burst;
+        }
+
+        public int getConcurrency() {
+            if (!parsed) {
+                parse();
+            }
+            return concurrency;
+        }
+
+        public double getLeaseRatio() {
+            if (!parsed) {
+                parse();
+            }
+            return leaseRatio;
+        }
     }
 
     @Data
     public static class RetryConfig {
         private int times;
 
+        /**
+         * 重试退避的基础时间，第n次重试的等待时间在[0, backoff * 2^n]之间随机选取
+         */
+        private long backoff = 50;
+
+        /**
+         * 重试退避的最长时间
+         */
+        private long maxBackoff = 1000;
+
         public int getTimes() {
             return times;
         }
@@ -134,6 +293,22 @@ public class Rule implements Comparable<Rule>, Serializable {
         public void setTimes(int times) {
             this.times = times;
         }
+
+        public long getBackoff() {
+            return backoff;
+        }
+
+        public void setBackoff(long backoff) {
+            this.backoff = backoff;
+        }
+
+        public long getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public void setMaxBackoff(long maxBackoff) {
+            this.maxBackoff = maxBackoff;
+        }
     }
     @Data
     public static class HystrixConfig {
@@ -142,18 +317,89 @@ public class Rule implements Comparable<Rule>, Serializable {
          */
         private String path;
         /**
-         * 超时时间
+         * 超时时间，不大于0时使用全局的请求超时时间
          */
         private int timeoutInMilliseconds;
         /**
-         * 核心线程数量
+         * 核心线程数量，熔断器不再占用线程，保留该配置只为兼容旧的规则
          */
         private int threadCoreSize;
         /**
          * 熔断降级响应
          */
         private String fallbackResponse;
+        /**
+         * 失败率阈值，百分比
+         */
+        private int failureRateThreshold = 50;
+        /**
+         * 统计失败率的滑动窗口大小，按最近的请求数计算
+         */
+        private int slidingWindowSize = 100;
+        /**
+         * 窗口内至少有多少请求才计算失败率
+         */
+        private int minimumNumberOfCalls = 20;
+        /**
+         * 熔断打开后等待多久进入半开状态，单位毫秒
+         */
+        private long waitDurationInOpenState = 5000;
+        /**
+         * 半开状态允许通过的探测请求数，全部成功后关闭熔断
+         */
+        private int permittedNumberOfCallsInHalfOpenState = 5;
+    }
+    /**
+     * 对冲请求配置
+     * 第一个请求在路由延迟的指定分位数内没有返回时，向另一个实例再发一个相同的请求，先返回的结果生效，另一个请求被取消
+     */
+    @Data
+    public static class HedgeConfig {
+        /**
+         * 发出对冲请求的延迟分位数
+         */
+        private double percentile = 95;
+        /**
+         * 对冲延迟的下限，单位毫秒
+         */
+        private long minDelay = 5;
+        /**
+         * 对冲延迟的上限，单位毫秒，延迟样本不足时使用该值
+         */
+        private long maxDelay = 1000;
+    }
+    /**
+     * 请求合并配置
+     * 同时到达的相同GET请求只向下游发出一次，响应分发给每一个等待的请求
+     * 服务、请求路径和查询参数、用户ID以及varyHeaders中的请求头都相同的请求视为相同的请求
+     */
+    @Data
+    public static class CoalesceConfig {
+        /**
+         * 区分请求的请求头，响应内容随这些请求头变化
+         */
+        private List<String> varyHeaders = Arrays.asList("Accept", "Accept-Encoding", "Authorization", "Cookie");
     }
+    /**
+     * 预解析过滤器和流控的JSON配置，配置中心下发规则时调用，请求处理时直接使用解析结果
+     */
+    public void parseConfigs() {
+        if (filterConfigs != null) {
+            for (FilterConfig filterConfig : filterConfigs) {
+                if (filterConfig != null) {
+                    filterConfig.parse();
+                }
+            }
+        }
+        if (flowControlConfigs != null) {
+            for (FlowControlConfig flowControlConfig : flowControlConfigs) {
+                if (flowControlConfig != null) {
+                    flowControlConfig.parse();
+                }
+            }
+        }
+    }
+
     /**
      * 向规则里面添加过滤器
      *
@@ -0,0 +1,86 @@
+package blossom.project.common.config;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 服务实例快照
+ * 注册中心推送变更时按uniqueId重新构建，构建完成后不再修改，负载均衡直接按下标读取数组
+ * 数组按服务实例ID排序，同一组实例每次构建的顺序一致
+ * 返回的数组不允许修改
+ */
+public final class ServiceInstanceSnapshot {
+
+    public static final ServiceInstanceSnapshot EMPTY = new ServiceInstanceSnapshot(new ArrayList<>());
+
+    /**
+     * 全部服务实例
+     */
+    private final ServiceInstance[] all;
+
+    /**
+     * 启用的服务实例
+     */
+    private final ServiceInstance[] enabled;
+
+    /**
+     * 启用的灰度服务实例
+     */
+    private final ServiceInstance[] gray;
+
+    /**
+     * 启用的非灰度服务实例
+     */
+    private final ServiceInstance[] nonGray;
+
+    public ServiceInstanceSnapshot(Collection<ServiceInstance> serviceInstances) {
+        List<ServiceInstance> sorted = new ArrayList<>(serviceInstances);
+        sorted.sort(Comparator.comparing(ServiceInstance::getServiceInstanceId,
+                Comparator.nullsFirst(Comparator.naturalOrder())));
+        List<ServiceInstance> enabled = new ArrayList<>();
+        List<ServiceInstance> gray = new ArrayList<>();
+        List<ServiceInstance> nonGray = new ArrayList<>();
+        for (ServiceInstance serviceInstance : sorted) {
+            if (!serviceInstance.isEnable()) {
+                continue;
+            }
+            enabled.add(serviceInstance);
+            if (serviceInstance.isGray()) {
+                gray.add(serviceInstance);
+            } else {
+                nonGray.add(serviceInstance);
+            }
+        }
+        this.all = sorted.toArray(new ServiceInstance[0]);
+        this.enabled = enabled.toArray(new ServiceInstance[0]);
+        this.gray = gray.toArray(new ServiceInstance[0]);
+        this.nonGray = nonGray.toArray(new ServiceInstance[0]);
+    }
+
+    /**
+     * 获取可以接收流量的服务实例
+     * @param gray 是否为灰度流量，灰度流量只会转发到灰度实例，普通流量可以转发到全部启用的实例
+     * @return 服务实例数组
+     */
+    public ServiceInstance[] select(boolean gray) {
+        return gray ? this.gray : this.enabled;
+    }
+
+    public ServiceInstance[] getAll() {
+        return all;
+    }
+
+    public ServiceInstance[] getEnabled() {
+        return enabled;
+    }
+
+    public ServiceInstance[] getGray() {
+        return gray;
+    }
+
+    public ServiceInstance[] getNonGray() {
+        return nonGray;
+    }
+}
@@ -26,6 +26,18 @@ public interface FilterConst {
     String LOAD_BALANCE_KEY = "load_balance";
     String LOAD_BALANCE_STRATEGY_RANDOM = "Random";
     String LOAD_BALANCE_STRATEGY_ROUND_ROBIN = "RoundRobin";
+    String LOAD_BALANCE_STRATEGY_WEIGHT_RANDOM = "WeightRandom";
+    String LOAD_BALANCE_STRATEGY_WEIGHT_ROUND_ROBIN = "WeightRoundRobin";
+    String LOAD_BALANCE_STRATEGY_LEAST_REQUEST = "LeastRequest";
+    String LOAD_BALANCE_STRATEGY_POWER_OF_TWO_CHOICES = "PowerOfTwoChoices";
+    String LOAD_BALANCE_STRATEGY_PEAK_EWMA = "PeakEwma";
+    String LOAD_BALANCE_STRATEGY_CONSISTENT_HASH = "ConsistentHash";
+    //一致性哈希的哈希键 header:名称、cookie:名称、clientIp、userId
+    String LOAD_BALANCE_HASH_KEY = "hash_key";
+    String LOAD_BALANCE_DEFAULT_HASH_KEY = "clientIp";
+    //一致性哈希的负载系数 实例的在途请求数不超过平均值乘以该系数 不大于1时不限制
+    String LOAD_BALANCE_HASH_BALANCE_FACTOR = "hash_balance_factor";
+    double LOAD_BALANCE_DEFAULT_HASH_BALANCE_FACTOR = 1.25;
 
 
     String ROUTER_FILTER_ID = "router_filter";
@@ -38,6 +50,20 @@ public interface FilterConst {
     String AUTH_FILTER_NAME = "auth_filter";
     int AUTH_FILTER_ORDER = 1;
 
+    String RESPONSE_CACHE_FILTER_ID = "response_cache_filter";
+    String RESPONSE_CACHE_FILTER_NAME = "response_cache_filter";
+    int RESPONSE_CACHE_FILTER_ORDER = 90;
+    //缓存时间 以秒为单位 下游响应的Cache-Control: max-age优先
+    String RESPONSE_CACHE_TTL = "ttl";
+    long RESPONSE_CACHE_DEFAULT_TTL = 60;
+    //缓存键的组成 逗号分隔 path、query、userId、clientIp、header:名称、cookie:名称
+    String RESPONSE_CACHE_KEY = "cache_key";
+    String RESPONSE_CACHE_DEFAULT_KEY = "path,query";
+    //过期后仍然直接返回并在后台刷新的时间 以秒为单位 下游响应的Cache-Control: stale-while-revalidate优先
+    String RESPONSE_CACHE_STALE_WHILE_REVALIDATE = "stale_while_revalidate";
+    //过期后下游出错时仍然返回的时间 以秒为单位 下游响应的Cache-Control: stale-if-error优先
+    String RESPONSE_CACHE_STALE_IF_ERROR = "stale_if_error";
+
     String FLOW_CTL_FILTER_ID = "flow_ctl_filter";
     String FLOW_CTL_FILTER_NAME = "flow_ctl_filter";
     int FLOW_CTL_FILTER_ORDER = 50;
@@ -47,8 +73,18 @@ public interface FilterConst {
 
     String FLOW_CTL_LIMIT_DURATION = "duration"; //以秒为单位
     String FLOW_CTL_LIMIT_PERMITS = "permits"; //允许请求的次数
+    String FLOW_CTL_LIMIT_BURST = "burst"; //单机限流允许的突发请求数 默认等于permits
+    String FLOW_CTL_LIMIT_CONCURRENCY = "concurrency"; //服务流控允许的最大在途请求数
+    String FLOW_CTL_LIMIT_LEASE_RATIO = "lease_ratio"; //租约模式每次租用的许可占permits的比例 默认0.05
 
     String FLOW_CTL_MODEL_DISTRIBUTED = "distributed";
     String FLOW_CTL_MODEL_SINGLETON = "Singleton";
+    //根据下游响应时间自动调整在途请求数上限 concurrency为上限的最大值
+    String FLOW_CTL_MODEL_ADAPTIVE = "adaptive";
+    //分布式限流 节点从Redis批量租用许可后在本地扣减
+    String FLOW_CTL_MODEL_LEASED = "leased";
+    //分布式滑动窗口限流 滑动日志精确记录每个请求 滑动计数按上一个窗口的计数加权估算
+    String FLOW_CTL_MODEL_SLIDING_LOG = "sliding_log";
+    String FLOW_CTL_MODEL_SLIDING_COUNTER = "sliding_counter";
 
 }
@@ -0,0 +1,83 @@
+package blossom.project.common.config;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**RouteTreeTest类
+ */
+public class RouteTreeTest {
+
+    @Test
+    public void staticBeatsParamBeatsCatchAll() {
+        Rule exact = rule("exact", null, 0, "/user/info");
+        Rule param = rule("param", null, 0, "/user/{id}");
+        Rule catchAll = rule("catchAll", null, 0, "/user/**");
+        RouteTree tree = RouteTree.build(Arrays.asList(catchAll, param, exact));
+
+        assertSame(exact, tree.match("/user/info"));
+        assertSame(param, tree.match("/user/42"));
+        assertSame(catchAll, tree.match("/user/42/orders"));
+        assertSame(catchAll, tree.match("/user"));
+    }
+
+    @Test
+    public void backtracksFromParamToCatchAll() {
+        Rule param = rule("param", null, 0, "/order/*/detail");
+        Rule catchAll = rule("catchAll", null, 0, "/order/**");
+        RouteTree tree = RouteTree.build(Arrays.asList(param, catchAll));
+
+        assertSame(param, tree.match("/order/7/detail"));
+        assertSame(catchAll, tree.match("/order/7/items"));
+    }
+
+    @Test
+    public void prefixMatchesWholeSegmentsOnly() {
+        Rule user = rule("user", "/user", 0);
+        Rule userAdmin = rule("userAdmin", "/user/admin", 0);
+        RouteTree tree = RouteTree.build(Arrays.asList(user, userAdmin));
+
+        assertSame(user, tree.match("/user"));
+        assertSame(user, tree.match("/user/info"));
+        assertSame(userAdmin, tree.match("/user/admin/list"));
+        assertNull(tree.match("/users"));
+    }
+
+    @Test
+    public void pathRuleBeatsPrefix() {
+        Rule prefix = rule("prefix", "/api", 0);
+        Rule path = rule("path", null, 0, "/api/ping");
+        RouteTree tree = RouteTree.build(Arrays.asList(prefix, path));
+
+        assertSame(path, tree.match("/api/ping"));
+        assertSame(prefix, tree.match("/api/pong"));
+    }
+
+    @Test
+    public void lowerOrderWinsOnSamePath() {
+        Rule first = rule("first", null, 5, "/ping");
+        Rule second = rule("second", null, 1, "/ping");
+        Rule third = rule("third", null, 1, "/ping");
+
+        assertSame(second, RouteTree.build(Arrays.asList(first, second, third)).match("/ping"));
+    }
+
+    @Test
+    public void redundantSlashesAreIgnored() {
+        Rule ping = rule("ping", null, 0, "/http-server/ping");
+        RouteTree tree = RouteTree.build(Collections.singletonList(ping));
+
+        assertSame(ping, tree.match("//http-server//ping/"));
+        assertNull(tree.match("/http-server"));
+    }
+
+    private static Rule rule(String id, String prefix, int order, String... paths) {
+        return new Rule(id, id, "http", "route-tree", prefix,
+                paths.length == 0 ? null : Arrays.asList(paths), order, new HashSet<>());
+    }
+}
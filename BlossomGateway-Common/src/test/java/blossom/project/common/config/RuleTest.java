@@ -0,0 +1,84 @@
+package blossom.project.common.config;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**RuleTest类
+ */
+public class RuleTest {
+
+    @Test
+    public void filterConfigParsedOnce() {
+        Rule.FilterConfig filterConfig = new Rule.FilterConfig();
+        filterConfig.setId("load_balance_filter");
+        filterConfig.setConfig("{\"load_balance\":\"RoundRobin\",\"timeout\":500}");
+
+        Map<String, Object> configMap = filterConfig.getConfigMap();
+        assertEquals("RoundRobin", configMap.get("load_balance"));
+        assertEquals(500, ((Number) configMap.get("timeout")).intValue());
+        assertSame(configMap, filterConfig.getConfigMap());
+    }
+
+    @Test
+    public void emptyFilterConfigParsesToEmptyMap() {
+        Rule.FilterConfig filterConfig = new Rule.FilterConfig();
+        filterConfig.setId("mock_filter");
+
+        assertTrue(filterConfig.getConfigMap().isEmpty());
+    }
+
+    @Test
+    public void flowControlBurstDefaultsToPermits() {
+        Rule.FlowControlConfig config = flowControl("{\"duration\":1,\"permits\":100}");
+
+        assertTrue(config.isLimited());
+        assertEquals(1, config.getDuration());
+        assertEquals(100, config.getPermits());
+        assertEquals(100, config.getBurst());
+    }
+
+    @Test
+    public void flowControlExplicitValues() {
+        Rule.FlowControlConfig config = flowControl(
+                "{\"duration\":10,\"permits\":1000,\"burst\":50,\"concurrency\":20,\"lease_ratio\":2.5}");
+
+        assertEquals(50, config.getBurst());
+        assertEquals(20, config.getConcurrency());
+        //租约比例不超过1
+        assertEquals(1, config.getLeaseRatio(), 0);
+    }
+
+    @Test
+    public void flowControlWithoutPermitsIsNotLimited() {
+        assertFalse(flowControl("{\"duration\":1}").isLimited());
+        assertFalse(flowControl(null).isLimited());
+        //只配置了在途请求数的服务流控
+        Rule.FlowControlConfig concurrencyOnly = flowControl("{\"concurrency\":8}");
+        assertFalse(concurrencyOnly.isLimited());
+        assertEquals(8, concurrencyOnly.getConcurrency());
+    }
+
+    @Test
+    public void reparseAfterConfigChange() {
+        Rule.FlowControlConfig config = flowControl("{\"duration\":1,\"permits\":10}");
+        assertEquals(10, config.getPermits());
+
+        config.setConfig("{\"duration\":1,\"permits\":20}");
+        config.parse();
+        assertEquals(20, config.getPermits());
+    }
+
+    private static Rule.FlowControlConfig flowControl(String json) {
+        Rule.FlowControlConfig config = new Rule.FlowControlConfig();
+        config.setType("service");
+        config.setModel("Singleton");
+        config.setConfig(json);
+        return config;
+    }
+}
@@ -0,0 +1,90 @@
+package blossom.project.common.config;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**ServiceInstanceSnapshotTest类
+ */
+public class ServiceInstanceSnapshotTest {
+
+    @Test
+    public void splitsEnabledGrayAndNonGrayInIdOrder() {
+        ServiceInstance b = instance("10.0.0.2:80", true, false);
+        ServiceInstance a = instance("10.0.0.1:80", true, true);
+        ServiceInstance c = instance("10.0.0.3:80", false, true);
+        ServiceInstance d = instance("10.0.0.4:80", true, false);
+
+        ServiceInstanceSnapshot snapshot = new ServiceInstanceSnapshot(Arrays.asList(d, c, b, a));
+
+        assertArrayEquals(new ServiceInstance[]{a, b, c, d}, snapshot.getAll());
+        assertArrayEquals(new ServiceInstance[]{a, b, d}, snapshot.getEnabled());
+        assertArrayEquals(new ServiceInstance[]{a}, snapshot.getGray());
+        assertArrayEquals(new ServiceInstance[]{b, d}, snapshot.getNonGray());
+    }
+
+    @Test
+    public void grayTrafficOnlySelectsGrayInstances() {
+        ServiceInstance gray = instance("10.0.1.1:80", true, true);
+        ServiceInstance normal = instance("10.0.1.2:80", true, false);
+        ServiceInstanceSnapshot snapshot = new ServiceInstanceSnapshot(Arrays.asList(normal, gray));
+
+        assertArrayEquals(new ServiceInstance[]{gray}, snapshot.select(true));
+        assertSame(snapshot.getEnabled(), snapshot.select(false));
+    }
+
+    @Test
+    public void emptySnapshot() {
+        assertEquals(0, ServiceInstanceSnapshot.EMPTY.getAll().length);
+        assertEquals(0, ServiceInstanceSnapshot.EMPTY.select(true).length);
+        assertEquals(0, ServiceInstanceSnapshot.EMPTY.select(false).length);
+    }
+
+    @Test
+    public void managerRebuildsSnapshotOnChange() {
+        String uniqueId = "snapshot-test:1.0";
+        DynamicConfigManager manager = DynamicConfigManager.getInstance();
+        Set<ServiceInstance> instances = new HashSet<>();
+        instances.add(instance("10.0.2.1:80", true, false));
+        manager.addServiceInstance(uniqueId, instances);
+        ServiceInstanceSnapshot first = manager.getServiceInstanceSnapshot(uniqueId);
+        assertSame(first, manager.getServiceInstanceSnapshot(uniqueId));
+
+        manager.addServiceInstance(uniqueId, instance("10.0.2.2:80", true, false));
+        ServiceInstanceSnapshot second = manager.getServiceInstanceSnapshot(uniqueId);
+        assertNotSame(first, second);
+        assertEquals(1, first.getAll().length);
+        assertEquals(2, second.getAll().length);
+        assertEquals(new HashSet<>(Arrays.asList("10.0.2.1:80", "10.0.2.2:80")),
+                intersect(manager.getServiceInstanceIds(), "10.0.2."));
+
+        manager.removeServiceInstancesByUniqueId(uniqueId);
+        assertSame(ServiceInstanceSnapshot.EMPTY, manager.getServiceInstanceSnapshot(uniqueId));
+        assertEquals(new HashSet<>(), intersect(manager.getServiceInstanceIds(), "10.0.2."));
+    }
+
+    private static Set<String> intersect(Set<String> ids, String prefix) {
+        Set<String> result = new HashSet<>();
+        for (String id : ids) {
+            if (id.startsWith(prefix)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    private static ServiceInstance instance(String serviceInstanceId, boolean enable, boolean gray) {
+        ServiceInstance instance = new ServiceInstance();
+        instance.setServiceInstanceId(serviceInstanceId);
+        instance.setEnable(enable);
+        instance.setGray(gray);
+        return instance;
+    }
+}
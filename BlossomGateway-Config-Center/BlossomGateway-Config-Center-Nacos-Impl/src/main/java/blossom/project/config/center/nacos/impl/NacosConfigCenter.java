@@ -60,7 +60,7 @@ public class NacosConfigCenter implements ConfigCenter {
             String configJson = configService.getConfig(DATA_ID, env, 5000);
             //configJson : {"rules":[{}, {}]}
             log.info("config from nacos: {}", configJson);
-            List<Rule> rules = JSON.parseObject(configJson).getJSONArray("rules").toJavaList(Rule.class);
+            List<Rule> rules = parseRules(configJson);
             //调用我们的监听器 参数就是我们拿到的rules
             listener.onRulesChange(rules);
 
@@ -75,7 +75,7 @@ public class NacosConfigCenter implements ConfigCenter {
                 @Override
                 public void receiveConfigInfo(String configInfo) {
                     log.info("config from nacos: {}", configInfo);
-                    List<Rule> rules = JSON.parseObject(configInfo).getJSONArray("rules").toJavaList(Rule.class);
+                    List<Rule> rules = parseRules(configInfo);
                     listener.onRulesChange(rules);
                 }
             });
@@ -84,4 +84,20 @@ public class NacosConfigCenter implements ConfigCenter {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * 解析规则，并预解析规则中的过滤器和流控配置
+     * 单条规则的配置解析失败时保留规则，请求处理时再按原样解析
+     */
+    private List<Rule> parseRules(String configJson) {
+        List<Rule> rules = JSON.parseObject(configJson).getJSONArray("rules").toJavaList(Rule.class);
+        for (Rule rule : rules) {
+            try {
+                rule.parseConfigs();
+            } catch (Exception e) {
+                log.error("parse rule config error, ruleId: {}", rule.getId(), e);
+            }
+        }
+        return rules;
+    }
 }
@@ -6,6 +6,8 @@ import blossom.project.common.config.ServiceInstance;
 import blossom.project.common.utils.NetUtils;
 import blossom.project.common.utils.TimeUtil;
 import blossom.project.config.center.api.ConfigCenter;
+import blossom.project.core.filter.flow.TokenBucketLimiter;
+import blossom.project.core.filter.loadbalance.InstanceStats;
 import blossom.project.register.center.api.RegisterCenter;
 import blossom.project.register.center.api.RegisterCenterListener;
 import com.alibaba.fastjson.JSON;
@@ -38,8 +40,11 @@ public class Bootstrap
 
         // 从配置中心获取配置
         configCenter.init(config.getRegistryAddress(), config.getEnv());
-        configCenter.subscribeRulesChange(rules -> DynamicConfigManager.getInstance()
-                .putAllRule(rules));
+        configCenter.subscribeRulesChange(rules -> {
+            DynamicConfigManager.getInstance().putAllRule(rules);
+            //规则加载时创建单机限流器，避免首个请求创建
+            TokenBucketLimiter.register(rules);
+        });
 
 
         //启动容器
@@ -85,6 +90,8 @@ public class Bootstrap
                 DynamicConfigManager manager = DynamicConfigManager.getInstance();
                 //将这次变更事件影响之后的服务实例再次添加到对应的服务实例集合
                 manager.addServiceInstance(serviceDefinition.getUniqueId(), serviceInstanceSet);
+                //下线实例的负载统计不再保留
+                InstanceStats.retainAll(manager.getServiceInstanceIds());
                 //修改发生对应的服务定义
                 manager.putServiceDefinition(serviceDefinition.getUniqueId(),serviceDefinition);
             }
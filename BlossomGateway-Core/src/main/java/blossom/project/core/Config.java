@@ -27,6 +27,36 @@ public class Config {
     //默认单异步模式
     private boolean whenComplete = true;
 
+    //未配置熔断降级的路由以中继方式写回响应，响应体按块直接转发不在网关内聚合
+    private boolean responseRelay = true;
+
+    //重试预算：重试次数不超过请求数的比例
+    private double retryBudgetRatio = 0.2;
+
+    //重试预算最多累积的重试次数，限制故障期间短时间内集中发出的重试
+    private int retryBudgetMaxRetries = 100;
+
+    //响应缓存的最大字节数
+    private long responseCacheMaxBytes = 64 * 1024 * 1024;
+
+    //单个响应超过该字节数时不缓存
+    private int responseCacheMaxEntryBytes = 8 * 1024 * 1024;
+
+    //堆外响应缓存的最大字节数 为0时不使用堆外缓存
+    private long responseCacheOffHeapMaxBytes = 256 * 1024 * 1024;
+
+    //响应体超过该字节数时存入堆外缓存
+    private int responseCacheOffHeapThreshold = 16 * 1024;
+
+    //Redis限流命令一次往返最多携带的命令数
+    private int redisPipelineBatchSize = 256;
+
+    //等待发送的Redis限流命令数上限，队列满时命令直接失败
+    private int redisPipelineMaxPending = 65536;
+
+    //Redis限流命令从入队到返回的最长时间，单位毫秒
+    private long redisPipelineCommandTimeoutMillis = 100;
+
     //	Http Async 参数选项：
 
     //	连接超时时间
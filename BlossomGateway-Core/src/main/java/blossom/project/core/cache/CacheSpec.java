@@ -0,0 +1,126 @@
+package blossom.project.core.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+import com.github.benmanes.caffeine.cache.Weigher;
+
+import java.time.Duration;
+
+/** CacheSpec类
+ * 缓存配置，通过GatewayCacheManager创建缓存时使用
+ * 没有指定maximumSize和maximumWeight时按DEFAULT_MAXIMUM_SIZE限制条目数，默认记录命中率等统计信息
+ * @param <V> 缓存值类型
+ */
+public class CacheSpec<V> {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+    private long maximumSize = -1;
+
+    private long maximumWeight = -1;
+
+    private Weigher<? super String, ? super V> weigher;
+
+    private Duration expireAfterWrite;
+
+    private Duration expireAfterAccess;
+
+    private Duration refreshAfterWrite;
+
+    private Expiry<? super String, ? super V> expiry;
+
+    private RemovalListener<? super String, ? super V> removalListener;
+
+    private boolean recordStats = true;
+
+    private CacheSpec() {
+    }
+
+    public static <V> CacheSpec<V> newSpec() {
+        return new CacheSpec<>();
+    }
+
+    public CacheSpec<V> maximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+        return this;
+    }
+
+    /**
+     * 按权重限制容量，需要同时指定计算权重的方法
+     */
+    public CacheSpec<V> maximumWeight(long maximumWeight, Weigher<? super String, ? super V> weigher) {
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        return this;
+    }
+
+    public CacheSpec<V> expireAfterWrite(Duration expireAfterWrite) {
+        this.expireAfterWrite = expireAfterWrite;
+        return this;
+    }
+
+    public CacheSpec<V> expireAfterAccess(Duration expireAfterAccess) {
+        this.expireAfterAccess = expireAfterAccess;
+        return this;
+    }
+
+    /**
+     * 写入一段时间后在访问时异步刷新，只对带加载器的缓存生效
+     */
+    public CacheSpec<V> refreshAfterWrite(Duration refreshAfterWrite) {
+        this.refreshAfterWrite = refreshAfterWrite;
+        return this;
+    }
+
+    /**
+     * 每个条目单独计算过期时间，不能与expireAfterWrite、expireAfterAccess同时使用
+     */
+    public CacheSpec<V> expireAfter(Expiry<? super String, ? super V> expiry) {
+        this.expiry = expiry;
+        return this;
+    }
+
+    public CacheSpec<V> removalListener(RemovalListener<? super String, ? super V> removalListener) {
+        this.removalListener = removalListener;
+        return this;
+    }
+
+    public CacheSpec<V> recordStats(boolean recordStats) {
+        this.recordStats = recordStats;
+        return this;
+    }
+
+    boolean isRefreshAfterWrite() {
+        return refreshAfterWrite != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    Caffeine<String, V> toCaffeine() {
+        Caffeine<String, V> builder = (Caffeine<String, V>) (Caffeine<?, ?>) Caffeine.newBuilder();
+        if (maximumWeight >= 0) {
+            builder = builder.maximumWeight(maximumWeight).weigher(weigher);
+        } else {
+            builder = builder.maximumSize(maximumSize >= 0 ? maximumSize : DEFAULT_MAXIMUM_SIZE);
+        }
+        if (expiry != null) {
+            builder = builder.expireAfter(expiry);
+        }
+        if (expireAfterWrite != null) {
+            builder = builder.expireAfterWrite(expireAfterWrite);
+        }
+        if (expireAfterAccess != null) {
+            builder = builder.expireAfterAccess(expireAfterAccess);
+        }
+        if (refreshAfterWrite != null) {
+            builder = builder.refreshAfterWrite(refreshAfterWrite);
+        }
+        if (removalListener != null) {
+            builder = builder.removalListener(removalListener);
+        }
+        if (recordStats) {
+            builder = builder.recordStats();
+        }
+        return builder;
+    }
+}
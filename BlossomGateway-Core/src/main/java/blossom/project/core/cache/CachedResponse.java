@@ -0,0 +1,138 @@
+package blossom.project.core.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpHeaders;
+import lombok.Getter;
+
+import java.util.Map;
+
+/** CachedResponse类
+ * 缓存的下游响应，创建后不再修改
+ * 响应体可以是堆内存也可以是堆外内存，按引用计数管理：缓存中的条目持有一个引用，被淘汰时释放
+ * 缓存之外的持有者通过ResponseCache.acquire在条目仍在缓存中时取得自己的引用，用完后调用release释放
+ * 写回时使用共享内容的副本，不拷贝响应体
+ * 缓存时间内为新鲜响应；过期后在staleWhileRevalidate内可以直接返回并在后台刷新，在staleIfError内可以在下游出错时返回
+ */
+@Getter
+public class CachedResponse {
+
+    private final int status;
+
+    /**
+     * 响应头，不含逐跳的连接相关响应头和Content-Length
+     */
+    private final HttpHeaders headers;
+
+    private final ByteBuf body;
+
+    private final String etag;
+
+    private final long storedAtMillis;
+
+    /**
+     * 缓存时间，单位毫秒
+     */
+    private final long ttlMillis;
+
+    private final long staleWhileRevalidateMillis;
+
+    private final long staleIfErrorMillis;
+
+    public CachedResponse(int status, HttpHeaders headers, ByteBuf body, String etag, long ttlMillis,
+                          long staleWhileRevalidateMillis, long staleIfErrorMillis) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+        this.etag = etag;
+        this.storedAtMillis = System.currentTimeMillis();
+        this.ttlMillis = ttlMillis;
+        this.staleWhileRevalidateMillis = staleWhileRevalidateMillis;
+        this.staleIfErrorMillis = staleIfErrorMillis;
+    }
+
+    /**
+     * 在缓存中保留的时间，包含过期后仍然可以使用的时间
+     */
+    public long getRetentionMillis() {
+        return ttlMillis + Math.max(staleWhileRevalidateMillis, staleIfErrorMillis);
+    }
+
+    public boolean isFresh() {
+        return elapsedMillis() < ttlMillis;
+    }
+
+    /**
+     * 是否可以直接返回并在后台刷新
+     */
+    public boolean isStaleWhileRevalidate() {
+        return elapsedMillis() < ttlMillis + staleWhileRevalidateMillis;
+    }
+
+    /**
+     * 下游出错时是否可以返回
+     */
+    public boolean isStaleIfError() {
+        return elapsedMillis() < ttlMillis + staleIfErrorMillis;
+    }
+
+    private long elapsedMillis() {
+        return System.currentTimeMillis() - storedAtMillis;
+    }
+
+    /**
+     * 下游确认缓存仍然有效后重新计时，新对象与当前对象共享响应体并持有自己的引用
+     * 调用方必须持有当前对象的引用
+     */
+    public CachedResponse renew() {
+        return new CachedResponse(status, headers, body.retain(), etag, ttlMillis,
+                staleWhileRevalidateMillis, staleIfErrorMillis);
+    }
+
+    /**
+     * 获取写回客户端的响应体，与缓存共享内容，写出后由Netty释放
+     * 调用方必须持有当前对象的引用
+     */
+    public ByteBuf retainedBody() {
+        return body.retainedDuplicate();
+    }
+
+    /**
+     * 取得一个响应体的引用，只能在条目仍在缓存中或者已经持有引用时调用
+     */
+    public CachedResponse retain() {
+        body.retain();
+        return this;
+    }
+
+    /**
+     * 释放一个响应体的引用，缓存淘汰条目和缓存之外的持有者用完后各自调用一次
+     */
+    public void release() {
+        body.release();
+    }
+
+    /**
+     * 过期时间点，从存入缓存开始计算，包含过期后仍然可以使用的时间
+     */
+    public long getExpireAtMillis() {
+        return storedAtMillis + getRetentionMillis();
+    }
+
+    /**
+     * 缓存的时长，单位秒，用于Age响应头
+     */
+    public long getAgeSeconds() {
+        return Math.max(0, elapsedMillis() / 1000);
+    }
+
+    /**
+     * 估算占用的字节数
+     */
+    public int weight() {
+        int weight = body.readableBytes() + 64;
+        for (Map.Entry<String, String> header : headers) {
+            weight += (header.getKey().length() + header.getValue().length()) * 2;
+        }
+        return weight;
+    }
+}
@@ -1,17 +1,32 @@
 package blossom.project.core.cache;
 
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
 import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+/** GatewayCacheManager类
+ * 全局缓存管理，所有缓存按CacheSpec创建并且都有容量上限
+ * 绑定监控注册表后，每个缓存的命中、未命中、淘汰和加载耗时都会以cache名称为标签暴露
+ */
 public class GatewayCacheManager {
     public GatewayCacheManager() {}
     /**
      * 全局缓存，双层缓存
      */
     private final ConcurrentMap<String, Cache<String,?>> cacheMap = new ConcurrentHashMap<>();
+
+    /**
+     * 监控注册表，绑定之前创建的缓存在绑定时一并注册
+     */
+    private volatile MeterRegistry meterRegistry;
+
     private static class SingletonInstance {
         private static final GatewayCacheManager INSTANCE = new GatewayCacheManager();
     }
@@ -19,15 +34,72 @@ public class GatewayCacheManager {
         return SingletonInstance.INSTANCE;
     }
     /**
-     * 根据全局缓存ID创建一个Caffeine对象
+     * 根据全局缓存ID创建一个使用默认配置的Caffeine对象
      * @param cacheId
      * @return
      * @param <V>
      */
     public <V>Cache<String,V> create(String cacheId){
-        Cache<String, V>cache= Caffeine.newBuilder().build();
-        cacheMap.put(cacheId,cache);
-        return (Cache<String, V>)cacheMap.get(cacheId);
+        return create(cacheId, CacheSpec.newSpec());
+    }
+    /**
+     * 根据全局缓存ID和缓存配置创建缓存
+     * @param cacheId
+     * @param spec
+     * @return
+     * @param <V>
+     */
+    public <V>Cache<String,V> create(String cacheId, CacheSpec<V> spec){
+        if (spec.isRefreshAfterWrite()) {
+            throw new IllegalArgumentException("refreshAfterWrite requires a loader, cache: " + cacheId);
+        }
+        Cache<String, V> cache = spec.toCaffeine().build();
+        register(cacheId, cache);
+        return cache;
+    }
+    /**
+     * 创建带同步加载器的缓存
+     * @param cacheId
+     * @param spec
+     * @param loader
+     * @return
+     * @param <V>
+     */
+    public <V>LoadingCache<String,V> create(String cacheId, CacheSpec<V> spec, CacheLoader<String, V> loader){
+        LoadingCache<String, V> cache = spec.toCaffeine().build(loader);
+        register(cacheId, cache);
+        return cache;
+    }
+    /**
+     * 创建带异步加载器的缓存，加载在异步线程中执行，不阻塞调用线程
+     * @param cacheId
+     * @param spec
+     * @param loader
+     * @return
+     * @param <V>
+     */
+    public <V>AsyncLoadingCache<String,V> createAsync(String cacheId, CacheSpec<V> spec,
+                                                      AsyncCacheLoader<String, V> loader){
+        AsyncLoadingCache<String, V> cache = spec.toCaffeine().buildAsync(loader);
+        register(cacheId, cache.synchronous());
+        return cache;
+    }
+
+    private void register(String cacheId, Cache<String, ?> cache) {
+        cacheMap.put(cacheId, cache);
+        MeterRegistry registry = meterRegistry;
+        if (registry != null) {
+            CaffeineCacheMetrics.monitor(registry, cache, cacheId);
+        }
+    }
+
+    /**
+     * 把全部缓存的统计信息注册到监控注册表
+     * @param registry
+     */
+    public synchronized void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        cacheMap.forEach((cacheId, cache) -> CaffeineCacheMetrics.monitor(registry, cache, cacheId));
     }
     /**
      * 根据CacheID以及对象Key删除对应地 Caffine对象
@@ -37,7 +109,9 @@ public class GatewayCacheManager {
      */
     public <V>void remove(String cacheId,String key){
         Cache<String, V>cache= (Cache<String, V>)cacheMap.get(cacheId);
-        cache.invalidate(key);
+        if(cache!=null){
+            cache.invalidate(key);
+        }
     }
     /**
      * 根据CacheID 删除Caffine对象
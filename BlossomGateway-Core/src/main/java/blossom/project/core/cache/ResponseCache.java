@@ -0,0 +1,379 @@
+package blossom.project.core.cache;
+
+import blossom.project.core.Config;
+import blossom.project.core.ConfigLoader;
+import blossom.project.core.helper.AggregatedResponseHandler.AggregatedResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.apache.commons.lang3.StringUtils;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.Response;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/** ResponseCache类
+ * 下游响应缓存，分为堆内和堆外两层，按字节数分别限制容量，每个响应按自己的缓存时间过期
+ * 响应体不超过responseCacheOffHeapThreshold的存入堆内缓存，更大的响应体拷贝到池化的直接内存，堆内只保留索引和响应头
+ * 两层都由Caffeine的W-TinyLFU决定准入和淘汰，淘汰时释放缓存持有的响应体引用
+ * 读取缓存的调用方通过acquire在条目仍在缓存中时取得自己的引用，用完后释放，淘汰不会影响正在使用的响应体
+ * 只缓存200响应，遵循下游响应的Cache-Control：no-store、no-cache、private不缓存，s-maxage和max-age优先于规则配置的缓存时间
+ * 带有Set-Cookie或Vary: *的响应不缓存；带有身份信息的请求只缓存Cache-Control为public或带有s-maxage的响应
+ * 下游响应带有Vary时按基础缓存键记录其中的请求头，查找和存入时把这些请求头的值拼接到缓存键中
+ */
+public class ResponseCache {
+
+    public static final String CACHE_ID = "response_cache";
+
+    public static final String OFF_HEAP_CACHE_ID = "response_cache_off_heap";
+
+    public static final String VARY_CACHE_ID = "response_cache_vary";
+
+    /**
+     * 最多记录Vary的基础缓存键数
+     */
+    private static final long VARY_MAX_SIZE = 10000;
+
+    private static class SingletonHolder {
+        private static final ResponseCache INSTANCE = new ResponseCache(ConfigLoader.getConfig());
+    }
+
+    public static ResponseCache getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    private final Cache<String, CachedResponse> cache;
+
+    /**
+     * 堆外缓存，未开启时为null
+     */
+    private final Cache<String, CachedResponse> offHeapCache;
+
+    /**
+     * 下游响应Vary中的请求头名称，按基础缓存键记录
+     */
+    private final Cache<String, List<String>> varyCache;
+
+    private final int maxEntryBytes;
+
+    private final int offHeapThreshold;
+
+    private ResponseCache(Config config) {
+        this.maxEntryBytes = config.getResponseCacheMaxEntryBytes();
+        this.cache = GatewayCacheManager.getInstance().create(CACHE_ID, spec(config.getResponseCacheMaxBytes()));
+        this.varyCache = GatewayCacheManager.getInstance().create(VARY_CACHE_ID,
+                CacheSpec.<List<String>>newSpec().maximumSize(VARY_MAX_SIZE));
+        if (config.getResponseCacheOffHeapMaxBytes() > 0) {
+            this.offHeapThreshold = config.getResponseCacheOffHeapThreshold();
+            this.offHeapCache = GatewayCacheManager.getInstance().create(OFF_HEAP_CACHE_ID,
+                    spec(config.getResponseCacheOffHeapMaxBytes()));
+        } else {
+            this.offHeapThreshold = Integer.MAX_VALUE;
+            this.offHeapCache = null;
+        }
+    }
+
+    private static CacheSpec<CachedResponse> spec(long maximumWeight) {
+        return CacheSpec.<CachedResponse>newSpec()
+                .maximumWeight(maximumWeight, (String key, CachedResponse value) -> value.weight())
+                .removalListener((String key, CachedResponse value, RemovalCause cause) -> {
+                    if (value != null) {
+                        value.release();
+                    }
+                })
+                //按条目自己的存入时间计算过期时间，acquire在compute中原样返回条目时不会延长缓存时间
+                .expireAfter(new Expiry<String, CachedResponse>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedResponse value, long currentTime) {
+                        return remainingNanos(value);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedResponse value, long currentTime,
+                                                  long currentDuration) {
+                        return remainingNanos(value);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedResponse value, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                });
+    }
+
+    private static long remainingNanos(CachedResponse value) {
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, value.getExpireAtMillis() - System.currentTimeMillis()));
+    }
+
+    /**
+     * 正在后台刷新的缓存键
+     */
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 获取缓存的响应并取得响应体的引用，返回的响应可能已经过期，由调用方判断是否可以使用
+     * 引用在条目仍在缓存中时取得，调用方用完后必须调用CachedResponse.release释放
+     * @return 没有缓存时返回null
+     */
+    public CachedResponse acquire(String key) {
+        CachedResponse cached = acquire(cache, key);
+        if (cached == null && offHeapCache != null) {
+            cached = acquire(offHeapCache, key);
+        }
+        return cached;
+    }
+
+    private static CachedResponse acquire(Cache<String, CachedResponse> cache, String key) {
+        CachedResponse[] acquired = new CachedResponse[1];
+        cache.asMap().computeIfPresent(key, (k, value) -> {
+            acquired[0] = value.retain();
+            return value;
+        });
+        return acquired[0];
+    }
+
+    /**
+     * 根据下游响应声明的Vary计算请求对应的缓存键，没有记录Vary时就是基础缓存键
+     * @param key 基础缓存键
+     * @param requestHeaders 请求头
+     */
+    public String variantKey(String key, HttpHeaders requestHeaders) {
+        return variantKey(key, varyCache.getIfPresent(key), requestHeaders);
+    }
+
+    static String variantKey(String key, List<String> varyNames, HttpHeaders requestHeaders) {
+        if (varyNames == null || varyNames.isEmpty()) {
+            return key;
+        }
+        StringBuilder variant = new StringBuilder(key);
+        for (String name : varyNames) {
+            variant.append("|vary:").append(name).append('=')
+                    .append(StringUtils.defaultString(requestHeaders.get(name)));
+        }
+        return variant.toString();
+    }
+
+    /**
+     * 解析Vary响应头中的请求头名称，转为小写并排序
+     * @return 包含*时返回null
+     */
+    static List<String> varyNames(HttpHeaders upstreamHeaders) {
+        List<String> names = new ArrayList<>(2);
+        for (String vary : upstreamHeaders.getAll(HttpHeaderNames.VARY)) {
+            for (String part : vary.split(",")) {
+                String name = part.trim().toLowerCase();
+                if ("*".equals(name)) {
+                    return null;
+                }
+                if (!name.isEmpty() && !names.contains(name)) {
+                    names.add(name);
+                }
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * 下游是否以public或s-maxage明确允许共享缓存
+     */
+    static boolean isShared(String cacheControl) {
+        if (StringUtils.isEmpty(cacheControl)) {
+            return false;
+        }
+        for (String directive : cacheControl.split(",")) {
+            String d = directive.trim().toLowerCase();
+            if (d.equals("public") || d.startsWith("s-maxage=")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 缓存下游响应，不满足缓存条件时忽略
+     * @param key 基础缓存键，下游响应带有Vary时拼接对应请求头的值
+     * @param policy 规则配置的缓存时间
+     * @param requestHeaders 请求头
+     * @param response 下游响应
+     */
+    public void store(String key, ResponseCachePolicy policy, HttpHeaders requestHeaders, Response response) {
+        if (response.getStatusCode() != HttpResponseStatus.OK.code()) {
+            return;
+        }
+        HttpHeaders upstreamHeaders = response.getHeaders();
+        if (upstreamHeaders.contains(HttpHeaderNames.SET_COOKIE)) {
+            return;
+        }
+        List<String> varyNames = varyNames(upstreamHeaders);
+        if (varyNames == null) {
+            return;
+        }
+        String cacheControl = upstreamHeaders.get(HttpHeaderNames.CACHE_CONTROL);
+        if (policy.isAuthenticated() && !isShared(cacheControl)) {
+            return;
+        }
+        long ttl = ttlSeconds(cacheControl, policy.getTtl());
+        if (ttl <= 0) {
+            return;
+        }
+        long staleWhileRevalidate = directive(cacheControl, "stale-while-revalidate=", policy.getStaleWhileRevalidate());
+        long staleIfError = directive(cacheControl, "stale-if-error=", policy.getStaleIfError());
+        ByteBuf body = copyBody(response);
+        if (body == null) {
+            return;
+        }
+        HttpHeaders headers = new DefaultHttpHeaders().add(upstreamHeaders);
+        headers.remove(HttpHeaderNames.CONNECTION);
+        headers.remove(HttpHeaderNames.KEEP_ALIVE);
+        headers.remove(HttpHeaderNames.TRANSFER_ENCODING);
+        headers.remove(HttpHeaderNames.CONTENT_LENGTH);
+        CachedResponse cached = new CachedResponse(response.getStatusCode(), headers, body,
+                upstreamHeaders.get(HttpHeaderNames.ETAG), TimeUnit.SECONDS.toMillis(ttl),
+                TimeUnit.SECONDS.toMillis(staleWhileRevalidate), TimeUnit.SECONDS.toMillis(staleIfError));
+        if (varyNames.isEmpty()) {
+            varyCache.invalidate(key);
+        } else {
+            varyCache.put(key, varyNames);
+        }
+        put(variantKey(key, varyNames, requestHeaders), cached);
+    }
+
+    /**
+     * 拷贝下游响应体，超过responseCacheOffHeapThreshold的存入池化的直接内存
+     * 响应保留了响应分块时逐块写入直接内存，不经过聚合成的完整字节数组
+     * @return 响应体超过maxEntryBytes时返回null
+     */
+    private ByteBuf copyBody(Response response) {
+        if (response instanceof AggregatedResponse) {
+            List<HttpResponseBodyPart> bodyParts = ((AggregatedResponse) response).getBodyParts();
+            int length = 0;
+            for (HttpResponseBodyPart bodyPart : bodyParts) {
+                length += bodyPart.length();
+            }
+            if (length > maxEntryBytes) {
+                return null;
+            }
+            if (length > offHeapThreshold) {
+                ByteBuf body = PooledByteBufAllocator.DEFAULT.directBuffer(length);
+                for (HttpResponseBodyPart bodyPart : bodyParts) {
+                    body.writeBytes(bodyPart.getBodyByteBuffer());
+                }
+                return body;
+            }
+        }
+        byte[] bytes = response.getResponseBodyAsBytes();
+        if (bytes.length > maxEntryBytes) {
+            return null;
+        }
+        return bytes.length > offHeapThreshold
+                ? PooledByteBufAllocator.DEFAULT.directBuffer(bytes.length).writeBytes(bytes)
+                : Unpooled.wrappedBuffer(bytes);
+    }
+
+    /**
+     * 下游返回304确认缓存仍然有效，重新计时
+     * @param cached 调用方持有引用的缓存响应，调用方的引用仍由调用方释放
+     */
+    public void renew(String key, CachedResponse cached) {
+        put(key, cached.renew());
+    }
+
+    private void put(String key, CachedResponse cached) {
+        //同一个键只保留在一层中
+        if (cached.getBody().isDirect() && offHeapCache != null) {
+            cache.invalidate(key);
+            offHeapCache.put(key, cached);
+        } else {
+            if (offHeapCache != null) {
+                offHeapCache.invalidate(key);
+            }
+            cache.put(key, cached);
+        }
+    }
+
+    /**
+     * 开始后台刷新，同一个键同时只有一个刷新请求
+     * @return 已经有刷新请求时返回false
+     */
+    public boolean beginRevalidate(String key) {
+        return revalidating.add(key);
+    }
+
+    public void endRevalidate(String key) {
+        revalidating.remove(key);
+    }
+
+    public void invalidate(String key) {
+        cache.invalidate(key);
+        if (offHeapCache != null) {
+            offHeapCache.invalidate(key);
+        }
+    }
+
+    /**
+     * 根据Cache-Control计算缓存时间
+     * @return 单位秒，不允许缓存时返回0
+     */
+    static long ttlSeconds(String cacheControl, long defaultTtl) {
+        if (StringUtils.isEmpty(cacheControl)) {
+            return defaultTtl;
+        }
+        long maxAge = -1;
+        long sharedMaxAge = -1;
+        for (String directive : cacheControl.split(",")) {
+            String d = directive.trim().toLowerCase();
+            if (d.equals("no-store") || d.equals("no-cache") || d.equals("private")) {
+                return 0;
+            }
+            if (d.startsWith("s-maxage=")) {
+                sharedMaxAge = parseSeconds(d.substring("s-maxage=".length()));
+            } else if (d.startsWith("max-age=")) {
+                maxAge = parseSeconds(d.substring("max-age=".length()));
+            }
+        }
+        if (sharedMaxAge >= 0) {
+            return sharedMaxAge;
+        }
+        return maxAge >= 0 ? maxAge : defaultTtl;
+    }
+
+    /**
+     * 读取Cache-Control中以秒为单位的指令
+     * @param name 指令名称，包含等号
+     * @param defaultValue 没有该指令时的默认值
+     */
+    private static long directive(String cacheControl, String name, long defaultValue) {
+        if (StringUtils.isEmpty(cacheControl)) {
+            return defaultValue;
+        }
+        for (String directive : cacheControl.split(",")) {
+            String d = directive.trim().toLowerCase();
+            if (d.startsWith(name)) {
+                return parseSeconds(d.substring(name.length()));
+            }
+        }
+        return defaultValue;
+    }
+
+    private static long parseSeconds(String value) {
+        try {
+            return Long.parseLong(StringUtils.strip(value.trim(), "\""));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package blossom.project.core.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/** ResponseCachePolicy类
+ * 规则配置的响应缓存时间，下游响应的Cache-Control中有对应的指令时以下游为准，单位秒
+ */
+@Getter
+@AllArgsConstructor
+public class ResponseCachePolicy {
+
+    /**
+     * 缓存时间
+     */
+    private final long ttl;
+
+    /**
+     * 过期后仍然可以直接返回并在后台刷新的时间
+     */
+    private final long staleWhileRevalidate;
+
+    /**
+     * 过期后下游出错时仍然可以返回的时间
+     */
+    private final long staleIfError;
+
+    /**
+     * 请求带有身份信息且缓存键不区分用户，只缓存下游以public或s-maxage明确允许共享的响应
+     */
+    private final boolean authenticated;
+}
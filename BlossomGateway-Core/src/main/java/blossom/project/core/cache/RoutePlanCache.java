@@ -0,0 +1,99 @@
+package blossom.project.core.cache;
+
+import blossom.project.common.config.DynamicConfigManager;
+import blossom.project.common.config.Rule;
+import blossom.project.core.context.RoutePlan;
+import blossom.project.core.filter.GatewayFilterChainChainFactory;
+import blossom.project.core.filter.loadbalance.LoadBalanceFilter;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static blossom.project.common.constant.FilterConst.FLOW_CTL_TYPE_PATH;
+import static blossom.project.common.constant.FilterConst.FLOW_CTL_TYPE_SERVICE;
+
+/**
+ * 路由计划缓存，双层缓存：服务名 - 请求路径 - 路由计划
+ * 缓存的路由计划带有构建时的规则版本号，规则变更后版本号不一致的计划在下次访问时重新构建
+ */
+public class RoutePlanCache {
+
+    /**
+     * 每个服务最多缓存的路径数，带路径参数的接口路径数量不可控，需要限制大小
+     */
+    private static final int MAX_PATHS_PER_SERVICE = 10000;
+
+    private static final String CACHE_ID_PREFIX = "route_plan.";
+
+    private final ConcurrentMap<String, Cache<String, RoutePlan>> cacheMap = new ConcurrentHashMap<>();
+
+    private RoutePlanCache() {
+    }
+
+    private static class SingletonInstance {
+        private static final RoutePlanCache INSTANCE = new RoutePlanCache();
+    }
+
+    public static RoutePlanCache getInstance() {
+        return SingletonInstance.INSTANCE;
+    }
+
+    /**
+     * 获取请求路径对应的路由计划
+     * @param serviceId 服务名
+     * @param path 请求路径
+     * @return 没有匹配的规则时返回null
+     */
+    public RoutePlan getRoutePlan(String serviceId, String path) {
+        //先取版本号再查规则，规则在两者之间变更时计划会在下次访问时重建
+        long generation = DynamicConfigManager.getInstance().getRuleGeneration();
+        Cache<String, RoutePlan> cache = cacheMap.get(serviceId);
+        if (cache == null) {
+            cache = cacheMap.computeIfAbsent(serviceId, k -> GatewayCacheManager.getInstance()
+                    .create(CACHE_ID_PREFIX + k, CacheSpec.<RoutePlan>newSpec().maximumSize(MAX_PATHS_PER_SERVICE)));
+        }
+        RoutePlan routePlan = cache.getIfPresent(path);
+        if (routePlan != null && routePlan.getGeneration() == generation) {
+            return routePlan;
+        }
+        Rule rule = DynamicConfigManager.getInstance().matchRule(serviceId, path);
+        if (rule == null) {
+            return null;
+        }
+        routePlan = build(generation, rule, path);
+        cache.put(path, routePlan);
+        return routePlan;
+    }
+
+    private RoutePlan build(long generation, Rule rule, String path) {
+        Optional<Rule.HystrixConfig> hystrixConfig = rule.getHystrixConfigs() == null ? Optional.empty() :
+                rule.getHystrixConfigs().stream()
+                        .filter(c -> StringUtils.equals(c.getPath(), path)).findFirst();
+
+        List<Rule.FlowControlConfig> flowControlConfigs = new ArrayList<>();
+        if (rule.getFlowControlConfigs() != null) {
+            for (Rule.FlowControlConfig flowControlConfig : rule.getFlowControlConfigs()) {
+                if (flowControlConfig == null || flowControlConfig.getType() == null) {
+                    continue;
+                }
+                if (flowControlConfig.getType().equalsIgnoreCase(FLOW_CTL_TYPE_PATH)
+                        && path.equals(flowControlConfig.getValue())) {
+                    flowControlConfigs.add(flowControlConfig);
+                } else if (flowControlConfig.getType().equalsIgnoreCase(FLOW_CTL_TYPE_SERVICE)) {
+                    flowControlConfigs.add(flowControlConfig);
+                }
+            }
+        }
+
+        return new RoutePlan(generation, rule, hystrixConfig,
+                Collections.unmodifiableList(flowControlConfigs),
+                LoadBalanceFilter.getLoadBalanceRules(rule),
+                GatewayFilterChainChainFactory.getInstance().doBuildFilterChain(rule));
+    }
+}
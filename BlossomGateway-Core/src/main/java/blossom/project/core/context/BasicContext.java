@@ -8,6 +8,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 
@@ -47,9 +48,9 @@ public class BasicContext implements IContext{
      */
     protected final AtomicBoolean requestReleased = new AtomicBoolean(false);
     /**
-     * 存放回调函数的集合
+     * 存放回调函数的集合，执行时原子地取出，保证多个线程同时结束请求时回调只执行一次
      */
-    protected List<Consumer<IContext>> completedCallbacks;
+    protected final AtomicReference<List<Consumer<IContext>>> completedCallbacks = new AtomicReference<>();
 
     /**
      * 构造函数
@@ -171,16 +172,26 @@ public class BasicContext implements IContext{
 
     @Override
     public void setCompletedCallBack(Consumer<IContext> consumer) {
-        if(completedCallbacks == null){
-            completedCallbacks = new ArrayList<>();
+        while (true) {
+            List<Consumer<IContext>> callbacks = completedCallbacks.get();
+            if (callbacks != null) {
+                callbacks.add(consumer);
+                return;
+            }
+            callbacks = new ArrayList<>();
+            callbacks.add(consumer);
+            if (completedCallbacks.compareAndSet(null, callbacks)) {
+                return;
+            }
         }
-        completedCallbacks.add(consumer);
     }
 
     @Override
     public void invokeCompletedCallBack() {
-        if(completedCallbacks == null){
-            completedCallbacks.forEach(call->call.accept(this));
+        //回调只执行一次
+        List<Consumer<IContext>> callbacks = completedCallbacks.getAndSet(null);
+        if(callbacks != null){
+            callbacks.forEach(call->call.accept(this));
         }
     }
 }
@@ -1,7 +1,12 @@
 package blossom.project.core.context;
 
 import blossom.project.common.config.Rule;
+import blossom.project.common.config.ServiceInstance;
 import blossom.project.common.utils.AssertUtil;
+import blossom.project.core.cache.CachedResponse;
+import blossom.project.core.cache.ResponseCachePolicy;
+import blossom.project.core.filter.flow.AdaptiveConcurrencyLimiter;
+import blossom.project.core.filter.loadbalance.InstanceStats;
 import blossom.project.core.request.GatewayRequest;
 import blossom.project.core.response.GatewayResponse;
 import io.micrometer.core.instrument.Timer;
@@ -10,6 +15,11 @@ import io.netty.util.ReferenceCountUtil;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 
 /**
  * @author: ZhangBlossom
@@ -31,12 +41,83 @@ public class GatewayContext extends BasicContext{
 
     private Rule rule;
 
+    /**
+     * 请求命中的路由计划
+     */
+    @Setter
+    @Getter
+    private RoutePlan routePlan;
+
     private int currentRetryTimes;
 
+    /**
+     * 负载均衡选中的服务实例
+     */
+    @Setter
+    @Getter
+    private ServiceInstance serviceInstance;
+
+    /**
+     * 已经请求失败的服务实例ID，重试时不再选择
+     */
+    private List<String> triedInstanceIds;
+
+    /**
+     * 当前发往下游的请求所计入的实例统计，请求完成后置空
+     */
+    @Setter
+    @Getter
+    private InstanceStats instanceStats;
+
+    /**
+     * 过滤器等待的异步结果，过滤器链在结果返回后从下一个过滤器继续执行，异常结束时返回对应的错误
+     */
+    private CompletableFuture<Void> suspension;
+
+    /**
+     * 请求占用了许可的自适应限流器，每次下游请求完成后回报响应时间
+     */
+    private List<AdaptiveConcurrencyLimiter> adaptiveLimiters;
+
+    /**
+     * 当前请求发往下游的时间，用于统计实例的响应时间和自适应限流的采样
+     */
+    @Setter
+    @Getter
+    private long upstreamStartNanos;
+
+    /**
+     * 是否有发往下游的请求还没有统计结果，没有配置负载均衡时同样记录，保证每次下游请求只统计一次
+     */
+    @Setter
+    @Getter
+    private boolean upstreamPending;
+
     @Setter
     @Getter
     private boolean gray;
 
+    /**
+     * 响应缓存的键，未命中缓存且下游响应可以缓存时设置，为空时不缓存响应
+     */
+    @Setter
+    @Getter
+    private String responseCacheKey;
+
+    /**
+     * 规则配置的响应缓存时间
+     */
+    @Setter
+    @Getter
+    private ResponseCachePolicy responseCachePolicy;
+
+    /**
+     * 已经过期但下游出错时仍然可以返回的缓存响应，上下文持有其响应体的一个引用
+     */
+    @Setter
+    @Getter
+    private CachedResponse staleResponse;
+
     /**
      * 记录应用程序中的方法调用或服务请求所花费的时间
      */
@@ -143,6 +224,64 @@ public class GatewayContext extends BasicContext{
         this.currentRetryTimes = currentRetryTimes;
     }
 
+    /**
+     * 记录请求失败的服务实例
+     * @param serviceInstance
+     */
+    public void addTriedInstance(ServiceInstance serviceInstance) {
+        if (serviceInstance == null) {
+            return;
+        }
+        if (triedInstanceIds == null) {
+            triedInstanceIds = new ArrayList<>(2);
+        }
+        triedInstanceIds.add(serviceInstance.getServiceInstanceId());
+    }
+
+    public boolean isTriedInstance(ServiceInstance serviceInstance) {
+        return triedInstanceIds != null && triedInstanceIds.contains(serviceInstance.getServiceInstanceId());
+    }
+
+    /**
+     * 过滤器需要等待异步结果时调用，同一个过滤器多次调用时等待全部结果
+     * @param future
+     */
+    public void suspend(CompletableFuture<Void> future) {
+        suspension = suspension == null ? future : CompletableFuture.allOf(suspension, future);
+    }
+
+    /**
+     * 取出过滤器等待的异步结果
+     * @return 没有需要等待的结果时返回null
+     */
+    public CompletableFuture<Void> takeSuspension() {
+        CompletableFuture<Void> future = suspension;
+        suspension = null;
+        return future;
+    }
+
+    public void addAdaptiveLimiter(AdaptiveConcurrencyLimiter adaptiveLimiter) {
+        if (adaptiveLimiters == null) {
+            adaptiveLimiters = new ArrayList<>(1);
+        }
+        adaptiveLimiters.add(adaptiveLimiter);
+    }
+
+    public List<AdaptiveConcurrencyLimiter> getAdaptiveLimiters() {
+        return adaptiveLimiters == null ? Collections.emptyList() : adaptiveLimiters;
+    }
+
+    /**
+     * 请求结束时释放持有的过期缓存响应
+     */
+    public void releaseStaleResponse() {
+        CachedResponse stale = staleResponse;
+        staleResponse = null;
+        if (stale != null) {
+            stale.release();
+        }
+    }
+
     /**
      * 根据过滤器ID获取对应的过滤器配置信息
      * @param filterId
@@ -159,10 +298,14 @@ public class GatewayContext extends BasicContext{
     /**
      * 重写父类释放资源方法，用于正在释放资源
      * release() 方法通常减少对象的引用计数。当计数达到零时，资源被释放。
+     * 流式转发的请求体一并释放，丢弃尚未写往下游的分块并恢复客户端连接的读取
      */
     public void releaseRequest(){
         if(requestReleased.compareAndSet(false,true)){
             ReferenceCountUtil.release(request.getFullHttpRequest());
+            if (request.isStreaming()) {
+                request.getStreamingBody().release();
+            }
         }
     }
 
@@ -1,5 +1,6 @@
 package blossom.project.core.context;
 
+import blossom.project.core.request.StreamingBodyGenerator;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.FullHttpRequest;
 import lombok.Data;
@@ -10,4 +11,8 @@ import lombok.Data;
 public class HttpRequestWrapper {
     private FullHttpRequest request;
     private ChannelHandlerContext ctx;
+    /**
+     * 流式转发时的请求体，非流式请求为空
+     */
+    private StreamingBodyGenerator streamingBody;
 }
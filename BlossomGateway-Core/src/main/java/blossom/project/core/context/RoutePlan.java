@@ -0,0 +1,51 @@
+package blossom.project.core.context;
+
+import blossom.project.common.config.Rule;
+import blossom.project.core.filter.GatewayFilterChain;
+import blossom.project.core.filter.loadbalance.LoadBalanceGatewayRule;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * 路由计划
+ * 同一服务同一路径的请求命中的规则以及由规则推导出的各项配置，构建一次后在规则版本不变时重复使用
+ */
+@Getter
+@AllArgsConstructor
+public class RoutePlan {
+
+    /**
+     * 构建时的规则版本号
+     */
+    private final long generation;
+
+    /**
+     * 命中的规则
+     */
+    private final Rule rule;
+
+    /**
+     * 当前路径的熔断配置
+     */
+    private final Optional<Rule.HystrixConfig> hystrixConfig;
+
+    /**
+     * 当前路径需要执行的流控配置
+     */
+    private final List<Rule.FlowControlConfig> flowControlConfigs;
+
+    /**
+     * 负载均衡策略，按服务唯一标识获取负载均衡器，规则没有配置负载均衡过滤器时为空
+     * 同一服务的不同版本共用路由计划，负载均衡器按版本区分
+     */
+    private final Function<String, LoadBalanceGatewayRule> loadBalanceRules;
+
+    /**
+     * 过滤器链
+     */
+    private final GatewayFilterChain filterChain;
+}
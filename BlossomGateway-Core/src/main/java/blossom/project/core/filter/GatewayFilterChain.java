@@ -1,9 +1,16 @@
 package blossom.project.core.filter;
 
+import blossom.project.common.enums.ResponseCode;
+import blossom.project.common.exception.BaseException;
+import blossom.project.common.exception.LimitedException;
 import blossom.project.core.context.GatewayContext;
+import blossom.project.core.helper.ResponseHelper;
+import io.netty.channel.ChannelFutureListener;
 import lombok.extern.slf4j.Slf4j;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /** 过滤器链 用于存储实现的过滤器的信息 并且按照顺序进行执行
  */
@@ -30,15 +37,29 @@ public class GatewayFilterChain {
      * @throws Exception
      */
     public GatewayContext doFilter(GatewayContext ctx) throws Exception {
+        return doFilter(ctx, 0);
+    }
+
+    /**
+     * 从指定位置开始执行过滤器，过滤器挂起时在异步结果返回后回到连接所在的线程继续执行
+     */
+    private GatewayContext doFilter(GatewayContext ctx, int from) throws Exception {
         if(filters.isEmpty()){
             return ctx;
         }
         try {
-            for(Filter fl: filters){
-                fl.doFilter(ctx);
+            for(int i = from; i < filters.size(); i++){
+                filters.get(i).doFilter(ctx);
                 if (ctx.isTerminated()){
                     break;
                 }
+                CompletableFuture<Void> suspension = ctx.takeSuspension();
+                if (suspension != null) {
+                    int next = i + 1;
+                    suspension.whenComplete((v, throwable) -> ctx.getNettyCtx().executor()
+                            .execute(() -> resume(ctx, next, throwable)));
+                    break;
+                }
             }
         }catch (Exception e){
             log.error("执行过滤器发生异常,异常信息：{}",e.getMessage());
@@ -46,4 +67,29 @@ public class GatewayFilterChain {
         }
         return ctx;
     }
+
+    private void resume(GatewayContext ctx, int next, Throwable throwable) {
+        try {
+            if (throwable != null) {
+                throw throwable instanceof CompletionException && throwable.getCause() != null
+                        ? throwable.getCause() : throwable;
+            }
+            doFilter(ctx, next);
+        } catch (Throwable t) {
+            //与NettyCoreProcessor处理同步异常的方式一致
+            ResponseCode code = ResponseCode.INTERNAL_ERROR;
+            if (t instanceof LimitedException) {
+                code = ResponseCode.FLOW_CONTROL_ERROR;
+            } else if (t instanceof BaseException) {
+                code = ((BaseException) t).getCode();
+            } else {
+                log.error("处理未知错误", t);
+            }
+            ctx.getNettyCtx().writeAndFlush(ResponseHelper.getHttpResponse(code))
+                    .addListener(ChannelFutureListener.CLOSE);
+            //流式转发的请求体一并释放
+            ctx.releaseRequest();
+            ctx.invokeCompletedCallBack();
+        }
+    }
 }
@@ -3,12 +3,13 @@ import blossom.project.common.config.Rule;
 import blossom.project.common.constant.FilterConst;
 import blossom.project.core.context.GatewayContext;
 import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
+import blossom.project.core.cache.CacheSpec;
+import blossom.project.core.cache.GatewayCacheManager;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
 @Slf4j
 public class GatewayFilterChainChainFactory implements FilterChainFactory{
     private static class SinletonHolder {
@@ -24,8 +25,8 @@ public class GatewayFilterChainChainFactory implements FilterChainFactory{
     /**
      * 使用Caffeine缓存 并且设定过期时间10min
      */
-    private Cache<String, GatewayFilterChain> chainCache = Caffeine.newBuilder().recordStats().expireAfterWrite(10,
-            TimeUnit.MINUTES).build();
+    private Cache<String, GatewayFilterChain> chainCache = GatewayCacheManager.getInstance().create("filter_chain",
+            CacheSpec.<GatewayFilterChain>newSpec().expireAfterWrite(Duration.ofMinutes(10)));
     /**
      * 过滤器存储映射 过滤器id - 过滤器
      */
@@ -66,6 +67,10 @@ public class GatewayFilterChainChainFactory implements FilterChainFactory{
      */
     @Override
     public GatewayFilterChain buildFilterChain(GatewayContext ctx) throws Exception {
+        //路由计划随规则版本重建，其中的过滤器链不会在规则变更后继续使用
+        if (ctx.getRoutePlan() != null) {
+            return ctx.getRoutePlan().getFilterChain();
+        }
         return chainCache.get(ctx.getRule().getId(),k->doBuildFilterChain(ctx.getRule()));
         //return doBuildFilterChain(ctx.getRule());
     }
@@ -98,6 +103,8 @@ public class GatewayFilterChainChainFactory implements FilterChainFactory{
         }
         //添加路由过滤器-这是最后一步
         filters.add(getFilterInfo(FilterConst.ROUTER_FILTER_ID));
+        //没有注册的过滤器不加入过滤器链
+        filters.removeIf(Objects::isNull);
         //排序
         filters.sort(Comparator.comparingInt(Filter::getOrder));
         //添加到链表中
@@ -5,7 +5,6 @@ package blossom.project.core.filter.Mock;
  */
 
 import blossom.project.common.config.Rule;
-import blossom.project.common.utils.JSONUtil;
 import blossom.project.core.context.GatewayContext;
 import blossom.project.core.filter.Filter;
 import blossom.project.core.filter.FilterAspect;
@@ -29,9 +28,9 @@ public class MockFilter implements Filter {
         if(config==null){
             return;
         }
-        //解析
-        Map<String,String> map=JSONUtil.parse(config.getConfig(),Map.class);
-        String value=map.get(ctx.getRequest().getMethod().name() + " " + ctx.getRequest().getPath());
+        //规则下发时已经解析过
+        Map<String,Object> map=config.getConfigMap();
+        Object value=map.get(ctx.getRequest().getMethod().name() + " " + ctx.getRequest().getPath());
         //不为空说明命中了mock规则
         if(value!=null){
             ctx.setResponse(GatewayResponse.buildGatewayResponse(value));
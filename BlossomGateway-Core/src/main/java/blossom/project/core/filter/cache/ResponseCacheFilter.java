@@ -0,0 +1,267 @@
+package blossom.project.core.filter.cache;
+
+import blossom.project.common.config.Rule;
+import blossom.project.core.cache.CachedResponse;
+import blossom.project.core.cache.ResponseCache;
+import blossom.project.core.cache.ResponseCachePolicy;
+import blossom.project.core.context.GatewayContext;
+import blossom.project.core.filter.Filter;
+import blossom.project.core.filter.FilterAspect;
+import blossom.project.core.filter.loadbalance.LoadBalanceFilter;
+import blossom.project.core.helper.AsyncHttpHelper;
+import blossom.project.core.helper.ResponseHelper;
+import blossom.project.core.request.GatewayRequest;
+import blossom.project.core.response.GatewayResponse;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.cookie.Cookie;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.asynchttpclient.RequestBuilder;
+
+import java.util.Map;
+
+import static blossom.project.common.constant.FilterConst.*;
+
+/** ResponseCacheFilter类
+ * 响应缓存过滤器，在路由之前处理GET请求
+ * 命中缓存时直接写回缓存的响应，请求带有匹配的If-None-Match时返回304
+ * 未命中时在上下文中记录缓存键，下游响应由RouterFilter写回时存入缓存
+ * 请求带有Authorization或用户JWT且缓存键不含userId时，只缓存下游明确允许共享的响应
+ * 请求的Cache-Control为no-store时不使用缓存，为no-cache或max-age=0时跳过缓存直接请求下游
+ * 过期的缓存在stale-while-revalidate时间内直接返回，同时在后台向下游发起一次条件请求刷新缓存
+ * 超过该时间后照常请求下游，在stale-if-error时间内下游超时、连接失败、返回5xx或熔断时由RouterFilter返回过期的缓存
+ */
+@Slf4j
+@FilterAspect(id = RESPONSE_CACHE_FILTER_ID,
+        name = RESPONSE_CACHE_FILTER_NAME,
+        order = RESPONSE_CACHE_FILTER_ORDER)
+public class ResponseCacheFilter implements Filter {
+
+    private static final String KEY_PATH = "path";
+
+    private static final String KEY_QUERY = "query";
+
+    private static final String KEY_USER_ID = "userId";
+
+    private static final String KEY_CLIENT_IP = "clientIp";
+
+    private static final String KEY_HEADER = "header:";
+
+    private static final String KEY_COOKIE = "cookie:";
+
+    @Override
+    public void doFilter(GatewayContext ctx) throws Exception {
+        Rule.FilterConfig config = ctx.getRule().getFilterConfig(RESPONSE_CACHE_FILTER_ID);
+        GatewayRequest request = ctx.getRequest();
+        if (config == null || !HttpMethod.GET.equals(request.getMethod()) || request.isStreaming()) {
+            return;
+        }
+        String requestCacheControl = StringUtils.lowerCase(request.getHeaders().get(HttpHeaderNames.CACHE_CONTROL));
+        if (requestCacheControl != null && requestCacheControl.contains("no-store")) {
+            return;
+        }
+        Map<String, Object> configMap = config.getConfigMap();
+        String composition = String.valueOf(configMap.getOrDefault(RESPONSE_CACHE_KEY, RESPONSE_CACHE_DEFAULT_KEY));
+        String key = cacheKey(ctx, composition);
+        String variantKey = ResponseCache.getInstance().variantKey(key, request.getHeaders());
+        boolean revalidate = requestCacheControl != null
+                && (requestCacheControl.contains("no-cache") || requestCacheControl.contains("max-age=0"));
+        ResponseCachePolicy policy = new ResponseCachePolicy(
+                seconds(configMap.get(RESPONSE_CACHE_TTL), RESPONSE_CACHE_DEFAULT_TTL),
+                seconds(configMap.get(RESPONSE_CACHE_STALE_WHILE_REVALIDATE), 0),
+                seconds(configMap.get(RESPONSE_CACHE_STALE_IF_ERROR), 0),
+                isAuthenticated(request) && !isKeyedByUser(composition));
+        CachedResponse cached = revalidate ? null : ResponseCache.getInstance().acquire(variantKey);
+        if (cached != null) {
+            boolean fresh = cached.isFresh();
+            if (fresh || cached.isStaleWhileRevalidate()) {
+                GatewayResponse response;
+                try {
+                    if (!fresh) {
+                        //刷新请求要在写回响应、释放请求之前构建
+                        revalidate(ctx, key, variantKey, cached, policy);
+                    }
+                    response = buildResponse(request, cached);
+                } finally {
+                    cached.release();
+                }
+                ctx.setResponse(response);
+                ctx.written();
+                ResponseHelper.writeResponse(ctx);
+                ctx.terminated();
+                return;
+            }
+            if (cached.isStaleIfError()) {
+                //上下文持有取得的引用，请求结束时释放
+                ctx.setStaleResponse(cached);
+                ctx.setCompletedCallBack(c -> ((GatewayContext) c).releaseStaleResponse());
+            } else {
+                cached.release();
+            }
+        }
+        ctx.setResponseCacheKey(key);
+        ctx.setResponseCachePolicy(policy);
+    }
+
+    /**
+     * 请求是否带有身份信息：Authorization请求头或者鉴权过滤器解析出的用户ID
+     */
+    static boolean isAuthenticated(GatewayRequest request) {
+        return request.getHeaders().contains(HttpHeaderNames.AUTHORIZATION) || request.getUserId() != 0;
+    }
+
+    /**
+     * 缓存键是否区分用户
+     */
+    static boolean isKeyedByUser(String composition) {
+        for (String part : composition.split(",")) {
+            if (KEY_USER_ID.equals(part.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long seconds(Object value, long defaultValue) {
+        return value instanceof Number ? ((Number) value).longValue() : defaultValue;
+    }
+
+    /**
+     * 下游出错时获取可以返回的过期缓存，上下文持有的引用在请求结束时释放
+     * @return 没有可以使用的过期缓存时返回null
+     */
+    public static GatewayResponse staleResponse(GatewayContext ctx) {
+        CachedResponse cached = ctx.getStaleResponse();
+        if (cached == null || !cached.isStaleIfError()) {
+            return null;
+        }
+        return buildResponse(ctx.getRequest(), cached);
+    }
+
+    /**
+     * 后台刷新过期的缓存，带上缓存的ETag发起条件请求，返回304时重新计时，返回200时替换缓存
+     * 同一个缓存键同时只有一个刷新请求，刷新失败时保留原来的缓存
+     * 刷新请求持有自己的响应体引用，请求结束后释放，期间缓存淘汰不影响重新计时
+     * @param key 基础缓存键，返回200时按新响应的Vary重新计算缓存键
+     * @param variantKey 过期缓存所在的缓存键
+     */
+    private static void revalidate(GatewayContext ctx, String key, String variantKey, CachedResponse cached,
+                                   ResponseCachePolicy policy) {
+        ResponseCache responseCache = ResponseCache.getInstance();
+        if (!responseCache.beginRevalidate(variantKey)) {
+            return;
+        }
+        CachedResponse held = cached.retain();
+        HttpHeaders requestHeaders = ctx.getRequest().getHeaders();
+        try {
+            //缓存过滤器在负载均衡过滤器之前执行，这里自行选择实例，没有配置负载均衡时沿用请求当前的目标地址
+            LoadBalanceFilter.reselect(ctx);
+            RequestBuilder builder = new RequestBuilder(ctx.getRequest().build());
+            if (cached.getEtag() != null) {
+                builder.setHeader(HttpHeaderNames.IF_NONE_MATCH, cached.getEtag());
+            }
+            AsyncHttpHelper.getInstance().executeRequest(builder.build()).whenComplete((response, throwable) -> {
+                try {
+                    if (throwable != null) {
+                        log.warn("revalidate {} failed", variantKey, throwable);
+                    } else if (response.getStatusCode() == HttpResponseStatus.NOT_MODIFIED.code()) {
+                        responseCache.renew(variantKey, held);
+                    } else {
+                        responseCache.store(key, policy, requestHeaders, response);
+                    }
+                } finally {
+                    held.release();
+                    responseCache.endRevalidate(variantKey);
+                }
+            });
+        } catch (Exception e) {
+            held.release();
+            responseCache.endRevalidate(variantKey);
+            log.warn("revalidate {} failed", variantKey, e);
+        }
+    }
+
+    /**
+     * 根据缓存的响应构建网关响应，If-None-Match与缓存的ETag匹配时返回304
+     * 调用方必须持有缓存响应的引用
+     */
+    private static GatewayResponse buildResponse(GatewayRequest request, CachedResponse cached) {
+        GatewayResponse response = new GatewayResponse();
+        String ifNoneMatch = request.getHeaders().get(HttpHeaderNames.IF_NONE_MATCH);
+        if (cached.getEtag() != null && ifNoneMatch != null && matches(ifNoneMatch, cached.getEtag())) {
+            HttpHeaders headers = new DefaultHttpHeaders();
+            headers.set(HttpHeaderNames.ETAG, cached.getEtag());
+            copyIfPresent(cached.getHeaders(), headers, HttpHeaderNames.CACHE_CONTROL);
+            copyIfPresent(cached.getHeaders(), headers, HttpHeaderNames.VARY);
+            response.setResponseHeaders(headers);
+            response.setHttpResponseStatus(HttpResponseStatus.NOT_MODIFIED);
+            response.setBody(Unpooled.EMPTY_BUFFER);
+        } else {
+            response.setResponseHeaders(new DefaultHttpHeaders().add(cached.getHeaders()));
+            response.setHttpResponseStatus(HttpResponseStatus.valueOf(cached.getStatus()));
+            response.setBody(cached.retainedBody());
+        }
+        response.getResponseHeaders().set(HttpHeaderNames.AGE, cached.getAgeSeconds());
+        return response;
+    }
+
+    static boolean matches(String ifNoneMatch, String etag) {
+        String target = weak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if ("*".equals(value) || weak(value).equals(target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * If-None-Match按弱比较处理，忽略W/前缀
+     */
+    private static String weak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private static void copyIfPresent(HttpHeaders from, HttpHeaders to, CharSequence name) {
+        String value = from.get(name);
+        if (value != null) {
+            to.set(name, value);
+        }
+    }
+
+    /**
+     * 按规则配置的组成部分拼接缓存键
+     */
+    private static String cacheKey(GatewayContext ctx, String composition) {
+        GatewayRequest request = ctx.getRequest();
+        StringBuilder key = new StringBuilder(ctx.getUniqueId());
+        for (String part : composition.split(",")) {
+            String component = part.trim();
+            key.append('|');
+            if (KEY_PATH.equals(component)) {
+                key.append(request.getPath());
+            } else if (KEY_QUERY.equals(component)) {
+                int index = request.getUri().indexOf('?');
+                if (index >= 0) {
+                    key.append(request.getUri(), index + 1, request.getUri().length());
+                }
+            } else if (KEY_USER_ID.equals(component)) {
+                key.append(request.getUserId());
+            } else if (KEY_CLIENT_IP.equals(component)) {
+                key.append(request.getClientIp());
+            } else if (component.startsWith(KEY_HEADER)) {
+                key.append(StringUtils.defaultString(request.getHeaders().get(component.substring(KEY_HEADER.length()))));
+            } else if (component.startsWith(KEY_COOKIE)) {
+                Cookie cookie = request.getCookie(component.substring(KEY_COOKIE.length()));
+                key.append(cookie == null ? "" : cookie.value());
+            }
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,237 @@
+package blossom.project.core.filter.flow;
+
+import blossom.project.common.config.Rule;
+import blossom.project.common.enums.ResponseCode;
+import blossom.project.common.exception.LimitedException;
+import blossom.project.core.context.GatewayContext;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/** AdaptiveConcurrencyLimiter类提供自适应并发限流能力
+ * 根据下游响应时间调整允许的在途请求数，采用梯度算法：
+ * 短期RTT为最近一个统计窗口的平均响应时间，长期RTT为短期RTT的指数平均
+ * 新的限制 = 当前限制 * clamp(容忍系数 * 长期RTT / 短期RTT, 0.5, 1) + sqrt(当前限制)
+ * 响应时间上升时限制随之收缩，响应时间平稳时按队列长度sqrt(限制)缓慢增长
+ * 窗口内超时和连接异常的比例超过阈值时按比例退避，下游返回5xx只是不参与RTT统计，不触发退避
+ * 在途请求数达到限制的请求直接拒绝，不排队
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter implements GatewayFlowControlRule {
+
+    private static final int INITIAL_LIMIT = 20;
+
+    private static final int MIN_LIMIT = 1;
+
+    /**
+     * 没有配置concurrency时的最大限制
+     */
+    private static final int DEFAULT_MAX_LIMIT = 1000;
+
+    /**
+     * 统计窗口的最短时间和最少请求数，两者都满足时才调整限制
+     */
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final int MIN_WINDOW_SAMPLES = 10;
+
+    /**
+     * 长期RTT的平滑窗口，按统计窗口个数计
+     */
+    private static final int LONG_WINDOW = 100;
+
+    /**
+     * 短期RTT不超过长期RTT的这个倍数时不收缩限制
+     */
+    private static final double RTT_TOLERANCE = 1.5;
+
+    private static final double SMOOTHING = 0.2;
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    /**
+     * 窗口内超时和连接异常占全部请求的比例达到该值时退避
+     */
+    private static final double DROP_RATE_THRESHOLD = 0.05;
+
+    private final String name;
+
+    private final int maxLimit;
+
+    private volatile double limit;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    /**
+     * 当前窗口内成功请求的响应时间之和与个数，以及全部请求数
+     */
+    private final LongAdder rttSum = new LongAdder();
+
+    private final LongAdder rttCount = new LongAdder();
+
+    private final LongAdder sampleCount = new LongAdder();
+
+    /**
+     * 当前窗口内超时和连接异常的请求数
+     */
+    private final LongAdder dropCount = new LongAdder();
+
+    /**
+     * 当前窗口内在途请求数是否达到过限制的一半，没达到时说明流量不足，不增长限制
+     */
+    private volatile boolean saturated;
+
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+
+    /**
+     * 长期RTT，只在结算窗口的线程中读写
+     */
+    private double longRtt;
+
+    public AdaptiveConcurrencyLimiter(String name, int maxLimit) {
+        this.name = name;
+        this.maxLimit = maxLimit;
+        this.limit = Math.min(INITIAL_LIMIT, maxLimit);
+    }
+
+    /**
+     * 服务.限流对象 - 限流器
+     */
+    private static ConcurrentHashMap<String, AdaptiveConcurrencyLimiter> limiterMap = new ConcurrentHashMap<>();
+
+    /**
+     * 获取自适应限流器，concurrency配置变更后重新创建
+     * @param serviceId
+     * @param flowControlConfig
+     * @return
+     */
+    public static AdaptiveConcurrencyLimiter getInstance(String serviceId, Rule.FlowControlConfig flowControlConfig) {
+        String key = StringUtils.isEmpty(flowControlConfig.getValue()) ? serviceId
+                : serviceId + "." + flowControlConfig.getValue();
+        int maxLimit = flowControlConfig.getConcurrency() > 0 ? flowControlConfig.getConcurrency() : DEFAULT_MAX_LIMIT;
+        AdaptiveConcurrencyLimiter limiter = limiterMap.get(key);
+        if (limiter == null || limiter.maxLimit != maxLimit) {
+            limiter = limiterMap.compute(key, (k, current) -> current != null && current.maxLimit == maxLimit
+                    ? current : new AdaptiveConcurrencyLimiter(k, maxLimit));
+        }
+        return limiter;
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    /**
+     * 占用一个在途许可，请求结束时归还，每次发往下游的响应时间由RouterFilter回报
+     *
+     * @param ctx
+     * @param flowControlConfig
+     * @param serviceId
+     */
+    @Override
+    public void doFlowControlFilter(GatewayContext ctx, Rule.FlowControlConfig flowControlConfig, String serviceId) {
+        if (!tryAcquire()) {
+            throw new LimitedException(ResponseCode.FLOW_CONTROL_ERROR);
+        }
+        ctx.addAdaptiveLimiter(this);
+        ctx.setCompletedCallBack(c -> inflight.decrementAndGet());
+    }
+
+    private boolean tryAcquire() {
+        int max = (int) limit;
+        while (true) {
+            int current = inflight.get();
+            if (current >= max) {
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                if (!saturated && (current + 1) * 2 >= max) {
+                    saturated = true;
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 下游请求是否因为超时或者连接异常而失败，只有这类失败说明下游已经过载
+     */
+    public static boolean isDropped(Throwable throwable) {
+        return throwable instanceof TimeoutException || throwable instanceof IOException;
+    }
+
+    /**
+     * 记录一次下游请求的结果
+     * @param rttNanos 响应时间
+     * @param failed 请求异常或下游返回5xx，失败请求的响应时间不参与统计
+     * @param dropped 请求超时或者连接异常，窗口内的比例超过阈值时退避
+     */
+    public void onSample(long rttNanos, boolean failed, boolean dropped) {
+        if (dropped) {
+            dropCount.increment();
+        } else if (!failed) {
+            rttSum.add(rttNanos);
+            rttCount.increment();
+        }
+        sampleCount.increment();
+        long start = windowStart.get();
+        long now = System.nanoTime();
+        if (now - start < WINDOW_NANOS || sampleCount.sum() < MIN_WINDOW_SAMPLES) {
+            return;
+        }
+        //只有一个线程结算窗口
+        if (!windowStart.compareAndSet(start, now)) {
+            return;
+        }
+        long samples = sampleCount.sumThenReset();
+        long drops = dropCount.sumThenReset();
+        long count = rttCount.sumThenReset();
+        long sum = rttSum.sumThenReset();
+        boolean windowSaturated = saturated;
+        saturated = false;
+        update(count == 0 ? 0 : (double) sum / count, drops >= samples * DROP_RATE_THRESHOLD, windowSaturated);
+    }
+
+    private void update(double shortRtt, boolean windowDropped, boolean windowSaturated) {
+        double current = limit;
+        double newLimit;
+        if (windowDropped) {
+            newLimit = current * BACKOFF_RATIO;
+        } else if (shortRtt <= 0) {
+            return;
+        } else {
+            if (longRtt == 0) {
+                longRtt = shortRtt;
+            } else {
+                longRtt += (shortRtt - longRtt) / LONG_WINDOW;
+                //下游恢复后长期RTT偏高，加快回落
+                if (longRtt > shortRtt * 2) {
+                    longRtt *= 0.95;
+                }
+            }
+            if (!windowSaturated) {
+                return;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRtt / shortRtt));
+            newLimit = current * gradient + Math.sqrt(current);
+            newLimit = current * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        }
+        newLimit = Math.max(MIN_LIMIT, Math.min(maxLimit, newLimit));
+        if ((int) newLimit != (int) current && log.isDebugEnabled()) {
+            log.debug("adaptive limit {} changed {} -> {}, shortRtt {}us, longRtt {}us", name, (int) current,
+                    (int) newLimit, (long) shortRtt / 1000, (long) longRtt / 1000);
+        }
+        limit = newLimit;
+    }
+}
@@ -3,11 +3,10 @@ package blossom.project.core.filter.flow;
 import blossom.project.common.config.Rule;
 import blossom.project.common.enums.ResponseCode;
 import blossom.project.common.exception.LimitedException;
-import blossom.project.core.util.JedisUtil;
-import com.alibaba.fastjson.JSON;
+import blossom.project.core.context.GatewayContext;
 import org.apache.commons.lang3.StringUtils;
 
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 import static blossom.project.common.constant.FilterConst.*;
@@ -42,51 +41,71 @@ public class FlowControlByPathRule implements GatewayFlowControlRule{
         FlowControlByPathRule flowControlByPathRule = servicePathMap.get(key);
         //当前服务不存在限流规则 则保存之
         if (flowControlByPathRule == null) {
-            flowControlByPathRule = new FlowControlByPathRule(serviceId, path, new RedisCountLimiter(new JedisUtil()));
-            servicePathMap.put(key, flowControlByPathRule);
+            flowControlByPathRule = servicePathMap.computeIfAbsent(key,
+                    k -> new FlowControlByPathRule(serviceId, path, new RedisCountLimiter()));
         }
         return flowControlByPathRule;
     }
     /**
      * 根据路径执行流控
      *
+     * @param ctx
      * @param flowControlConfig
      * @param serviceId
      */
     @Override
-    public void doFlowControlFilter(Rule.FlowControlConfig flowControlConfig, String serviceId) {
-        if(flowControlConfig==null|| StringUtils.isEmpty(serviceId)||StringUtils.isEmpty(flowControlConfig.getConfig())){
+    public void doFlowControlFilter(GatewayContext ctx, Rule.FlowControlConfig flowControlConfig, String serviceId) {
+        if(flowControlConfig==null|| StringUtils.isEmpty(serviceId)){
             return;
         }
-        //获得当前路径对应的流控次数
-        Map<String, Integer> configMap = JSON.parseObject(flowControlConfig.getConfig(), Map.class);
-        //判断是否包含流控规则
-        if (!configMap.containsKey(FLOW_CTL_LIMIT_DURATION) || !configMap.containsKey(FLOW_CTL_LIMIT_PERMITS)) {
+        //判断是否包含流控规则 规则下发时已经解析过
+        if (!flowControlConfig.isLimited()) {
             return;
         }
-        //得到流控时间和时间内限制次数
-        double duration = configMap.get(FLOW_CTL_LIMIT_DURATION);
-        double permits = configMap.get(FLOW_CTL_LIMIT_PERMITS);
-        StringBuffer buffer = new StringBuffer();
-        //当前请求是否触发流控标志位
-        boolean flag = false;
-        String key = buffer.append(serviceId).append(".").append(path).toString();
-        if(FLOW_CTL_MODEL_DISTRIBUTED.equalsIgnoreCase(flowControlConfig.getModel())){
-            flag= redisCountLimiter.doFlowControl(key,(int)permits,(int)duration);
-        }else{
-            //guava 单机
-            GuavaCountLimiter guavaCountLimiter = GuavaCountLimiter.getInstance(serviceId, flowControlConfig);
-            if(guavaCountLimiter==null){
-                throw new RuntimeException("获取单机限流工具类为空");
-            }
-            double count=Math.ceil(permits/duration);
-            flag=guavaCountLimiter.acquire((int)count);
+        if(RedisCountLimiter.isRedisModel(flowControlConfig.getModel())){
+            //得到流控时间和时间内限制次数 异步等待Redis的结果 不阻塞当前线程
+            String key = serviceId + "." + path;
+            checkLimited(ctx, redisCountLimiter.doFlowControlAsync(flowControlConfig.getModel(),key,
+                    flowControlConfig.getPermits(),flowControlConfig.getDuration()));
+            return;
+        }
+        if(FLOW_CTL_MODEL_LEASED.equalsIgnoreCase(flowControlConfig.getModel())){
+            //本地有租到的许可时不访问Redis
+            String key = serviceId + "." + path;
+            checkLimited(ctx, LeasedQuotaLimiter.getInstance(key, flowControlConfig).acquire());
+            return;
+        }
+        //令牌桶 单机 每个请求获取一个令牌
+        TokenBucketLimiter tokenBucketLimiter = TokenBucketLimiter.getInstance(serviceId, flowControlConfig);
+        if(tokenBucketLimiter==null){
+            throw new RuntimeException("获取单机限流工具类为空");
         }
-        if(!flag){
+        checkLimited(tokenBucketLimiter.tryAcquire());
+    }
+
+    /**
+     * 没有通过流控时抛出限流异常
+     * @param passed 是否放行
+     */
+    static void checkLimited(boolean passed) {
+        if(!passed){
             throw new LimitedException(ResponseCode.FLOW_CONTROL_ERROR);
         }
     }
 
+    /**
+     * 已经有结果时直接判断，否则挂起过滤器链等待结果
+     * @param ctx
+     * @param result 是否放行
+     */
+    static void checkLimited(GatewayContext ctx, CompletableFuture<Boolean> result) {
+        if(result.isDone() && !result.isCompletedExceptionally()){
+            checkLimited(result.join());
+        }else{
+            ctx.suspend(result.thenAccept(FlowControlByPathRule::checkLimited));
+        }
+    }
+
 
 
 
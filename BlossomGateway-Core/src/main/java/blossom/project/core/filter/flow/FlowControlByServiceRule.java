@@ -1,6 +1,132 @@
 package blossom.project.core.filter.flow;
 
+import blossom.project.common.config.Rule;
+import blossom.project.common.enums.ResponseCode;
+import blossom.project.common.exception.LimitedException;
+import blossom.project.core.context.GatewayContext;
+import org.apache.commons.lang3.StringUtils;
 
-/** FlowControlByServiceRule类*/
-public class FlowControlByServiceRule {
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static blossom.project.common.constant.FilterConst.FLOW_CTL_MODEL_LEASED;
+
+/** FlowControlByServiceRule类
+ * 服务级流控，服务下全部路径的请求共用同一个限流额度
+ * 速率限制支持单机、分布式和租约三种模式，分布式模式的Redis key为服务名，路径流控的key带有路径，两者不会冲突
+ * 并发限制统计当前网关节点上该服务的在途请求数
+ * 并发许可在请求完成的回调中归还
+ */
+public class FlowControlByServiceRule implements GatewayFlowControlRule {
+
+    private String serviceId;
+
+    private RedisCountLimiter redisCountLimiter;
+
+    /**
+     * 当前在途请求数
+     */
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    public FlowControlByServiceRule(String serviceId, RedisCountLimiter redisCountLimiter) {
+        this.serviceId = serviceId;
+        this.redisCountLimiter = redisCountLimiter;
+    }
+
+    /**
+     * 存放服务-流控规则的map
+     */
+    private static ConcurrentHashMap<String, FlowControlByServiceRule> serviceMap = new ConcurrentHashMap<>();
+
+    /**
+     * 通过服务id获取服务流控规则
+     *
+     * @param serviceId
+     * @return
+     */
+    public static FlowControlByServiceRule getInstance(String serviceId) {
+        FlowControlByServiceRule flowControlByServiceRule = serviceMap.get(serviceId);
+        if (flowControlByServiceRule == null) {
+            flowControlByServiceRule = serviceMap.computeIfAbsent(serviceId,
+                    k -> new FlowControlByServiceRule(serviceId, new RedisCountLimiter()));
+        }
+        return flowControlByServiceRule;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    /**
+     * 先做速率限制，通过后再占用并发许可，被速率限制拒绝的请求不占用并发许可
+     * 需要等待Redis结果时在结果返回后再占用并发许可，等待期间不占用
+     *
+     * @param ctx
+     * @param flowControlConfig
+     * @param serviceId
+     */
+    @Override
+    public void doFlowControlFilter(GatewayContext ctx, Rule.FlowControlConfig flowControlConfig, String serviceId) {
+        if (flowControlConfig == null || StringUtils.isEmpty(serviceId)) {
+            return;
+        }
+        CompletableFuture<Boolean> result = null;
+        if (flowControlConfig.isLimited()) {
+            if (RedisCountLimiter.isRedisModel(flowControlConfig.getModel())) {
+                result = redisCountLimiter.doFlowControlAsync(flowControlConfig.getModel(), serviceId,
+                        flowControlConfig.getPermits(), flowControlConfig.getDuration());
+            } else if (FLOW_CTL_MODEL_LEASED.equalsIgnoreCase(flowControlConfig.getModel())) {
+                result = LeasedQuotaLimiter.getInstance(serviceId, flowControlConfig).acquire();
+            } else {
+                FlowControlByPathRule.checkLimited(tryAcquireRate(flowControlConfig, serviceId));
+            }
+        }
+        int concurrency = flowControlConfig.getConcurrency();
+        if (result == null || (result.isDone() && !result.isCompletedExceptionally())) {
+            if (result != null) {
+                FlowControlByPathRule.checkLimited(result.join());
+            }
+            acquireConcurrency(ctx, concurrency);
+        } else {
+            //异步等待Redis的结果，被拒绝时不再占用并发许可
+            ctx.suspend(result.thenAccept(passed -> {
+                FlowControlByPathRule.checkLimited(passed);
+                acquireConcurrency(ctx, concurrency);
+            }));
+        }
+    }
+
+    /**
+     * 占用并发许可，请求完成时在回调中归还
+     */
+    private void acquireConcurrency(GatewayContext ctx, int concurrency) {
+        if (concurrency <= 0) {
+            return;
+        }
+        if (!tryAcquireConcurrency(concurrency)) {
+            throw new LimitedException(ResponseCode.FLOW_CONTROL_ERROR);
+        }
+        ctx.setCompletedCallBack(c -> inflight.decrementAndGet());
+    }
+
+    private boolean tryAcquireRate(Rule.FlowControlConfig flowControlConfig, String serviceId) {
+        TokenBucketLimiter tokenBucketLimiter = TokenBucketLimiter.getInstance(serviceId, flowControlConfig);
+        if (tokenBucketLimiter == null) {
+            throw new RuntimeException("获取单机限流工具类为空");
+        }
+        return tokenBucketLimiter.tryAcquire();
+    }
+
+    private boolean tryAcquireConcurrency(int concurrency) {
+        while (true) {
+            int current = inflight.get();
+            if (current >= concurrency) {
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
 }
@@ -2,13 +2,11 @@ package blossom.project.core.filter.flow;
 
 import blossom.project.common.config.Rule;
 import blossom.project.core.context.GatewayContext;
+import blossom.project.core.context.RoutePlan;
 import blossom.project.core.filter.Filter;
 import blossom.project.core.filter.FilterAspect;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Iterator;
-import java.util.Set;
-
 import static blossom.project.common.constant.FilterConst.*;
 
 /** FlowControlFilter类
@@ -22,30 +20,32 @@ import static blossom.project.common.constant.FilterConst.*;
 public class FlowControlFilter implements Filter {
     @Override
     public void doFilter(GatewayContext ctx) throws Exception {
-            Rule rule=ctx.getRule();
-            if(rule!=null){
-                Set<Rule.FlowControlConfig> flowControlConfigs=rule.getFlowControlConfigs();
-                Iterator iterator=flowControlConfigs.iterator();
-                Rule.FlowControlConfig flowControlConfig;
-                while (iterator.hasNext()) {
-                    GatewayFlowControlRule flowControlRule=null;
-                    flowControlConfig=(Rule.FlowControlConfig) iterator.next();
-                    if(flowControlConfig==null){
-                        continue;
-                    }
-                    //*http-server*//ping
-                    String path=ctx.getRequest().getPath();
-                    if(flowControlConfig.getType().equalsIgnoreCase(FLOW_CTL_TYPE_PATH)&&
-                    path.equals(flowControlConfig.getValue())){
-                        flowControlRule=FlowControlByPathRule.getInstance(rule.getServiceId(),path);
-                    }else if(flowControlConfig.getType().equalsIgnoreCase(FLOW_CTL_TYPE_SERVICE)){
-                        //todo 可以实现自己的服务流控
-                    }
-                    if(flowControlRule!=null){
-                        //流量控制
-                        flowControlRule.doFlowControlFilter(flowControlConfig,rule.getServiceId() );
-                    }
+            //路由计划中只保留了当前路径需要执行的流控配置
+            RoutePlan routePlan=ctx.getRoutePlan();
+            Rule rule=routePlan.getRule();
+            for(Rule.FlowControlConfig flowControlConfig:routePlan.getFlowControlConfigs()){
+                GatewayFlowControlRule flowControlRule=getFlowControlRule(rule,flowControlConfig,ctx.getRequest().getPath());
+                if(flowControlRule!=null){
+                    //流量控制
+                    flowControlRule.doFlowControlFilter(ctx,flowControlConfig,rule.getServiceId() );
                 }
             }
     }
+
+    /**
+     * 根据流控类型和模式选择流控规则，自适应模式按服务或路径各自维护在途请求数上限
+     */
+    private static GatewayFlowControlRule getFlowControlRule(Rule rule, Rule.FlowControlConfig flowControlConfig,
+                                                             String path) {
+        if (FLOW_CTL_MODEL_ADAPTIVE.equalsIgnoreCase(flowControlConfig.getModel())) {
+            return AdaptiveConcurrencyLimiter.getInstance(rule.getServiceId(), flowControlConfig);
+        }
+        if (flowControlConfig.getType().equalsIgnoreCase(FLOW_CTL_TYPE_PATH)) {
+            return FlowControlByPathRule.getInstance(rule.getServiceId(), path);
+        }
+        if (flowControlConfig.getType().equalsIgnoreCase(FLOW_CTL_TYPE_SERVICE)) {
+            return FlowControlByServiceRule.getInstance(rule.getServiceId());
+        }
+        return null;
+    }
 }
@@ -1,6 +1,7 @@
 package blossom.project.core.filter.flow;
 
 import blossom.project.common.config.Rule;
+import blossom.project.core.context.GatewayContext;
 
 /**
  * 网关流控规则接口
@@ -9,8 +10,9 @@ public interface GatewayFlowControlRule {
 
     /**
      * 执行流控规则过滤器
+     * @param ctx 需要在请求结束时归还的许可通过ctx注册完成回调
      * @param flowControlConfig
      * @param serviceId
      */
-    void doFlowControlFilter(Rule.FlowControlConfig flowControlConfig, String serviceId);
+    void doFlowControlFilter(GatewayContext ctx, Rule.FlowControlConfig flowControlConfig, String serviceId);
 }
@@ -0,0 +1,213 @@
+package blossom.project.core.filter.flow;
+
+import blossom.project.common.config.Rule;
+import blossom.project.core.util.LuaScript;
+import blossom.project.core.util.PipelinedJedisClient;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+/** LeasedQuotaLimiter类提供租约模式的分布式限流能力
+ * 网关节点每次从Redis租用一批许可（默认为窗口内总次数的5%），在本地扣减，剩余不足一半时异步续租
+ * 本地有许可时不访问Redis，只有许可用完并且续租还没返回的请求需要等待
+ * Redis计数与distributed模式相同，每个窗口发放的许可总数不超过permits，不会超发
+ * 误差为窗口结束时各节点未用完的许可，最多为节点数乘以单次租用的数量，通过lease_ratio调整
+ */
+@Slf4j
+public class LeasedQuotaLimiter {
+
+    private static final double DEFAULT_LEASE_RATIO = 0.05;
+
+    private static final CompletableFuture<Boolean> PASSED = CompletableFuture.completedFuture(true);
+
+    private static final CompletableFuture<Boolean> LIMITED = CompletableFuture.completedFuture(false);
+
+    /**
+     * 租用许可，KEYS[1]为限流key，ARGV[1]为时间窗口，ARGV[2]为窗口内允许的次数，ARGV[3]为希望租用的数量
+     * 返回实际租到的数量和窗口剩余的毫秒数
+     */
+    private static final LuaScript LEASE_SCRIPT = new LuaScript(
+            "local used = tonumber(redis.call('get', KEYS[1]) or '0')\n" +
+            "local grant = math.min(tonumber(ARGV[3]), tonumber(ARGV[2]) - used)\n" +
+            "if grant <= 0 then\n" +
+            "\treturn {0, redis.call('pttl', KEYS[1])}\n" +
+            "end\n" +
+            "if redis.call('incrby', KEYS[1], grant) == grant then\n" +
+            "\tredis.call('expire', KEYS[1], ARGV[1])\n" +
+            "end\n" +
+            "return {grant, redis.call('pttl', KEYS[1])}\n");
+
+    private final String key;
+
+    private final int duration;
+
+    private final int permits;
+
+    private final double leaseRatio;
+
+    private final long leaseSize;
+
+    /**
+     * 本地剩余许可数
+     */
+    private final AtomicLong remaining = new AtomicLong();
+
+    /**
+     * 本地许可所属窗口的结束时间，窗口结束后剩余的许可作废
+     */
+    private volatile long windowEndNanos = System.nanoTime();
+
+    /**
+     * Redis中当前窗口的许可已经发完，在此之前直接拒绝，不再续租
+     */
+    private volatile long exhaustedUntilNanos = System.nanoTime();
+
+    /**
+     * 正在进行的续租，同一时刻只有一个
+     */
+    private final AtomicReference<CompletableFuture<Boolean>> leasing = new AtomicReference<>();
+
+    /**
+     * 执行租用脚本，参数为KEYS和ARGV
+     */
+    private final BiFunction<List<String>, List<String>, CompletableFuture<Object>> leaseScript;
+
+    public LeasedQuotaLimiter(String key, int duration, int permits, double leaseRatio) {
+        this(key, duration, permits, leaseRatio,
+                (keys, args) -> PipelinedJedisClient.getInstance().evalsha(LEASE_SCRIPT, keys, args));
+    }
+
+    LeasedQuotaLimiter(String key, int duration, int permits, double leaseRatio,
+                       BiFunction<List<String>, List<String>, CompletableFuture<Object>> leaseScript) {
+        this.key = key;
+        this.leaseScript = leaseScript;
+        this.duration = duration;
+        this.permits = permits;
+        this.leaseRatio = leaseRatio;
+        this.leaseSize = Math.max(1, (long) Math.ceil(permits * leaseRatio));
+    }
+
+    /**
+     * 限流key - 限流器
+     */
+    private static ConcurrentHashMap<String, LeasedQuotaLimiter> limiterMap = new ConcurrentHashMap<>();
+
+    /**
+     * 获取租约限流器，限流配置变更后重新创建
+     * @param key 限流key，与distributed模式相同
+     * @param flowControlConfig
+     * @return
+     */
+    public static LeasedQuotaLimiter getInstance(String key, Rule.FlowControlConfig flowControlConfig) {
+        double leaseRatio = flowControlConfig.getLeaseRatio() > 0 ? flowControlConfig.getLeaseRatio()
+                : DEFAULT_LEASE_RATIO;
+        LeasedQuotaLimiter limiter = limiterMap.get(key);
+        if (limiter == null || !limiter.matches(flowControlConfig, leaseRatio)) {
+            limiter = limiterMap.compute(key, (k, current) -> current != null
+                    && current.matches(flowControlConfig, leaseRatio) ? current
+                    : new LeasedQuotaLimiter(k, flowControlConfig.getDuration(), flowControlConfig.getPermits(),
+                    leaseRatio));
+        }
+        return limiter;
+    }
+
+    private boolean matches(Rule.FlowControlConfig flowControlConfig, double leaseRatio) {
+        return duration == flowControlConfig.getDuration() && permits == flowControlConfig.getPermits()
+                && this.leaseRatio == leaseRatio;
+    }
+
+    /**
+     * 获取一个许可
+     * @return 本地有许可时返回已完成的结果，需要等待续租时返回续租完成后的结果，Redis不可用时放行
+     */
+    public CompletableFuture<Boolean> acquire() {
+        if (tryAcquireLocal()) {
+            return PASSED;
+        }
+        if (System.nanoTime() - exhaustedUntilNanos < 0) {
+            return LIMITED;
+        }
+        return lease().thenApply(available -> !available || tryAcquireLocal());
+    }
+
+    private boolean tryAcquireLocal() {
+        while (true) {
+            if (System.nanoTime() - windowEndNanos >= 0) {
+                return false;
+            }
+            long current = remaining.get();
+            if (current <= 0) {
+                return false;
+            }
+            if (remaining.compareAndSet(current, current - 1)) {
+                //剩余一半时提前续租
+                if (current - 1 == leaseSize / 2) {
+                    lease();
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 向Redis租用许可
+     * @return 是否成功访问Redis
+     */
+    private CompletableFuture<Boolean> lease() {
+        CompletableFuture<Boolean> future = leasing.get();
+        if (future != null) {
+            return future;
+        }
+        CompletableFuture<Boolean> created = new CompletableFuture<>();
+        if (!leasing.compareAndSet(null, created)) {
+            future = leasing.get();
+            return future != null ? future : lease();
+        }
+        leaseScript.apply(Collections.singletonList(key),
+                Arrays.asList(String.valueOf(duration), String.valueOf(permits), String.valueOf(leaseSize)))
+                .whenComplete((result, throwable) -> {
+                    boolean available = false;
+                    try {
+                        if (throwable != null) {
+                            log.error("租用分布式限流许可失败 {}", key, throwable);
+                        } else {
+                            onLeased((List<?>) result);
+                            available = true;
+                        }
+                    } catch (Exception e) {
+                        log.error("租用分布式限流许可失败 {}", key, e);
+                    } finally {
+                        leasing.set(null);
+                        created.complete(available);
+                    }
+                });
+        return created;
+    }
+
+    private void onLeased(List<?> result) {
+        long granted = ((Number) result.get(0)).longValue();
+        long ttl = ((Number) result.get(1)).longValue();
+        long now = System.nanoTime();
+        long windowEnd = now + (ttl > 0 ? TimeUnit.MILLISECONDS.toNanos(ttl) : TimeUnit.SECONDS.toNanos(duration));
+        if (granted <= 0) {
+            exhaustedUntilNanos = windowEnd;
+            return;
+        }
+        boolean expired = now - windowEndNanos >= 0;
+        //先更新窗口再发放许可，避免新许可被当作过期许可
+        windowEndNanos = windowEnd;
+        if (expired) {
+            remaining.set(granted);
+        } else {
+            remaining.addAndGet(granted);
+        }
+    }
+}
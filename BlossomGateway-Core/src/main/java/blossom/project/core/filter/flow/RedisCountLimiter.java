@@ -2,47 +2,91 @@ package blossom.project.core.filter.flow;
 
 
 import blossom.project.core.util.JedisUtil;
+import blossom.project.core.util.LuaScript;
+import blossom.project.core.util.PipelinedJedisClient;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static blossom.project.common.constant.FilterConst.FLOW_CTL_MODEL_DISTRIBUTED;
+import static blossom.project.common.constant.FilterConst.FLOW_CTL_MODEL_SLIDING_COUNTER;
+import static blossom.project.common.constant.FilterConst.FLOW_CTL_MODEL_SLIDING_LOG;
+
 /**RedisCountLimiter类提供Redis限流能力
- * Redis 用于实现分布式限流
+ * Redis 用于实现分布式限流，按模式选择固定窗口、滑动日志或滑动计数脚本
+ * Redis不可用时放行请求
  */
 @Slf4j
 public class RedisCountLimiter {
 
-    protected JedisUtil jedisUtil;
-
-    public RedisCountLimiter(JedisUtil jedisUtil) {
-        this.jedisUtil = jedisUtil;
-    }
-
-    private static final int SUCCESS_RESULT = 1;
     private static final int FAILED_RESULT = 0;
 
     /**
-     * 执行限流
+     * 滑动日志中请求的唯一标识 节点前缀加自增序号
+     */
+    private static final String NODE_ID = UUID.randomUUID().toString();
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    /**
+     * 异步执行限流，多个请求的限流命令合并到同一次Redis往返中
      *
      * @param key    限流key 服务+路径
      * @param limit  限流次数
      * @param expire 超时时间
-     * @return
+     * @return 是否放行
+     */
+    public CompletableFuture<Boolean> doFlowControlAsync(String key, int limit, int expire) {
+        return doFlowControlAsync(JedisUtil.LIMIT_SCRIPT, key,
+                Arrays.asList(String.valueOf(expire), String.valueOf(limit)));
+    }
+
+    /**
+     * 按限流模式异步执行限流，不同模式使用不同的key，切换模式时不会读到其他结构的数据
+     *
+     * @param model  限流模式
+     * @param key    限流key 服务+路径
+     * @param limit  限流次数
+     * @param expire 窗口时间，单位秒
+     * @return 是否放行
      */
-    public boolean doFlowControl(String key, int limit, int expire) {
-        try {
-            //执行脚本判断是否触发限流
-            Object object = jedisUtil.executeScript(key, limit, expire);
-            if (object == null) {
-                return true;
-            }
-            Long result = Long.valueOf(object.toString());
-            if (FAILED_RESULT == result) {
-                return false;
-            }
-        } catch (Exception e) {
-            log.error("分布式限流发送错误",e.getMessage());
-            throw e;
+    public CompletableFuture<Boolean> doFlowControlAsync(String model, String key, int limit, int expire) {
+        if (FLOW_CTL_MODEL_SLIDING_LOG.equalsIgnoreCase(model)) {
+            return doFlowControlAsync(JedisUtil.SLIDING_LOG_SCRIPT, key + ":log", Arrays.asList(String.valueOf(expire),
+                    String.valueOf(limit), NODE_ID + "-" + SEQUENCE.incrementAndGet()));
         }
-        return true;
+        if (FLOW_CTL_MODEL_SLIDING_COUNTER.equalsIgnoreCase(model)) {
+            return doFlowControlAsync(JedisUtil.SLIDING_COUNTER_SCRIPT, key + ":counter",
+                    Arrays.asList(String.valueOf(expire), String.valueOf(limit)));
+        }
+        return doFlowControlAsync(key, limit, expire);
+    }
+
+    /**
+     * 是否是由Redis脚本计数的限流模式
+     */
+    public static boolean isRedisModel(String model) {
+        return FLOW_CTL_MODEL_DISTRIBUTED.equalsIgnoreCase(model) || FLOW_CTL_MODEL_SLIDING_LOG.equalsIgnoreCase(model)
+                || FLOW_CTL_MODEL_SLIDING_COUNTER.equalsIgnoreCase(model);
+    }
+
+    private CompletableFuture<Boolean> doFlowControlAsync(LuaScript script, String key, List<String> args) {
+        return evalsha(script, key, args)
+                .handle((result, throwable) -> {
+                    if (throwable != null) {
+                        log.error("分布式限流发送错误 {}", key, throwable);
+                        return true;
+                    }
+                    return result == null || FAILED_RESULT != Long.parseLong(result.toString());
+                });
+    }
+
+    CompletableFuture<Object> evalsha(LuaScript script, String key, List<String> args) {
+        return PipelinedJedisClient.getInstance().evalsha(script, Collections.singletonList(key), args);
     }
 
 
@@ -0,0 +1,147 @@
+package blossom.project.core.filter.flow;
+
+import blossom.project.common.config.Rule;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static blossom.project.common.constant.FilterConst.FLOW_CTL_MODEL_ADAPTIVE;
+import static blossom.project.common.constant.FilterConst.FLOW_CTL_MODEL_LEASED;
+
+/** TokenBucketLimiter类提供单机限流能力
+ * 基于GCRA实现的令牌桶，每duration秒补充permits个令牌，桶容量为burst
+ * 只记录下一个令牌的理论到达时间，获取令牌时用CAS推进，不加锁，也不需要定时补充令牌
+ * 令牌不足时直接拒绝，不修改状态
+ */
+public class TokenBucketLimiter {
+
+    /**
+     * 产生一个令牌的时间，单位纳秒
+     */
+    private final long emissionInterval;
+
+    /**
+     * 桶满时理论到达时间最多领先当前时间的长度，单位纳秒
+     */
+    private final long capacity;
+
+    /**
+     * 理论到达时间，早于当前时间说明桶已经装满
+     */
+    private final AtomicLong theoreticalArrival;
+
+    private final int duration;
+
+    private final int permits;
+
+    private final int burst;
+
+    /**
+     * @param duration 补充周期，单位秒
+     * @param permits  每个周期补充的令牌数
+     * @param burst    桶容量，即允许的突发请求数
+     */
+    public TokenBucketLimiter(int duration, int permits, int burst) {
+        this.duration = duration;
+        this.permits = permits;
+        this.burst = burst;
+        this.emissionInterval = Math.max(1, TimeUnit.SECONDS.toNanos(duration) / permits);
+        this.capacity = emissionInterval * burst;
+        //创建时桶是满的
+        this.theoreticalArrival = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * 服务.限流对象 - 限流器
+     */
+    private static ConcurrentHashMap<String, TokenBucketLimiter> resourceRateLimiterMap = new ConcurrentHashMap<>();
+
+    /**
+     * 获取限流器，限流配置变更后重新创建
+     * @param serviceId
+     * @param flowControlConfig
+     * @return 没有配置有效的限流规则时返回null
+     */
+    public static TokenBucketLimiter getInstance(String serviceId, Rule.FlowControlConfig flowControlConfig) {
+        if (StringUtils.isEmpty(serviceId) || flowControlConfig == null
+                || StringUtils.isEmpty(flowControlConfig.getValue()) || !flowControlConfig.isLimited()) {
+            return null;
+        }
+        String key = serviceId + "." + flowControlConfig.getValue();
+        TokenBucketLimiter limiter = resourceRateLimiterMap.get(key);
+        if (limiter == null || !limiter.matches(flowControlConfig)) {
+            limiter = resourceRateLimiterMap.compute(key, (k, current) -> current != null
+                    && current.matches(flowControlConfig) ? current : create(flowControlConfig));
+        }
+        return limiter;
+    }
+
+    /**
+     * 规则下发时为单机限流的配置创建限流器，配置未变的限流器保留当前状态，不再使用的限流器移除
+     * @param rules 全量规则
+     */
+    public static void register(List<Rule> rules) {
+        Set<String> keys = new HashSet<>();
+        for (Rule rule : rules) {
+            if (rule.getFlowControlConfigs() == null) {
+                continue;
+            }
+            for (Rule.FlowControlConfig flowControlConfig : rule.getFlowControlConfigs()) {
+                if (flowControlConfig == null
+                        || RedisCountLimiter.isRedisModel(flowControlConfig.getModel())
+                        || FLOW_CTL_MODEL_ADAPTIVE.equalsIgnoreCase(flowControlConfig.getModel())
+                        || FLOW_CTL_MODEL_LEASED.equalsIgnoreCase(flowControlConfig.getModel())) {
+                    continue;
+                }
+                if (getInstance(rule.getServiceId(), flowControlConfig) != null) {
+                    keys.add(rule.getServiceId() + "." + flowControlConfig.getValue());
+                }
+            }
+        }
+        resourceRateLimiterMap.keySet().retainAll(keys);
+    }
+
+    private static TokenBucketLimiter create(Rule.FlowControlConfig flowControlConfig) {
+        return new TokenBucketLimiter(flowControlConfig.getDuration(), flowControlConfig.getPermits(),
+                flowControlConfig.getBurst());
+    }
+
+    private boolean matches(Rule.FlowControlConfig flowControlConfig) {
+        return duration == flowControlConfig.getDuration() && permits == flowControlConfig.getPermits()
+                && burst == flowControlConfig.getBurst();
+    }
+
+    /**
+     * 获取一个令牌
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /**
+     * 获取令牌
+     * @param permits 需要获取的令牌数量
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire(int permits) {
+        long increment = emissionInterval * permits;
+        while (true) {
+            long now = System.nanoTime();
+            long tat = theoreticalArrival.get();
+            //桶满之后理论到达时间不再回溯，空闲期间不会积攒超过容量的令牌
+            long next = (tat - now < 0 ? now : tat) + increment;
+            if (next - now > capacity) {
+                return false;
+            }
+            if (theoreticalArrival.compareAndSet(tat, next)) {
+                return true;
+            }
+        }
+    }
+}
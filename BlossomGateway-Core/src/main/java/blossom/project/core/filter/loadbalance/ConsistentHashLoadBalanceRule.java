@@ -0,0 +1,267 @@
+package blossom.project.core.filter.loadbalance;
+
+import blossom.project.common.config.ServiceInstance;
+import blossom.project.common.exception.NotFoundException;
+import blossom.project.core.context.GatewayContext;
+import blossom.project.core.request.GatewayRequest;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import io.netty.handler.codec.http.cookie.Cookie;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static blossom.project.common.enums.ResponseCode.SERVICE_INSTANCE_NOT_FOUND;
+
+/** ConsistentHashLoadBalanceRule提供带负载上限的一致性哈希负载均衡算法实现
+ * 相同哈希键的请求落到同一个实例上，实例增减时只有相邻区间的请求发生迁移
+ * 哈希键来源：header:名称、cookie:名称、clientIp、userId，取不到哈希键时退化为随机
+ * 开启负载上限后，在途请求数超过平均值乘以负载系数的实例会被跳过，顺着哈希环选择下一个实例
+ */
+@Slf4j
+public class ConsistentHashLoadBalanceRule implements LoadBalanceGatewayRule {
+
+    /**
+     * 每个实例的虚拟节点数
+     */
+    private static final int VIRTUAL_NODES = 160;
+
+    private static final String HASH_KEY_HEADER = "header:";
+
+    private static final String HASH_KEY_COOKIE = "cookie:";
+
+    private static final String HASH_KEY_CLIENT_IP = "clientIp";
+
+    private static final String HASH_KEY_USER_ID = "userId";
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final String serviceId;
+
+    private final String hashKey;
+
+    /**
+     * 负载系数，不大于1时不限制负载
+     */
+    private final double balanceFactor;
+
+    private volatile HashRing ring;
+
+    private volatile HashRing grayRing;
+
+    /**
+     * 实例的虚拟节点哈希值，实例集合变化时只需要计算新增实例的虚拟节点
+     */
+    private final Map<String, long[]> virtualNodeCache = new ConcurrentHashMap<>();
+
+    public ConsistentHashLoadBalanceRule(String serviceId, String hashKey, double balanceFactor) {
+        this.serviceId = serviceId;
+        this.hashKey = hashKey;
+        this.balanceFactor = balanceFactor;
+    }
+
+    private static ConcurrentHashMap<String, ConsistentHashLoadBalanceRule> serviceMap = new ConcurrentHashMap<>();
+
+    /**
+     * 同一个服务的不同规则可以使用不同的哈希键，按服务唯一标识、哈希键和负载系数区分实例
+     */
+    public static ConsistentHashLoadBalanceRule getInstance(String uniqueId, String hashKey, double balanceFactor) {
+        String key = uniqueId + "." + hashKey + "." + balanceFactor;
+        ConsistentHashLoadBalanceRule loadBalanceRule = serviceMap.get(key);
+        if (loadBalanceRule == null) {
+            loadBalanceRule = serviceMap.computeIfAbsent(key,
+                    k -> new ConsistentHashLoadBalanceRule(uniqueId, hashKey, balanceFactor));
+        }
+        return loadBalanceRule;
+    }
+
+    @Override
+    public ServiceInstance choose(GatewayContext ctx, boolean gray) {
+        ServiceInstance[] instances = getInstances(ctx.getUniqueId(), gray);
+        String key = resolveHashKey(ctx.getRequest());
+        if (StringUtils.isEmpty(key)) {
+            return instances[ThreadLocalRandom.current().nextInt(instances.length)];
+        }
+        return getRing(instances, gray).locate(hash(key), balanceFactor);
+    }
+
+    /**
+     * 没有请求上下文时取不到哈希键，随机选择
+     */
+    @Override
+    public ServiceInstance choose(String serviceId, boolean gray) {
+        ServiceInstance[] instances = getInstances(serviceId, gray);
+        return instances[ThreadLocalRandom.current().nextInt(instances.length)];
+    }
+
+    private ServiceInstance[] getInstances(String serviceId, boolean gray) {
+        ServiceInstance[] instances = LoadBalanceGatewayRule.selectInstances(serviceId, gray);
+        if (instances.length == 0) {
+            log.warn("No instance available for:{}", serviceId);
+            throw new NotFoundException(SERVICE_INSTANCE_NOT_FOUND);
+        }
+        return instances;
+    }
+
+    private String resolveHashKey(GatewayRequest request) {
+        if (hashKey.startsWith(HASH_KEY_HEADER)) {
+            return request.getHeaders().get(hashKey.substring(HASH_KEY_HEADER.length()));
+        }
+        if (hashKey.startsWith(HASH_KEY_COOKIE)) {
+            Cookie cookie = request.getCookie(hashKey.substring(HASH_KEY_COOKIE.length()));
+            return cookie == null ? null : cookie.value();
+        }
+        if (HASH_KEY_CLIENT_IP.equals(hashKey)) {
+            return request.getClientIp();
+        }
+        if (HASH_KEY_USER_ID.equals(hashKey)) {
+            //AuthFilter解析出用户ID之后才有值
+            return request.getUserId() == 0 ? null : String.valueOf(request.getUserId());
+        }
+        return null;
+    }
+
+    private static long hash(String key) {
+        return HASH_FUNCTION.hashString(key, StandardCharsets.UTF_8).asLong();
+    }
+
+    private HashRing getRing(ServiceInstance[] instances, boolean gray) {
+        HashRing current = gray ? grayRing : ring;
+        if (current != null && current.instances == instances) {
+            return current;
+        }
+        synchronized (this) {
+            current = gray ? grayRing : ring;
+            if (current != null && current.instances == instances) {
+                return current;
+            }
+            current = buildRing(instances);
+            if (gray) {
+                grayRing = current;
+            } else {
+                ring = current;
+            }
+            evictVirtualNodes();
+            return current;
+        }
+    }
+
+    /**
+     * 根据实例快照构建哈希环，已经计算过的实例直接复用虚拟节点哈希值
+     */
+    private HashRing buildRing(ServiceInstance[] instances) {
+        Map<String, long[]> used = new HashMap<>();
+        int total = 0;
+        for (ServiceInstance instance : instances) {
+            long[] nodes = virtualNodeCache.computeIfAbsent(instance.getServiceInstanceId(), id -> {
+                long[] hashes = new long[VIRTUAL_NODES];
+                for (int i = 0; i < VIRTUAL_NODES; i++) {
+                    hashes[i] = hash(id + "#" + i);
+                }
+                return hashes;
+            });
+            used.put(instance.getServiceInstanceId(), nodes);
+            total += nodes.length;
+        }
+        long[] hashes = new long[total];
+        int[] owners = new int[total];
+        int index = 0;
+        for (int i = 0; i < instances.length; i++) {
+            for (long h : used.get(instances[i].getServiceInstanceId())) {
+                hashes[index] = h;
+                owners[index] = i;
+                index++;
+            }
+        }
+        sort(hashes, owners);
+        return new HashRing(instances, hashes, owners);
+    }
+
+    /**
+     * 普通流量和灰度流量的哈希环共用缓存，两者都不再使用的实例才移除
+     */
+    private void evictVirtualNodes() {
+        HashRing current = ring;
+        HashRing gray = grayRing;
+        virtualNodeCache.keySet().removeIf(id -> (current == null || !current.contains(id))
+                && (gray == null || !gray.contains(id)));
+    }
+
+    /**
+     * 按哈希值对虚拟节点排序，归属数组随之调整
+     */
+    private static void sort(long[] hashes, int[] owners) {
+        Integer[] order = new Integer[hashes.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        long[] sortedHashes = new long[hashes.length];
+        int[] sortedOwners = new int[owners.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedHashes[i] = hashes[order[i]];
+            sortedOwners[i] = owners[order[i]];
+        }
+        System.arraycopy(sortedHashes, 0, hashes, 0, hashes.length);
+        System.arraycopy(sortedOwners, 0, owners, 0, owners.length);
+    }
+
+    /**
+     * 哈希环，构建完成后只读
+     */
+    private static final class HashRing {
+        private final ServiceInstance[] instances;
+        private final long[] hashes;
+        private final int[] owners;
+
+        private HashRing(ServiceInstance[] instances, long[] hashes, int[] owners) {
+            this.instances = instances;
+            this.hashes = hashes;
+            this.owners = owners;
+        }
+
+        private boolean contains(String serviceInstanceId) {
+            for (ServiceInstance instance : instances) {
+                if (instance.getServiceInstanceId().equals(serviceInstanceId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 从哈希值所在位置顺时针查找第一个未超过负载上限的实例
+         */
+        private ServiceInstance locate(long hash, double balanceFactor) {
+            int index = Arrays.binarySearch(hashes, hash);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            if (index == hashes.length) {
+                index = 0;
+            }
+            if (balanceFactor <= 1 || instances.length == 1) {
+                return instances[owners[index]];
+            }
+            int totalInflight = 0;
+            for (ServiceInstance instance : instances) {
+                totalInflight += InstanceStats.of(instance).getInflight();
+            }
+            //包含本次请求在内的平均负载乘以负载系数
+            double capacity = Math.ceil(balanceFactor * (totalInflight + 1) / instances.length);
+            for (int i = 0; i < hashes.length; i++) {
+                ServiceInstance instance = instances[owners[(index + i) % hashes.length]];
+                if (InstanceStats.of(instance).getInflight() < capacity) {
+                    return instance;
+                }
+            }
+            return instances[owners[index]];
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package blossom.project.core.filter.loadbalance;
+
+import blossom.project.common.config.ServiceInstance;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** InstanceStats类
+ * 服务实例的运行时统计，按服务实例ID(ip:port)区分，供感知后端负载的负载均衡策略使用
+ * 请求发往下游之前调用begin，请求完成之后调用end，请求被取消时调用abandon
+ * 实例从注册中心下线后由retainAll移除对应的统计
+ * 失败统计和摘除状态由OutlierDetector维护
+ */
+public class InstanceStats {
+
+    private static final ConcurrentHashMap<String, InstanceStats> statsMap = new ConcurrentHashMap<>();
+
+    /**
+     * 延迟均值的衰减时间常数，样本的影响随时间按e^(-t/TAU)衰减
+     */
+    private static final long DECAY_TIME_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * 没有延迟样本但已有在途请求的实例的代价，避免新实例在第一个响应返回前被集中选中
+     */
+    private static final double PENALTY = Double.MAX_VALUE / 2;
+
+    /**
+     * 失败请求按当前延迟均值的倍数计入，快速失败的实例不会因为响应快而被优先选中
+     */
+    private static final double FAILURE_PENALTY = 2;
+
+    /**
+     * 服务实例ID
+     */
+    private final String serviceInstanceId;
+
+    /**
+     * 正在处理中的请求数
+     */
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    /**
+     * 连续失败次数，成功一次清零
+     */
+    final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    /**
+     * 当前统计窗口内的请求数和失败数
+     */
+    final AtomicInteger windowRequests = new AtomicInteger();
+
+    final AtomicInteger windowFailures = new AtomicInteger();
+
+    volatile long windowStartNanos = System.nanoTime();
+
+    /**
+     * 摘除到期时间，0表示没有被摘除
+     */
+    volatile long ejectedUntilNanos;
+
+    /**
+     * 最近一次被摘除的时间
+     */
+    volatile long lastEjectedNanos;
+
+    /**
+     * 累计被摘除的次数，决定下一次摘除的时长
+     */
+    volatile int ejectionTimes;
+
+    InstanceStats(String serviceInstanceId) {
+        this.serviceInstanceId = serviceInstanceId;
+    }
+
+    /**
+     * 下游响应时间的指数加权移动平均(纳秒)，以double的位存储以便无锁更新
+     */
+    private final AtomicLong ewma = new AtomicLong(Double.doubleToRawLongBits(0));
+
+    /**
+     * 上次更新延迟均值的时间
+     */
+    private final AtomicLong lastUpdateNanos = new AtomicLong(System.nanoTime());
+
+    /**
+     * 获取服务实例对应的统计
+     * @param serviceInstance 服务实例
+     * @return 统计对象
+     */
+    public static InstanceStats of(ServiceInstance serviceInstance) {
+        String key = serviceInstance.getServiceInstanceId();
+        InstanceStats stats = statsMap.get(key);
+        if (stats == null) {
+            stats = statsMap.computeIfAbsent(key, InstanceStats::new);
+        }
+        return stats;
+    }
+
+    /**
+     * 移除不在当前服务实例集合中的统计，注册中心推送实例变更后调用
+     * 已经持有被移除统计的请求照常结束，结果不再影响之后的负载均衡
+     * @param serviceInstanceIds 全部服务的当前服务实例ID
+     */
+    public static void retainAll(Set<String> serviceInstanceIds) {
+        Iterator<InstanceStats> it = statsMap.values().iterator();
+        while (it.hasNext()) {
+            InstanceStats stats = it.next();
+            if (!serviceInstanceIds.contains(stats.serviceInstanceId)) {
+                it.remove();
+                OutlierDetector.getInstance().forget(stats);
+            }
+        }
+    }
+
+    public void begin() {
+        inflight.incrementAndGet();
+    }
+
+    /**
+     * 请求结束，扣减在途请求数并记录本次响应时间
+     * @param rttNanos 下游响应时间
+     * @param failed 请求异常或下游返回5xx
+     */
+    public void end(long rttNanos, boolean failed) {
+        inflight.decrementAndGet();
+        observe(rttNanos, failed);
+    }
+
+    /**
+     * 请求被取消，只扣减在途请求数，不记录响应时间
+     */
+    public void abandon() {
+        inflight.decrementAndGet();
+    }
+
+    /**
+     * 更新延迟均值：样本大于均值时直接取样本(peak)，否则按距上次更新的时间衰减
+     * 失败的请求至少按均值的FAILURE_PENALTY倍计入，还没有延迟样本时不计入
+     * @param rttNanos 下游响应时间
+     * @param failed 请求是否失败
+     */
+    private void observe(long rttNanos, boolean failed) {
+        long now = System.nanoTime();
+        long elapsed = Math.max(now - lastUpdateNanos.getAndSet(now), 0);
+        double weight = Math.exp(-(double) elapsed / DECAY_TIME_NANOS);
+        while (true) {
+            long bits = ewma.get();
+            double current = Double.longBitsToDouble(bits);
+            if (failed && current == 0) {
+                return;
+            }
+            double sample = failed ? Math.max(rttNanos, current * FAILURE_PENALTY) : rttNanos;
+            double next = sample > current ? sample : current * weight + sample * (1 - weight);
+            if (ewma.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 预计的请求代价：延迟均值乘以包含本次请求在内的在途请求数
+     * @return 代价，越小越优先
+     */
+    public double getCost() {
+        int inflight = this.inflight.get();
+        double latency = Double.longBitsToDouble(ewma.get());
+        if (latency == 0 && inflight != 0) {
+            return PENALTY + inflight;
+        }
+        return latency * (inflight + 1);
+    }
+
+    public String getServiceInstanceId() {
+        return serviceInstanceId;
+    }
+
+    /**
+     * 是否被异常检测摘除
+     */
+    public boolean isEjected() {
+        return ejectedUntilNanos != 0;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+}
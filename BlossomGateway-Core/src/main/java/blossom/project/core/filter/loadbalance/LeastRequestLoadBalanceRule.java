@@ -0,0 +1,60 @@
+package blossom.project.core.filter.loadbalance;
+
+import blossom.project.common.config.ServiceInstance;
+import blossom.project.common.exception.NotFoundException;
+import blossom.project.core.context.GatewayContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static blossom.project.common.enums.ResponseCode.SERVICE_INSTANCE_NOT_FOUND;
+
+/** LeastRequestLoadBalanceRule提供最少在途请求负载均衡算法实现
+ * 遍历全部实例，选择在途请求数最少的实例，从随机位置开始遍历使得并列的实例被均匀选中
+ */
+@Slf4j
+public class LeastRequestLoadBalanceRule implements LoadBalanceGatewayRule {
+
+    private final String serviceId;
+
+    public LeastRequestLoadBalanceRule(String serviceId) {
+        this.serviceId = serviceId;
+    }
+
+    private static ConcurrentHashMap<String, LeastRequestLoadBalanceRule> serviceMap = new ConcurrentHashMap<>();
+
+    public static LeastRequestLoadBalanceRule getInstance(String uniqueId) {
+        LeastRequestLoadBalanceRule loadBalanceRule = serviceMap.get(uniqueId);
+        if (loadBalanceRule == null) {
+            loadBalanceRule = serviceMap.computeIfAbsent(uniqueId, LeastRequestLoadBalanceRule::new);
+        }
+        return loadBalanceRule;
+    }
+
+    @Override
+    public ServiceInstance choose(GatewayContext ctx, boolean gray) {
+        return choose(ctx.getUniqueId(), gray);
+    }
+
+    @Override
+    public ServiceInstance choose(String serviceId, boolean gray) {
+        ServiceInstance[] instances = LoadBalanceGatewayRule.selectInstances(serviceId, gray);
+        if (instances.length == 0) {
+            log.warn("No instance available for:{}", serviceId);
+            throw new NotFoundException(SERVICE_INSTANCE_NOT_FOUND);
+        }
+        int start = ThreadLocalRandom.current().nextInt(instances.length);
+        ServiceInstance selected = null;
+        int least = Integer.MAX_VALUE;
+        for (int i = 0; i < instances.length; i++) {
+            ServiceInstance instance = instances[(start + i) % instances.length];
+            int inflight = InstanceStats.of(instance).getInflight();
+            if (inflight < least) {
+                least = inflight;
+                selected = instance;
+            }
+        }
+        return selected;
+    }
+}
@@ -7,13 +7,15 @@ import blossom.project.core.context.GatewayContext;
 import blossom.project.core.filter.Filter;
 import blossom.project.core.filter.FilterAspect;
 import blossom.project.core.request.GatewayRequest;
-import com.alibaba.fastjson.JSON;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import static blossom.project.common.constant.FilterConst.*;
 import static blossom.project.common.enums.ResponseCode.SERVICE_INSTANCE_NOT_FOUND;
@@ -31,31 +33,131 @@ public class LoadBalanceFilter implements Filter {
      */
     @Override
     public void doFilter(GatewayContext ctx) {
+        select(ctx);
+    }
+
+    /**
+     * 选择服务实例并修改请求的目标地址，重试时跳过已经请求失败的实例
+     *
+     * @param ctx GatewayContext对象，包含请求和上下文信息
+     */
+    public static void select(GatewayContext ctx) {
         // 获取服务id
         String serviceId = ctx.getUniqueId();
         // 从请求上下文中获取负载均衡策略
         LoadBalanceGatewayRule gatewayLoadBalanceRule = getLoadBalanceRule(ctx);
+        if (gatewayLoadBalanceRule == null) {
+            log.warn("No loadBalance rule for :{}", serviceId);
+            throw new NotFoundException(SERVICE_INSTANCE_NOT_FOUND);
+        }
         // 获取某一台服务实例
-        ServiceInstance serviceInstance = gatewayLoadBalanceRule.choose(serviceId, ctx.isGray());
-        System.out.println("IP为" + serviceInstance.getIp() + ",端口号：" + serviceInstance.getPort());
+        ServiceInstance serviceInstance = gatewayLoadBalanceRule.choose(ctx, ctx.isGray());
+        if (serviceInstance != null && ctx.isTriedInstance(serviceInstance)) {
+            serviceInstance = chooseUntried(gatewayLoadBalanceRule, ctx, serviceInstance, ctx::isTriedInstance);
+        }
         GatewayRequest request = ctx.getRequest();
         if (serviceInstance != null && request != null) {
             String host = serviceInstance.getIp() + ":" + serviceInstance.getPort();
             request.setModifyHost(host);
+            ctx.setServiceInstance(serviceInstance);
         } else {
             log.warn("No instance available for :{}", serviceId);
             throw new NotFoundException(SERVICE_INSTANCE_NOT_FOUND);
         }
     }
+    /**
+     * 在负载均衡过滤器之外重新选择服务实例，用于重试和后台刷新缓存，规则没有配置负载均衡过滤器时沿用当前的目标地址
+     *
+     * @param ctx GatewayContext对象，包含请求和上下文信息
+     * @return 是否重新选择了服务实例
+     */
+    public static boolean reselect(GatewayContext ctx) {
+        if (getLoadBalanceRule(ctx) == null) {
+            return false;
+        }
+        select(ctx);
+        return true;
+    }
+
+    /**
+     * 选择一个与指定实例不同且没有失败过的服务实例，不修改上下文，用于对冲请求
+     *
+     * @param ctx GatewayContext对象，包含请求和上下文信息
+     * @param excluded 需要跳过的实例
+     * @return 规则没有配置负载均衡过滤器或者没有其他可用的实例时返回null
+     */
+    public static ServiceInstance chooseOther(GatewayContext ctx, ServiceInstance excluded) {
+        LoadBalanceGatewayRule gatewayLoadBalanceRule = getLoadBalanceRule(ctx);
+        if (gatewayLoadBalanceRule == null) {
+            return null;
+        }
+        Predicate<ServiceInstance> skip = instance -> ctx.isTriedInstance(instance) || (excluded != null
+                && excluded.getServiceInstanceId().equals(instance.getServiceInstanceId()));
+        ServiceInstance serviceInstance = gatewayLoadBalanceRule.choose(ctx, ctx.isGray());
+        if (serviceInstance != null && skip.test(serviceInstance)) {
+            serviceInstance = chooseUntried(gatewayLoadBalanceRule, ctx, serviceInstance, skip);
+        }
+        return serviceInstance == null || skip.test(serviceInstance) ? null : serviceInstance;
+    }
+
+    /**
+     * 获取请求使用的负载均衡策略
+     *
+     * @param ctx GatewayContext对象，包含请求和上下文信息
+     * @return 规则没有配置负载均衡过滤器时返回null
+     */
+    public static LoadBalanceGatewayRule getLoadBalanceRule(GatewayContext ctx) {
+        if (ctx.getRoutePlan() == null) {
+            return getLoadBalanceRule(ctx.getRule(), ctx.getUniqueId());
+        }
+        Function<String, LoadBalanceGatewayRule> loadBalanceRules = ctx.getRoutePlan().getLoadBalanceRules();
+        return loadBalanceRules == null ? null : loadBalanceRules.apply(ctx.getUniqueId());
+    }
+
+    /**
+     * 负载均衡选中了需要跳过的实例时再选择一次，仍然选中时从候选实例中取一个不需要跳过的实例
+     * 候选实例都需要跳过时沿用负载均衡的选择
+     */
+    private static ServiceInstance chooseUntried(LoadBalanceGatewayRule rule, GatewayContext ctx,
+                                                 ServiceInstance chosen, Predicate<ServiceInstance> skip) {
+        ServiceInstance serviceInstance = rule.choose(ctx, ctx.isGray());
+        if (serviceInstance != null && !skip.test(serviceInstance)) {
+            return serviceInstance;
+        }
+        ServiceInstance[] instances = LoadBalanceGatewayRule.selectInstances(ctx.getUniqueId(), ctx.isGray());
+        if (instances.length == 0) {
+            return chosen;
+        }
+        int offset = ThreadLocalRandom.current().nextInt(instances.length);
+        for (int i = 0; i < instances.length; i++) {
+            ServiceInstance instance = instances[(offset + i) % instances.length];
+            if (!skip.test(instance)) {
+                return instance;
+            }
+        }
+        return chosen;
+    }
+
     /**
      * 根据配置获取负载均衡器
      *
-     * @param ctx 路由上下文
-     * @return 负载均衡器
+     * @param configRule 规则
+     * @param uniqueId 服务唯一标识，负载均衡器按服务唯一标识区分，同一服务的不同版本不共享轮询和权重状态
+     * @return 负载均衡器，规则没有配置负载均衡过滤器时返回null
+     */
+    public static LoadBalanceGatewayRule getLoadBalanceRule(Rule configRule, String uniqueId) {
+        Function<String, LoadBalanceGatewayRule> loadBalanceRules = getLoadBalanceRules(configRule);
+        return loadBalanceRules == null ? null : loadBalanceRules.apply(uniqueId);
+    }
+
+    /**
+     * 根据配置解析负载均衡策略，返回按服务唯一标识获取负载均衡器的函数
+     *
+     * @param configRule 规则
+     * @return 规则没有配置负载均衡过滤器时返回null
      */
-    public LoadBalanceGatewayRule getLoadBalanceRule(GatewayContext ctx) {
-        LoadBalanceGatewayRule loadBalanceRule = null;
-        Rule configRule = ctx.getRule();
+    public static Function<String, LoadBalanceGatewayRule> getLoadBalanceRules(Rule configRule) {
+        Function<String, LoadBalanceGatewayRule> loadBalanceRules = null;
         if (configRule != null) {
             Set<Rule.FilterConfig> filterConfigs = configRule.getFilterConfigs();
             Iterator iterator = filterConfigs.iterator();
@@ -67,29 +169,52 @@ public class LoadBalanceFilter implements Filter {
                 }
                 String filterId = filterConfig.getId();
                 if (LOAD_BALANCE_FILTER_ID.equals(filterId)) {
-                    String config = filterConfig.getConfig();
                     //默认选择随机负载均衡过滤器
                     String strategy = LOAD_BALANCE_STRATEGY_RANDOM;
-                    if (StringUtils.isNotEmpty(config)) {
-                        Map<String, String> mapTypeMap = JSON.parseObject(config, Map.class);
-                        strategy = mapTypeMap.getOrDefault(LOAD_BALANCE_KEY, strategy);
+                    Object configStrategy = filterConfig.getConfigMap().get(LOAD_BALANCE_KEY);
+                    if (configStrategy != null && StringUtils.isNotEmpty(configStrategy.toString())) {
+                        strategy = configStrategy.toString();
                     }
                     switch (strategy) {
                         case LOAD_BALANCE_STRATEGY_RANDOM:
-                            loadBalanceRule = RandomLoadBalanceRule.getInstance(configRule.getServiceId());
+                            loadBalanceRules = RandomLoadBalanceRule::getInstance;
                             break;
                         case LOAD_BALANCE_STRATEGY_ROUND_ROBIN:
-                            loadBalanceRule = RoundRobinLoadBalanceRule.getInstance(configRule.getServiceId());
+                            loadBalanceRules = RoundRobinLoadBalanceRule::getInstance;
+                            break;
+                        case LOAD_BALANCE_STRATEGY_WEIGHT_RANDOM:
+                            loadBalanceRules = WeightRandomLoadBalanceRule::getInstance;
+                            break;
+                        case LOAD_BALANCE_STRATEGY_WEIGHT_ROUND_ROBIN:
+                            loadBalanceRules = WeightRoundRobinLoadBalanceRule::getInstance;
+                            break;
+                        case LOAD_BALANCE_STRATEGY_LEAST_REQUEST:
+                            loadBalanceRules = LeastRequestLoadBalanceRule::getInstance;
+                            break;
+                        case LOAD_BALANCE_STRATEGY_POWER_OF_TWO_CHOICES:
+                            loadBalanceRules = PowerOfTwoChoicesLoadBalanceRule::getInstance;
+                            break;
+                        case LOAD_BALANCE_STRATEGY_PEAK_EWMA:
+                            loadBalanceRules = PeakEwmaLoadBalanceRule::getInstance;
+                            break;
+                        case LOAD_BALANCE_STRATEGY_CONSISTENT_HASH:
+                            Map<String, Object> configMap = filterConfig.getConfigMap();
+                            String hashKey = configMap.getOrDefault(LOAD_BALANCE_HASH_KEY, LOAD_BALANCE_DEFAULT_HASH_KEY).toString();
+                            Object configFactor = configMap.get(LOAD_BALANCE_HASH_BALANCE_FACTOR);
+                            double balanceFactor = configFactor instanceof Number ?
+                                    ((Number) configFactor).doubleValue() : LOAD_BALANCE_DEFAULT_HASH_BALANCE_FACTOR;
+                            loadBalanceRules = uniqueId -> ConsistentHashLoadBalanceRule.getInstance(uniqueId,
+                                    hashKey, balanceFactor);
                             break;
                         default:
                             log.warn("No loadBalance strategy for service:{}", strategy);
-                            loadBalanceRule = RandomLoadBalanceRule.getInstance(configRule.getServiceId());
+                            loadBalanceRules = RandomLoadBalanceRule::getInstance;
                             break;
                     }
                 }
             }
         }
-        return loadBalanceRule;
+        return loadBalanceRules;
     }
 }
 
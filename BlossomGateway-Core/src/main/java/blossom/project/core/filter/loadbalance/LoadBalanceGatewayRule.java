@@ -1,5 +1,6 @@
 package blossom.project.core.filter.loadbalance;
 
+import blossom.project.common.config.DynamicConfigManager;
 import blossom.project.common.config.ServiceInstance;
 import blossom.project.core.context.GatewayContext;
 
@@ -24,4 +25,15 @@ public interface LoadBalanceGatewayRule {
      */
     ServiceInstance choose(String serviceId,boolean gray);
 
+    /**
+     * 获取候选服务实例，被异常检测摘除的实例不参与负载均衡
+     * @param serviceId
+     * @param gray
+     * @return 摘除状态不变时返回同一个数组
+     */
+    static ServiceInstance[] selectInstances(String serviceId, boolean gray) {
+        ServiceInstance[] instances = DynamicConfigManager.getInstance().getServiceInstanceSnapshot(serviceId).select(gray);
+        return OutlierDetector.getInstance().filter(instances);
+    }
+
 }
@@ -0,0 +1,225 @@
+package blossom.project.core.filter.loadbalance;
+
+import blossom.project.common.config.ServiceInstance;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/** OutlierDetector类
+ * 被动异常检测：根据下游请求的结果统计每个实例的连续失败次数和失败率，达到阈值的实例暂时从负载均衡的候选实例中摘除
+ * 摘除时长随摘除次数指数增长，到期后自动恢复；同一组候选实例中被摘除的比例不超过上限，超过时不做摘除
+ */
+@Slf4j
+public class OutlierDetector {
+
+    /**
+     * 连续失败多少次摘除
+     */
+    private static final int CONSECUTIVE_FAILURES = 5;
+
+    /**
+     * 统计窗口内失败率达到多少摘除
+     */
+    private static final double FAILURE_RATE = 0.5;
+
+    /**
+     * 统计窗口内至少有多少请求才按失败率判断
+     */
+    private static final int MIN_REQUESTS = 20;
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * 第一次摘除的时长，之后每次翻倍
+     */
+    private static final long BASE_EJECTION_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private static final long MAX_EJECTION_NANOS = TimeUnit.SECONDS.toNanos(300);
+
+    /**
+     * 候选实例中最多摘除的比例
+     */
+    private static final int MAX_EJECTION_PERCENT = 50;
+
+    private static class SingletonHolder {
+        private static final OutlierDetector INSTANCE = new OutlierDetector();
+    }
+
+    public static OutlierDetector getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    private OutlierDetector() {
+    }
+
+    /**
+     * 当前被摘除的实例
+     */
+    private final Set<InstanceStats> ejected = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 摘除状态版本号，摘除或恢复实例时加一
+     */
+    private volatile long version;
+
+    /**
+     * 最早到期的摘除时间
+     */
+    private volatile long nextReadmitNanos = Long.MAX_VALUE;
+
+    /**
+     * 候选实例数组 - 过滤后的数组，摘除状态不变时返回同一个数组，负载均衡策略据此复用已经构建的状态
+     * 快照数组按引用比较，快照被替换后对应的缓存随之回收
+     */
+    private final Cache<ServiceInstance[], Filtered> filteredCache = Caffeine.newBuilder().weakKeys().build();
+
+    /**
+     * 记录一次成功的请求
+     */
+    public void onSuccess(InstanceStats stats) {
+        stats.consecutiveFailures.set(0);
+        long now = System.nanoTime();
+        rollWindow(stats, now);
+        stats.windowRequests.incrementAndGet();
+        //长时间没有再被摘除的实例，摘除时长从头计算
+        if (stats.ejectionTimes > 0 && !stats.isEjected() && now - stats.lastEjectedNanos > MAX_EJECTION_NANOS) {
+            stats.ejectionTimes = 0;
+        }
+    }
+
+    /**
+     * 记录一次失败的请求，达到阈值时摘除实例
+     */
+    public void onFailure(InstanceStats stats) {
+        long now = System.nanoTime();
+        rollWindow(stats, now);
+        int requests = stats.windowRequests.incrementAndGet();
+        int failures = stats.windowFailures.incrementAndGet();
+        int consecutive = stats.consecutiveFailures.incrementAndGet();
+        if (stats.isEjected()) {
+            return;
+        }
+        if (consecutive >= CONSECUTIVE_FAILURES
+                || (requests >= MIN_REQUESTS && failures >= requests * FAILURE_RATE)) {
+            eject(stats, now);
+        }
+    }
+
+    private void rollWindow(InstanceStats stats, long now) {
+        if (now - stats.windowStartNanos > WINDOW_NANOS) {
+            stats.windowStartNanos = now;
+            stats.windowRequests.set(0);
+            stats.windowFailures.set(0);
+        }
+    }
+
+    private synchronized void eject(InstanceStats stats, long now) {
+        if (stats.isEjected()) {
+            return;
+        }
+        int times = Math.min(stats.ejectionTimes, 10);
+        long duration = Math.min(BASE_EJECTION_NANOS << times, MAX_EJECTION_NANOS);
+        stats.ejectionTimes = stats.ejectionTimes + 1;
+        stats.lastEjectedNanos = now;
+        stats.ejectedUntilNanos = now + duration;
+        //nanoTime可能溢出，按差值比较到期时间
+        if (ejected.isEmpty() || stats.ejectedUntilNanos - nextReadmitNanos < 0) {
+            nextReadmitNanos = stats.ejectedUntilNanos;
+        }
+        ejected.add(stats);
+        version++;
+        log.warn("eject instance {} for {}s", stats.getServiceInstanceId(), TimeUnit.NANOSECONDS.toSeconds(duration));
+    }
+
+    /**
+     * 实例下线后不再跟踪其摘除状态
+     */
+    synchronized void forget(InstanceStats stats) {
+        if (ejected.remove(stats)) {
+            version++;
+        }
+    }
+
+    /**
+     * 恢复摘除到期的实例
+     */
+    private synchronized void readmit(long now) {
+        if (now - nextReadmitNanos < 0) {
+            return;
+        }
+        long next = Long.MAX_VALUE;
+        boolean pending = false;
+        for (InstanceStats stats : ejected) {
+            if (now - stats.ejectedUntilNanos >= 0) {
+                stats.ejectedUntilNanos = 0;
+                stats.consecutiveFailures.set(0);
+                stats.windowStartNanos = now;
+                stats.windowRequests.set(0);
+                stats.windowFailures.set(0);
+                ejected.remove(stats);
+                log.info("readmit instance {}", stats.getServiceInstanceId());
+            } else if (!pending || stats.ejectedUntilNanos - next < 0) {
+                next = stats.ejectedUntilNanos;
+                pending = true;
+            }
+        }
+        nextReadmitNanos = next;
+        version++;
+    }
+
+    /**
+     * 过滤掉被摘除的实例
+     * 没有被摘除的实例时直接返回原数组
+     * @param instances 候选实例
+     * @return 过滤后的实例，摘除状态不变时多次调用返回同一个数组
+     */
+    public ServiceInstance[] filter(ServiceInstance[] instances) {
+        if (ejected.isEmpty()) {
+            return instances;
+        }
+        long now = System.nanoTime();
+        if (now - nextReadmitNanos >= 0) {
+            readmit(now);
+            if (ejected.isEmpty()) {
+                return instances;
+            }
+        }
+        long currentVersion = version;
+        Filtered filtered = filteredCache.getIfPresent(instances);
+        if (filtered != null && filtered.version == currentVersion) {
+            return filtered.instances;
+        }
+        List<ServiceInstance> healthy = new ArrayList<>(instances.length);
+        for (ServiceInstance instance : instances) {
+            if (!InstanceStats.of(instance).isEjected()) {
+                healthy.add(instance);
+            }
+        }
+        ServiceInstance[] result;
+        if (healthy.size() == instances.length
+                || healthy.size() * 100 < instances.length * (100 - MAX_EJECTION_PERCENT)) {
+            //摘除比例超过上限时不做摘除，避免剩余实例被压垮
+            result = instances;
+        } else {
+            result = healthy.toArray(new ServiceInstance[0]);
+        }
+        filteredCache.put(instances, new Filtered(currentVersion, result));
+        return result;
+    }
+
+    private static final class Filtered {
+        private final long version;
+        private final ServiceInstance[] instances;
+
+        private Filtered(long version, ServiceInstance[] instances) {
+            this.version = version;
+            this.instances = instances;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package blossom.project.core.filter.loadbalance;
+
+import blossom.project.common.config.ServiceInstance;
+import blossom.project.common.exception.NotFoundException;
+import blossom.project.core.context.GatewayContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static blossom.project.common.enums.ResponseCode.SERVICE_INSTANCE_NOT_FOUND;
+
+/** PeakEwmaLoadBalanceRule提供基于响应时间的负载均衡算法实现
+ * 每个实例维护下游响应时间的peak-EWMA，代价为延迟均值乘以在途请求数
+ * 随机选出两个不同的实例，取代价较小的一个
+ */
+@Slf4j
+public class PeakEwmaLoadBalanceRule implements LoadBalanceGatewayRule {
+
+    private final String serviceId;
+
+    public PeakEwmaLoadBalanceRule(String serviceId) {
+        this.serviceId = serviceId;
+    }
+
+    private static ConcurrentHashMap<String, PeakEwmaLoadBalanceRule> serviceMap = new ConcurrentHashMap<>();
+
+    public static PeakEwmaLoadBalanceRule getInstance(String uniqueId) {
+        PeakEwmaLoadBalanceRule loadBalanceRule = serviceMap.get(uniqueId);
+        if (loadBalanceRule == null) {
+            loadBalanceRule = serviceMap.computeIfAbsent(uniqueId, PeakEwmaLoadBalanceRule::new);
+        }
+        return loadBalanceRule;
+    }
+
+    @Override
+    public ServiceInstance choose(GatewayContext ctx, boolean gray) {
+        return choose(ctx.getUniqueId(), gray);
+    }
+
+    @Override
+    public ServiceInstance choose(String serviceId, boolean gray) {
+        ServiceInstance[] instances = LoadBalanceGatewayRule.selectInstances(serviceId, gray);
+        if (instances.length == 0) {
+            log.warn("No instance available for:{}", serviceId);
+            throw new NotFoundException(SERVICE_INSTANCE_NOT_FOUND);
+        }
+        if (instances.length == 1) {
+            return instances[0];
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(instances.length);
+        //第二个下标在剩余的实例中选取，保证两个实例不同
+        int second = random.nextInt(instances.length - 1);
+        if (second >= first) {
+            second++;
+        }
+        ServiceInstance a = instances[first];
+        ServiceInstance b = instances[second];
+        return InstanceStats.of(a).getCost() <= InstanceStats.of(b).getCost() ? a : b;
+    }
+}
@@ -1,13 +1,9 @@
 package blossom.project.core.filter.loadbalance;
 
-import blossom.project.common.config.DynamicConfigManager;
 import blossom.project.common.config.ServiceInstance;
 import blossom.project.common.exception.NotFoundException;
 import blossom.project.core.context.GatewayContext;
 import lombok.extern.slf4j.Slf4j;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
 import static blossom.project.common.enums.ResponseCode.SERVICE_INSTANCE_NOT_FOUND;
@@ -20,11 +16,6 @@ public class RandomLoadBalanceRule implements LoadBalanceGatewayRule {
 
     private final String serviceId;
 
-    /**
-     * 服务列表
-     */
-    private Set<ServiceInstance> serviceInstanceSet;
-
     public RandomLoadBalanceRule(String serviceId) {
         this.serviceId = serviceId;
     }
@@ -32,15 +23,15 @@ public class RandomLoadBalanceRule implements LoadBalanceGatewayRule {
     private static ConcurrentHashMap<String, RandomLoadBalanceRule> serviceMap = new ConcurrentHashMap<>();
 
     /**
-     * 获取指定服务ID的负载均衡规则实例
-     * @param serviceId 服务ID
+     * 获取指定服务的负载均衡规则实例
+     * @param uniqueId 服务唯一标识
      * @return 负载均衡规则实例
      */
-    public static RandomLoadBalanceRule getInstance(String serviceId) {
-        RandomLoadBalanceRule loadBalanceRule = serviceMap.get(serviceId);
+    public static RandomLoadBalanceRule getInstance(String uniqueId) {
+        RandomLoadBalanceRule loadBalanceRule = serviceMap.get(uniqueId);
         if (loadBalanceRule == null) {
-            loadBalanceRule = new RandomLoadBalanceRule(serviceId);
-            serviceMap.put(serviceId, loadBalanceRule);
+            loadBalanceRule = new RandomLoadBalanceRule(uniqueId);
+            serviceMap.put(uniqueId, loadBalanceRule);
         }
         return loadBalanceRule;
     }
@@ -68,22 +59,18 @@ public class RandomLoadBalanceRule implements LoadBalanceGatewayRule {
      */
     @Override
     public ServiceInstance choose(String serviceId, boolean gray) {
-        // 根据服务ID和是否开启灰度获取服务实例集合
-        Set<ServiceInstance> serviceInstanceSet =
-                DynamicConfigManager.getInstance().getServiceInstanceByUniqueId(serviceId, gray);
-        // 如果服务实例集合为空，则打印日志并抛出异常
-        if (serviceInstanceSet.isEmpty()) {
+        // 根据服务ID和是否开启灰度获取服务实例快照
+        ServiceInstance[] instances =
+                LoadBalanceGatewayRule.selectInstances(serviceId, gray);
+        // 如果服务实例为空，则打印日志并抛出异常
+        if (instances.length == 0) {
             log.warn("No instance available for:{}", serviceId);
             throw new NotFoundException(SERVICE_INSTANCE_NOT_FOUND);
         }
-        // 将服务实例集合转换为列表
-        List<ServiceInstance> instances = new ArrayList<ServiceInstance>(serviceInstanceSet);
         // 生成随机索引
-        int index = ThreadLocalRandom.current().nextInt(instances.size());
-        // 根据随机索引获取服务实例
-        ServiceInstance instance = (ServiceInstance) instances.get(index);
+        int index = ThreadLocalRandom.current().nextInt(instances.length);
         // 返回选择的服务实例
-        return instance;
+        return instances[index];
     }
 
 }
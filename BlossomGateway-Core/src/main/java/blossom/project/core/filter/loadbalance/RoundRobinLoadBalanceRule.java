@@ -1,14 +1,10 @@
 package blossom.project.core.filter.loadbalance;
 
-import blossom.project.common.config.DynamicConfigManager;
 import blossom.project.common.config.ServiceInstance;
 import blossom.project.common.exception.NotFoundException;
 import blossom.project.core.context.GatewayContext;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -24,11 +20,11 @@ public class RoundRobinLoadBalanceRule implements LoadBalanceGatewayRule {
     }
     private static ConcurrentHashMap<String, RoundRobinLoadBalanceRule> serviceMap = new ConcurrentHashMap<>();
 
-    public static RoundRobinLoadBalanceRule getInstance(String serviceId) {
-        RoundRobinLoadBalanceRule loadBalanceRule=serviceMap.get(serviceId);
+    public static RoundRobinLoadBalanceRule getInstance(String uniqueId) {
+        RoundRobinLoadBalanceRule loadBalanceRule=serviceMap.get(uniqueId);
         if(loadBalanceRule == null){
-            loadBalanceRule=new RoundRobinLoadBalanceRule(serviceId);
-            serviceMap.put(serviceId,loadBalanceRule);
+            loadBalanceRule=new RoundRobinLoadBalanceRule(uniqueId);
+            serviceMap.put(uniqueId,loadBalanceRule);
         }
         return loadBalanceRule;
     }
@@ -38,18 +34,13 @@ public class RoundRobinLoadBalanceRule implements LoadBalanceGatewayRule {
     }
     @Override
     public ServiceInstance choose(String serviceId,boolean gray) {
-        Set<ServiceInstance> serviceInstanceSet=DynamicConfigManager.getInstance().getServiceInstanceByUniqueId(serviceId,gray);
-        if(serviceInstanceSet.isEmpty()) {
+        ServiceInstance[] instances=LoadBalanceGatewayRule.selectInstances(serviceId, gray);
+        if(instances.length == 0) {
             log.warn("No instance available for:{}", serviceId);
             throw new NotFoundException(SERVICE_INSTANCE_NOT_FOUND);
         }
-        List<ServiceInstance> instances=new ArrayList<ServiceInstance>(serviceInstanceSet);
-        if (instances.isEmpty()) {
-            log.warn("No instance available for service:{}", serviceId);
-            return null;
-        } else {
-            int pos = Math.abs(this.position.incrementAndGet());
-            return instances.get(pos % instances.size());
-        }
+        //计数溢出后取绝对值仍可能为负数，这里屏蔽符号位
+        int pos = this.position.incrementAndGet() & Integer.MAX_VALUE;
+        return instances[pos % instances.length];
     }
 }
@@ -0,0 +1,136 @@
+package blossom.project.core.filter.loadbalance;
+
+import blossom.project.common.config.ServiceInstance;
+import blossom.project.common.exception.NotFoundException;
+import blossom.project.core.context.GatewayContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static blossom.project.common.enums.ResponseCode.SERVICE_INSTANCE_NOT_FOUND;
+
+/** WeightRandomLoadBalanceRule提供加权随机负载均衡算法实现
+ * 使用别名法(Alias Method)：实例快照变化时构建一次概率表和别名表，之后每次选择只需要一次随机下标和一次随机比较
+ * 权重为0的实例不参与选择，全部为0时退化为普通随机
+ */
+@Slf4j
+public class WeightRandomLoadBalanceRule implements LoadBalanceGatewayRule {
+
+    private final String serviceId;
+
+    private volatile AliasTable table;
+
+    private volatile AliasTable grayTable;
+
+    public WeightRandomLoadBalanceRule(String serviceId) {
+        this.serviceId = serviceId;
+    }
+
+    private static ConcurrentHashMap<String, WeightRandomLoadBalanceRule> serviceMap = new ConcurrentHashMap<>();
+
+    public static WeightRandomLoadBalanceRule getInstance(String uniqueId) {
+        WeightRandomLoadBalanceRule loadBalanceRule = serviceMap.get(uniqueId);
+        if (loadBalanceRule == null) {
+            loadBalanceRule = serviceMap.computeIfAbsent(uniqueId, WeightRandomLoadBalanceRule::new);
+        }
+        return loadBalanceRule;
+    }
+
+    @Override
+    public ServiceInstance choose(GatewayContext ctx, boolean gray) {
+        return choose(ctx.getUniqueId(), gray);
+    }
+
+    @Override
+    public ServiceInstance choose(String serviceId, boolean gray) {
+        ServiceInstance[] instances = LoadBalanceGatewayRule.selectInstances(serviceId, gray);
+        if (instances.length == 0) {
+            log.warn("No instance available for:{}", serviceId);
+            throw new NotFoundException(SERVICE_INSTANCE_NOT_FOUND);
+        }
+        AliasTable current = gray ? grayTable : table;
+        if (current == null || current.instances != instances) {
+            current = new AliasTable(instances);
+            if (gray) {
+                grayTable = current;
+            } else {
+                table = current;
+            }
+        }
+        return current.next();
+    }
+
+    /**
+     * 别名表，构建完成后只读
+     */
+    private static final class AliasTable {
+        private final ServiceInstance[] instances;
+        private final double[] probability;
+        private final int[] alias;
+
+        private AliasTable(ServiceInstance[] instances) {
+            int n = instances.length;
+            this.instances = instances;
+            this.probability = new double[n];
+            this.alias = new int[n];
+
+            double[] weights = new double[n];
+            double total = 0;
+            for (int i = 0; i < n; i++) {
+                weights[i] = WeightRoundRobinLoadBalanceRule.weightOf(instances[i]);
+                total += weights[i];
+            }
+            if (total == 0) {
+                for (int i = 0; i < n; i++) {
+                    weights[i] = 1;
+                }
+                total = n;
+            }
+
+            //按平均权重缩放后分为不足1和不小于1的两组，用大的补足小的
+            double[] scaled = new double[n];
+            int[] small = new int[n];
+            int[] large = new int[n];
+            int smallSize = 0;
+            int largeSize = 0;
+            for (int i = 0; i < n; i++) {
+                scaled[i] = weights[i] * n / total;
+                if (scaled[i] < 1.0) {
+                    small[smallSize++] = i;
+                } else {
+                    large[largeSize++] = i;
+                }
+            }
+            while (smallSize > 0 && largeSize > 0) {
+                int less = small[--smallSize];
+                int more = large[--largeSize];
+                probability[less] = scaled[less];
+                alias[less] = more;
+                scaled[more] = scaled[more] + scaled[less] - 1.0;
+                if (scaled[more] < 1.0) {
+                    small[smallSize++] = more;
+                } else {
+                    large[largeSize++] = more;
+                }
+            }
+            //剩余的项因为浮点误差没有配对，概率视为1
+            while (largeSize > 0) {
+                int index = large[--largeSize];
+                probability[index] = 1.0;
+                alias[index] = index;
+            }
+            while (smallSize > 0) {
+                int index = small[--smallSize];
+                probability[index] = 1.0;
+                alias[index] = index;
+            }
+        }
+
+        private ServiceInstance next() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int index = random.nextInt(instances.length);
+            return random.nextDouble() < probability[index] ? instances[index] : instances[alias[index]];
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package blossom.project.core.filter.loadbalance;
+
+import blossom.project.common.config.ServiceInstance;
+import blossom.project.common.constant.GatewayConst;
+import blossom.project.common.exception.NotFoundException;
+import blossom.project.core.context.GatewayContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import static blossom.project.common.enums.ResponseCode.SERVICE_INSTANCE_NOT_FOUND;
+
+/** WeightRoundRobinLoadBalanceRule提供平滑加权轮询负载均衡算法实现
+ * 与nginx的实现一致：每次选择时所有实例的当前权重加上各自的权重，选出当前权重最大的实例，再将其减去权重总和
+ * 权重为0的实例不参与选择，全部为0时退化为普通轮询
+ */
+@Slf4j
+public class WeightRoundRobinLoadBalanceRule implements LoadBalanceGatewayRule {
+
+    private final String serviceId;
+
+    /**
+     * 普通流量和灰度流量分别轮询
+     */
+    private volatile WeightState state;
+
+    private volatile WeightState grayState;
+
+    public WeightRoundRobinLoadBalanceRule(String serviceId) {
+        this.serviceId = serviceId;
+    }
+
+    private static ConcurrentHashMap<String, WeightRoundRobinLoadBalanceRule> serviceMap = new ConcurrentHashMap<>();
+
+    public static WeightRoundRobinLoadBalanceRule getInstance(String uniqueId) {
+        WeightRoundRobinLoadBalanceRule loadBalanceRule = serviceMap.get(uniqueId);
+        if (loadBalanceRule == null) {
+            loadBalanceRule = serviceMap.computeIfAbsent(uniqueId, WeightRoundRobinLoadBalanceRule::new);
+        }
+        return loadBalanceRule;
+    }
+
+    @Override
+    public ServiceInstance choose(GatewayContext ctx, boolean gray) {
+        return choose(ctx.getUniqueId(), gray);
+    }
+
+    @Override
+    public ServiceInstance choose(String serviceId, boolean gray) {
+        ServiceInstance[] instances = LoadBalanceGatewayRule.selectInstances(serviceId, gray);
+        if (instances.length == 0) {
+            log.warn("No instance available for:{}", serviceId);
+            throw new NotFoundException(SERVICE_INSTANCE_NOT_FOUND);
+        }
+        WeightState current = gray ? grayState : state;
+        //实例快照变化后重新计算权重，当前权重从0开始
+        if (current == null || current.instances != instances) {
+            current = new WeightState(instances);
+            if (gray) {
+                grayState = current;
+            } else {
+                state = current;
+            }
+        }
+        return current.next();
+    }
+
+    /**
+     * 读取实例权重，未设置时使用默认权重
+     */
+    static int weightOf(ServiceInstance instance) {
+        Integer weight = instance.getWeight();
+        if (weight == null) {
+            return GatewayConst.DEFAULT_WEIGHT;
+        }
+        return Math.max(weight, 0);
+    }
+
+    /**
+     * 一组实例的轮询状态
+     */
+    private static final class WeightState {
+        private final ServiceInstance[] instances;
+        private final int[] weights;
+        private final long[] currentWeights;
+        private final long totalWeight;
+
+        private WeightState(ServiceInstance[] instances) {
+            this.instances = instances;
+            this.weights = new int[instances.length];
+            this.currentWeights = new long[instances.length];
+            long total = 0;
+            for (int i = 0; i < instances.length; i++) {
+                weights[i] = weightOf(instances[i]);
+                total += weights[i];
+            }
+            //全部实例权重为0时按相同权重处理，避免没有实例可选
+            if (total == 0) {
+                for (int i = 0; i < instances.length; i++) {
+                    weights[i] = 1;
+                }
+                total = instances.length;
+            }
+            this.totalWeight = total;
+        }
+
+        private synchronized ServiceInstance next() {
+            int selected = -1;
+            for (int i = 0; i < weights.length; i++) {
+                if (weights[i] == 0) {
+                    continue;
+                }
+                currentWeights[i] += weights[i];
+                if (selected < 0 || currentWeights[i] > currentWeights[selected]) {
+                    selected = i;
+                }
+            }
+            currentWeights[selected] -= totalWeight;
+            return instances[selected];
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package blossom.project.core.filter.monitor;
 
 import blossom.project.core.ConfigLoader;
+import blossom.project.core.cache.GatewayCacheManager;
 import blossom.project.core.context.GatewayContext;
 import blossom.project.core.filter.Filter;
 import blossom.project.core.filter.FilterAspect;
@@ -37,6 +38,8 @@ public class MonitorEndFilter implements Filter {
     public MonitorEndFilter() {
         // 创建PrometheusMeterRegistry实例，使用默认配置
         this.prometheusMeterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        // 暴露全局缓存的命中率、淘汰数和加载耗时
+        GatewayCacheManager.getInstance().bindTo(prometheusMeterRegistry);
 
         try {
             // 创建一个新的HTTP服务器监听配置中指定的端口
@@ -0,0 +1,187 @@
+package blossom.project.core.filter.router;
+
+import blossom.project.common.config.Rule;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** CircuitBreaker类
+ * 熔断器，按服务和路径区分，不占用线程，直接根据下游请求的结果统计
+ * 关闭状态的放行和结果统计不加锁，只有状态转换加锁
+ * 关闭状态：按最近slidingWindowSize个请求统计失败率，超过阈值时打开
+ * 打开状态：请求直接降级，等待waitDurationInOpenState后进入半开状态
+ * 半开状态：放行permittedNumberOfCallsInHalfOpenState个探测请求，全部成功则关闭，出现失败则重新打开
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final ConcurrentHashMap<String, CircuitBreaker> breakerMap = new ConcurrentHashMap<>();
+
+    /**
+     * 获取服务路径对应的熔断器，熔断配置变化后重新创建
+     * @param serviceId 服务ID
+     * @param config 熔断配置
+     * @return 熔断器
+     */
+    public static CircuitBreaker getInstance(String serviceId, Rule.HystrixConfig config) {
+        String key = serviceId + "." + config.getPath();
+        CircuitBreaker breaker = breakerMap.get(key);
+        if (breaker == null || !breaker.config.equals(config)) {
+            breaker = breakerMap.compute(key, (k, old) ->
+                    old != null && old.config.equals(config) ? old : new CircuitBreaker(k, config));
+        }
+        return breaker;
+    }
+
+    private final String name;
+
+    private final Rule.HystrixConfig config;
+
+    /**
+     * 最近请求的结果，1表示失败，循环写入
+     */
+    private final AtomicIntegerArray window;
+
+    /**
+     * 关闭状态下记录的请求总数，决定下一个写入的位置
+     */
+    private final AtomicLong recorded = new AtomicLong();
+
+    /**
+     * 窗口内的失败数
+     */
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private volatile State state = State.CLOSED;
+
+    private volatile long openedAtNanos;
+
+    /**
+     * 半开状态已放行和已成功的探测请求数
+     */
+    private final AtomicInteger halfOpenCalls = new AtomicInteger();
+
+    private final AtomicInteger halfOpenSuccesses = new AtomicInteger();
+
+    private CircuitBreaker(String name, Rule.HystrixConfig config) {
+        this.name = name;
+        this.config = config;
+        this.window = new AtomicIntegerArray(Math.max(1, config.getSlidingWindowSize()));
+    }
+
+    /**
+     * 请求发往下游之前申请放行，关闭状态下只读取状态，不加锁
+     * @return 熔断打开或半开状态的探测名额用完时返回false
+     */
+    public boolean tryAcquire() {
+        State current = state;
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN) {
+            if (System.nanoTime() - openedAtNanos < TimeUnit.MILLISECONDS.toNanos(config.getWaitDurationInOpenState())) {
+                return false;
+            }
+            halfOpen();
+        }
+        return tryAcquireProbe();
+    }
+
+    private boolean tryAcquireProbe() {
+        int permitted = Math.max(1, config.getPermittedNumberOfCallsInHalfOpenState());
+        while (state == State.HALF_OPEN) {
+            int calls = halfOpenCalls.get();
+            if (calls >= permitted) {
+                return false;
+            }
+            if (halfOpenCalls.compareAndSet(calls, calls + 1)) {
+                return true;
+            }
+        }
+        //探测期间状态已经变化
+        return state == State.CLOSED;
+    }
+
+    public void onSuccess() {
+        State current = state;
+        if (current == State.HALF_OPEN) {
+            if (halfOpenSuccesses.incrementAndGet() >= Math.max(1, config.getPermittedNumberOfCallsInHalfOpenState())) {
+                close();
+            }
+        } else if (current == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public void onFailure() {
+        State current = state;
+        if (current == State.HALF_OPEN) {
+            open(State.HALF_OPEN);
+        } else if (current == State.CLOSED) {
+            int calls = record(true);
+            if (calls >= config.getMinimumNumberOfCalls()
+                    && failures.get() * 100L >= (long) config.getFailureRateThreshold() * calls) {
+                open(State.CLOSED);
+            }
+        }
+    }
+
+    /**
+     * 写入一个结果
+     * @return 窗口内的请求数
+     */
+    private int record(boolean failed) {
+        int length = window.length();
+        long index = recorded.getAndIncrement();
+        int previous = window.getAndSet((int) (index % length), failed ? 1 : 0);
+        int delta = (failed ? 1 : 0) - previous;
+        if (delta != 0) {
+            failures.addAndGet(delta);
+        }
+        return (int) Math.min(index + 1, length);
+    }
+
+    /**
+     * 状态转换加锁，保证每次转换只发生一次
+     */
+    private synchronized void open(State expected) {
+        if (state != expected) {
+            return;
+        }
+        log.warn("circuit breaker {} open, failures {}/{}", name, failures.get(),
+                Math.min(recorded.get(), window.length()));
+        openedAtNanos = System.nanoTime();
+        state = State.OPEN;
+    }
+
+    private synchronized void halfOpen() {
+        if (state != State.OPEN) {
+            return;
+        }
+        halfOpenCalls.set(0);
+        halfOpenSuccesses.set(0);
+        state = State.HALF_OPEN;
+        log.info("circuit breaker {} half open", name);
+    }
+
+    private synchronized void close() {
+        if (state != State.HALF_OPEN) {
+            return;
+        }
+        for (int i = 0; i < window.length(); i++) {
+            window.set(i, 0);
+        }
+        recorded.set(0);
+        failures.set(0);
+        state = State.CLOSED;
+        log.info("circuit breaker {} closed", name);
+    }
+}
@@ -0,0 +1,233 @@
+package blossom.project.core.filter.router;
+
+import blossom.project.common.config.Rule;
+import blossom.project.common.config.ServiceInstance;
+import blossom.project.core.context.GatewayContext;
+import blossom.project.core.filter.flow.AdaptiveConcurrencyLimiter;
+import blossom.project.core.filter.loadbalance.InstanceStats;
+import blossom.project.core.filter.loadbalance.LoadBalanceFilter;
+import blossom.project.core.filter.loadbalance.OutlierDetector;
+import blossom.project.core.helper.AsyncHttpHelper;
+import lombok.extern.slf4j.Slf4j;
+import org.asynchttpclient.ListenableFuture;
+import org.asynchttpclient.Request;
+import org.asynchttpclient.RequestBuilder;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.uri.Uri;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/** HedgedRoute类
+ * 对冲请求，一次网关请求对应一个实例
+ * 第一个请求在路由延迟的指定分位数内没有返回时，重新负载均衡选择另一个实例发出相同的请求
+ * 对冲请求只读取上下文选择实例，复制第一个请求并替换目标地址，不修改上下文
+ * 先成功返回的请求生效，其余请求被取消；出现异常或返回5xx时如果还有请求在途则继续等待，全部失败时以最后一个失败交给RouterFilter处理
+ * 生效的结果在客户端连接所在的EventLoop上写入上下文，与对冲请求的选择在同一个线程
+ * 对冲请求和重试共用全局重试预算，预算不足时不发出对冲请求
+ */
+@Slf4j
+class HedgedRoute {
+
+    private final RouterFilter routerFilter;
+
+    private final GatewayContext gatewayContext;
+
+    private final Optional<Rule.HystrixConfig> hystrixConfig;
+
+    private final RouteLatency latency;
+
+    private final List<Attempt> attempts = new ArrayList<>(2);
+
+    private int pending;
+
+    private boolean done;
+
+    HedgedRoute(RouterFilter routerFilter, GatewayContext gatewayContext,
+                Optional<Rule.HystrixConfig> hystrixConfig) {
+        this.routerFilter = routerFilter;
+        this.gatewayContext = gatewayContext;
+        this.hystrixConfig = hystrixConfig;
+        this.latency = RouteLatency.of(gatewayContext.getRule().getId());
+    }
+
+    void start(Rule.HedgeConfig hedgeConfig) {
+        attempt(gatewayContext.getRequest().build(), gatewayContext.getServiceInstance());
+        gatewayContext.getNettyCtx().executor().schedule(this::hedge, delayNanos(hedgeConfig), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 对冲延迟取路由响应时间的分位数，并限制在[minDelay, maxDelay]之间
+     */
+    private long delayNanos(Rule.HedgeConfig hedgeConfig) {
+        long min = TimeUnit.MILLISECONDS.toNanos(hedgeConfig.getMinDelay());
+        long max = TimeUnit.MILLISECONDS.toNanos(hedgeConfig.getMaxDelay());
+        long delay = latency.percentile(hedgeConfig.getPercentile());
+        if (delay < 0) {
+            return max;
+        }
+        return Math.max(min, Math.min(max, delay));
+    }
+
+    private void hedge() {
+        Attempt primary;
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            primary = attempts.get(0);
+        }
+        if (!RetryBudget.getInstance().tryWithdraw()) {
+            return;
+        }
+        ServiceInstance instance;
+        try {
+            instance = LoadBalanceFilter.chooseOther(gatewayContext, primary.instance);
+        } catch (Exception e) {
+            log.debug("no instance for hedged request {}", gatewayContext.getUniqueId(), e);
+            return;
+        }
+        if (instance == null) {
+            //没有其他可用的实例
+            return;
+        }
+        attempt(copy(primary.request, instance), instance);
+    }
+
+    /**
+     * 复制请求并把目标地址替换为指定的实例
+     */
+    static Request copy(Request request, ServiceInstance instance) {
+        Uri uri = request.getUri();
+        String url = uri.getScheme() + "://" + instance.getIp() + ":" + instance.getPort() + uri.toRelativeUrl();
+        return new RequestBuilder(request).setUrl(url).build();
+    }
+
+    private void attempt(Request request, ServiceInstance instance) {
+        Attempt attempt = new Attempt(request, instance, gatewayContext.getAdaptiveLimiters());
+        attempt.future = AsyncHttpHelper.getInstance().executeCancellableRequest(request);
+        synchronized (this) {
+            if (!done) {
+                attempts.add(attempt);
+                pending++;
+                attempt.future.toCompletableFuture().whenComplete((response, throwable) ->
+                        onComplete(attempt, response, throwable));
+                return;
+            }
+        }
+        //发出请求的同时另一个请求已经返回
+        attempt.future.cancel(true);
+        attempt.finish(false, false, true);
+    }
+
+    private void onComplete(Attempt attempt, Response response, Throwable throwable) {
+        boolean cancelled = throwable instanceof CancellationException;
+        boolean failed = throwable != null || response.getStatusCode() >= 500;
+        attempt.finish(failed, AdaptiveConcurrencyLimiter.isDropped(throwable), cancelled);
+        if (throwable == null) {
+            latency.record(System.nanoTime() - attempt.startNanos);
+        }
+        List<Attempt> losers = new ArrayList<>(1);
+        List<ServiceInstance> failedInstances = new ArrayList<>(1);
+        synchronized (this) {
+            pending--;
+            attempt.failed = failed && !cancelled;
+            if (done || !settles(failed, pending)) {
+                return;
+            }
+            done = true;
+            for (Attempt other : attempts) {
+                if (other == attempt) {
+                    continue;
+                }
+                losers.add(other);
+                if (other.failed && other.instance != null) {
+                    failedInstances.add(other.instance);
+                }
+            }
+        }
+        for (Attempt loser : losers) {
+            loser.future.cancel(true);
+        }
+        gatewayContext.getNettyCtx().executor().execute(() -> publish(attempt, failedInstances, response, throwable));
+    }
+
+    /**
+     * 一个请求完成后是否决定结果：成功时立即生效，异常或5xx只有在没有其他在途请求时才生效
+     * @param failed 请求出现异常或者下游返回5xx
+     * @param pending 其他仍在途的请求数
+     */
+    static boolean settles(boolean failed, int pending) {
+        return !failed || pending == 0;
+    }
+
+    /**
+     * 把生效的结果写入上下文并交给RouterFilter处理，失败过的实例在重试时不再选择
+     */
+    private void publish(Attempt winner, List<ServiceInstance> failedInstances, Response response,
+                         Throwable throwable) {
+        for (ServiceInstance instance : failedInstances) {
+            gatewayContext.addTriedInstance(instance);
+        }
+        if (winner.instance != null) {
+            gatewayContext.setServiceInstance(winner.instance);
+            gatewayContext.getRequest().setModifyHost(winner.instance.getIp() + ":" + winner.instance.getPort());
+        }
+        routerFilter.complete(winner.request, response, throwable, gatewayContext, hystrixConfig);
+    }
+
+    /**
+     * 发往一个实例的请求
+     */
+    private static final class Attempt {
+        private final Request request;
+        private final ServiceInstance instance;
+        private final InstanceStats stats;
+        private final List<AdaptiveConcurrencyLimiter> adaptiveLimiters;
+        private final long startNanos;
+        private ListenableFuture<Response> future;
+        /**
+         * 请求失败且没有被取消，在HedgedRoute的锁内读写
+         */
+        private boolean failed;
+
+        private Attempt(Request request, ServiceInstance instance, List<AdaptiveConcurrencyLimiter> adaptiveLimiters) {
+            this.request = request;
+            this.instance = instance;
+            this.adaptiveLimiters = adaptiveLimiters;
+            this.stats = instance == null ? null : InstanceStats.of(instance);
+            if (stats != null) {
+                stats.begin();
+            }
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * 扣减在途请求数，每个发出的请求都回报给自适应限流器，被取消的请求不计入延迟均值、异常检测和自适应限流
+         */
+        private void finish(boolean failed, boolean dropped, boolean cancelled) {
+            long rtt = System.nanoTime() - startNanos;
+            if (!cancelled) {
+                for (AdaptiveConcurrencyLimiter adaptiveLimiter : adaptiveLimiters) {
+                    adaptiveLimiter.onSample(rtt, failed, dropped);
+                }
+            }
+            if (stats == null) {
+                return;
+            }
+            if (cancelled) {
+                stats.abandon();
+                return;
+            }
+            stats.end(rtt, failed);
+            if (failed) {
+                OutlierDetector.getInstance().onFailure(stats);
+            } else {
+                OutlierDetector.getInstance().onSuccess(stats);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package blossom.project.core.filter.router;
+
+import blossom.project.core.ConfigLoader;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/** RetryBudget类
+ * 全局重试预算，每个首次请求存入retryBudgetRatio个重试额度，每次重试消耗一个额度
+ * 额度最多累积retryBudgetMaxRetries个，部分实例故障时重试量被限制在请求量的固定比例内，避免重试风暴
+ */
+public class RetryBudget {
+
+    /**
+     * 额度按千分之一计数，避免浮点运算
+     */
+    private static final long UNIT = 1000;
+
+    private static class SingletonHolder {
+        private static final RetryBudget INSTANCE = new RetryBudget(
+                ConfigLoader.getConfig().getRetryBudgetRatio(),
+                ConfigLoader.getConfig().getRetryBudgetMaxRetries());
+    }
+
+    public static RetryBudget getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    private final long depositAmount;
+
+    private final long maxBalance;
+
+    private final AtomicLong balance;
+
+    RetryBudget(double ratio, int maxRetries) {
+        this.depositAmount = (long) (ratio * UNIT);
+        this.maxBalance = maxRetries * UNIT;
+        this.balance = new AtomicLong(maxBalance);
+    }
+
+    /**
+     * 首次请求时存入额度
+     */
+    public void deposit() {
+        long current;
+        do {
+            current = balance.get();
+            if (current >= maxBalance) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(maxBalance, current + depositAmount)));
+    }
+
+    /**
+     * 重试前申请额度
+     * @return 额度不足时返回false，不再重试
+     */
+    public boolean tryWithdraw() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < UNIT) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - UNIT));
+        return true;
+    }
+}
@@ -0,0 +1,133 @@
+package blossom.project.core.filter.router;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** RouteLatency类
+ * 路由的响应时间统计，按对数分桶计数，每个2的幂次区间再等分为SUB_BUCKETS个桶，相对误差不超过1/SUB_BUCKETS
+ * 记录和计算分位数都不加锁，耗时与样本数无关，分位数是所在桶的上界，用于计算对冲请求的延迟
+ * 当前窗口记录满SAMPLES个样本后成为上一个窗口，分位数按两个窗口合并计算，只反映最近的响应时间
+ */
+public class RouteLatency {
+
+    private static final int SAMPLES = 1024;
+
+    /**
+     * 样本数少于该值时不提供分位数
+     */
+    private static final int MIN_SAMPLES = 64;
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * 最大的2的幂次，以微秒计约35分钟，更长的响应时间计入最后一个桶
+     */
+    private static final int MAX_EXPONENT = 31;
+
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private static final ConcurrentHashMap<String, RouteLatency> latencyMap = new ConcurrentHashMap<>();
+
+    public static RouteLatency of(String routeId) {
+        RouteLatency latency = latencyMap.get(routeId);
+        if (latency == null) {
+            latency = latencyMap.computeIfAbsent(routeId, k -> new RouteLatency());
+        }
+        return latency;
+    }
+
+    private volatile Window current = new Window();
+
+    /**
+     * 上一个记录满的窗口，还没有记录满一个窗口时为null
+     */
+    private volatile Window previous;
+
+    private RouteLatency() {
+    }
+
+    /**
+     * 记录一次成功请求的响应时间
+     * @param nanos 响应时间，单位纳秒
+     */
+    public void record(long nanos) {
+        Window window = current;
+        window.counts.incrementAndGet(bucket(TimeUnit.NANOSECONDS.toMicros(nanos)));
+        //只有记录第SAMPLES个样本的线程切换窗口
+        if (window.total.incrementAndGet() == SAMPLES) {
+            previous = window;
+            current = new Window();
+        }
+    }
+
+    /**
+     * 获取响应时间的分位数
+     * @param percentile 分位数，0到100
+     * @return 单位纳秒，样本不足时返回-1
+     */
+    public long percentile(double percentile) {
+        Window window = current;
+        Window last = previous;
+        long total = window.total.get() + (last == null ? 0 : last.total.get());
+        if (total < MIN_SAMPLES) {
+            return -1;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        int highest = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = window.counts.get(i) + (last == null ? 0 : last.counts.get(i));
+            if (count == 0) {
+                continue;
+            }
+            highest = i;
+            seen += count;
+            if (seen >= target) {
+                break;
+            }
+        }
+        return TimeUnit.MICROSECONDS.toNanos(upperBound(highest));
+    }
+
+    /**
+     * 响应时间所在的桶，小于SUB_BUCKETS的值每个值一个桶
+     * @param micros 响应时间，单位微秒
+     */
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(0, micros);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * 桶内的最大值，单位微秒
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (bucket % SUB_BUCKETS + 1) * width - 1;
+    }
+
+    /**
+     * 一个窗口内各个桶的样本数
+     */
+    private static final class Window {
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        private final AtomicLong total = new AtomicLong();
+    }
+}
@@ -1,17 +1,24 @@
 package blossom.project.core.filter.router;
 
 import blossom.project.common.config.Rule;
+import blossom.project.common.config.ServiceInstance;
 import blossom.project.common.enums.ResponseCode;
 import blossom.project.common.exception.ConnectException;
 import blossom.project.common.exception.ResponseException;
 import blossom.project.core.ConfigLoader;
+import blossom.project.core.cache.ResponseCache;
 import blossom.project.core.context.GatewayContext;
 import blossom.project.core.filter.Filter;
 import blossom.project.core.filter.FilterAspect;
+import blossom.project.core.filter.cache.ResponseCacheFilter;
+import blossom.project.core.filter.flow.AdaptiveConcurrencyLimiter;
+import blossom.project.core.filter.loadbalance.InstanceStats;
+import blossom.project.core.filter.loadbalance.LoadBalanceFilter;
+import blossom.project.core.filter.loadbalance.OutlierDetector;
 import blossom.project.core.helper.AsyncHttpHelper;
 import blossom.project.core.helper.ResponseHelper;
 import blossom.project.core.response.GatewayResponse;
-import com.netflix.hystrix.*;
+import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -22,10 +29,14 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 
 import static blossom.project.common.constant.FilterConst.*;
 
@@ -40,16 +51,51 @@ public class RouterFilter implements Filter {
 
     @Override
     public void doFilter(GatewayContext gatewayContext) throws Exception {
+        if (gatewayContext.getCurrentRetryTimes() == 0) {
+            RetryBudget.getInstance().deposit();
+        }
+        //流式转发的请求体无法重放 不参与熔断降级
+        if (gatewayContext.getRequest().isStreaming()) {
+            relay(gatewayContext, Optional.empty());
+            return;
+        }
         //首先获取熔断降级的配置
         Optional<Rule.HystrixConfig> hystrixConfig = getHystrixConfig(gatewayContext);
         //如果存在对应配置就走熔断降级的逻辑
         if (hystrixConfig.isPresent()) {
-            routeWithHystrix(gatewayContext, hystrixConfig);
+            routeWithCircuitBreaker(gatewayContext, hystrixConfig);
+        } else if (isCoalesced(gatewayContext)) {
+            coalesce(gatewayContext, hystrixConfig);
+        } else if (isHedged(gatewayContext)) {
+            //对冲请求需要在响应写回之前决定采用哪个结果 不能中继转发
+            new HedgedRoute(this, gatewayContext, hystrixConfig).start(gatewayContext.getRule().getHedgeConfig());
+        } else if (ConfigLoader.getConfig().isResponseRelay() && gatewayContext.getResponseCacheKey() == null) {
+            //需要缓存的响应要在网关内聚合 不能中继转发
+            relay(gatewayContext, hystrixConfig);
         } else {
             route(gatewayContext, hystrixConfig);
         }
     }
 
+    /**
+     * 只有配置了请求合并的GET请求参与合并
+     */
+    private static boolean isCoalesced(GatewayContext gatewayContext) {
+        return gatewayContext.getRule().getCoalesceConfig() != null
+                && HttpMethod.GET.equals(gatewayContext.getRequest().getMethod());
+    }
+
+    /**
+     * 只有配置了对冲请求的GET和HEAD请求发出对冲请求
+     */
+    private static boolean isHedged(GatewayContext gatewayContext) {
+        if (gatewayContext.getRule().getHedgeConfig() == null) {
+            return false;
+        }
+        HttpMethod method = gatewayContext.getRequest().getMethod();
+        return HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method);
+    }
+
     /**
      * 获取hystrix的配置
      *
@@ -57,6 +103,9 @@ public class RouterFilter implements Filter {
      * @return
      */
     private static Optional<Rule.HystrixConfig> getHystrixConfig(GatewayContext gatewayContext) {
+        if (gatewayContext.getRoutePlan() != null) {
+            return gatewayContext.getRoutePlan().getHystrixConfig();
+        }
         Rule rule = gatewayContext.getRule();
         Optional<Rule.HystrixConfig> hystrixConfig =
                 rule.getHystrixConfigs().stream().filter(c -> StringUtils.equals(c.getPath(),
@@ -84,6 +133,7 @@ public class RouterFilter implements Filter {
                                               Optional<Rule.HystrixConfig> hystrixConfig) {
         Request request = gatewayContext.getRequest().build();
         //执行具体的请求 并得到一个CompleatableFuture对象用于帮助我们执行后续的处理
+        beginUpstream(gatewayContext);
         CompletableFuture<Response> future = AsyncHttpHelper.getInstance().executeRequest(request);
         boolean whenComplete = ConfigLoader.getConfig().isWhenComplete();
         if (whenComplete) {
@@ -99,79 +149,177 @@ public class RouterFilter implements Filter {
     }
 
     /**
-     * 根据提供的GatewayContext和Hystrix配置，执行路由操作，并在熔断时执行降级逻辑。
-     * 熔断会发生在：
-     * 当 Hystrix 命令的执行时间超过配置的超时时间。
-     * 当 Hystrix 命令的执行出现异常或错误。
-     * 当连续请求失败率达到配置的阈值。
+     * 合并路由逻辑
+     * 相同的请求共享第一个请求发出的下游请求，响应到达后每个请求各自进入complete写回客户端
+     * 下游请求失败时每个请求各自按重试策略处理，重试的请求会再次合并
      * @param gatewayContext
      * @param hystrixConfig
      */
-    private void routeWithHystrix(GatewayContext gatewayContext, Optional<Rule.HystrixConfig> hystrixConfig) {
-
-        HystrixCommand.Setter setter =  //进行分组
-                HystrixCommand.Setter.withGroupKey(HystrixCommandGroupKey.Factory.asKey(gatewayContext.getUniqueId()))
-                        .andCommandKey(HystrixCommandKey.Factory.asKey(gatewayContext.getRequest().getPath()))
-                        //线程池大小设置
-                        .andThreadPoolPropertiesDefaults(HystrixThreadPoolProperties.Setter()
-                                .withCoreSize(hystrixConfig.get().getThreadCoreSize()))
-                        .andCommandPropertiesDefaults(HystrixCommandProperties.Setter()
-                                //线程池
-                                .withExecutionIsolationStrategy(HystrixCommandProperties.ExecutionIsolationStrategy.THREAD)
-                                //超时时间
-                                .withExecutionTimeoutInMilliseconds(hystrixConfig.get().getTimeoutInMilliseconds())
-                                .withExecutionIsolationThreadInterruptOnTimeout(true)
-                                .withExecutionTimeoutEnabled(true));
-
-        // 创建一个新的HystrixCommand对象，用于执行实际的路由操作。
-        new HystrixCommand<Object>(setter) {
-            @Override
-            protected Object run() throws Exception {
-                // 在Hystrix命令中执行路由操作，这是实际的业务逻辑。
-                route(gatewayContext, hystrixConfig).get();
-                return null;
+    private void coalesce(GatewayContext gatewayContext, Optional<Rule.HystrixConfig> hystrixConfig) {
+        Request request = gatewayContext.getRequest().build();
+        String key = coalesceKey(gatewayContext, request);
+        CompletableFuture<Response> future = SingleFlight.getInstance().execute(key, () -> {
+            beginUpstream(gatewayContext);
+            return AsyncHttpHelper.getInstance().executeRequest(request);
+        });
+        whenComplete(future, (response, throwable) ->
+                complete(request, response, throwable, gatewayContext, hystrixConfig));
+    }
+
+    /**
+     * 合并请求的key：服务ID、请求路径和查询参数、用户ID以及影响响应内容的请求头
+     * 不包含负载均衡选中的实例地址，发往同一个服务不同实例的相同请求也会合并
+     */
+    private static String coalesceKey(GatewayContext gatewayContext, Request request) {
+        StringBuilder key = new StringBuilder(gatewayContext.getUniqueId())
+                .append(request.getUri().toRelativeUrl()).append('|')
+                .append(gatewayContext.getRequest().getUserId());
+        List<String> varyHeaders = gatewayContext.getRule().getCoalesceConfig().getVaryHeaders();
+        if (varyHeaders != null) {
+            for (String header : varyHeaders) {
+                key.append('|').append(StringUtils.defaultString(gatewayContext.getRequest().getHeaders().get(header)));
             }
+        }
+        return key.toString();
+    }
 
-            @Override
-            protected Object getFallback() {
-                // 当熔断发生时，执行降级逻辑。
-                // 检查是否是因为超时引发的熔断
-                if (isFailedExecution() && getFailedExecutionException() instanceof TimeoutException) {
-                    // 这里设置你自己的超时异常处理逻辑
-                    // 例如，返回一个自定义的错误响应
-                    gatewayContext.setResponse(GatewayResponse.buildGatewayResponse(
-                            ResponseCode.GATEWAY_FALLBACK));
-                } else {
-                    // 其他类型的熔断处理
-                    gatewayContext.setResponse(hystrixConfig.get().getFallbackResponse());
-                }
-                gatewayContext.written();
-                return null;
+    /**
+     * 中继路由逻辑
+     * 响应由StreamingResponseHandler边接收边写回客户端，网关内不聚合响应体
+     * 响应头写回之前失败时与普通路由一样进入complete进行重试或返回错误，写回之后只记录访问日志
+     * @param gatewayContext
+     * @param hystrixConfig
+     */
+    private void relay(GatewayContext gatewayContext, Optional<Rule.HystrixConfig> hystrixConfig) {
+        Request request = gatewayContext.getRequest().build();
+        StreamingResponseHandler handler = new StreamingResponseHandler(gatewayContext);
+        beginUpstream(gatewayContext);
+        AsyncHttpHelper.getInstance().executeRelayRequest(request, handler)
+                .whenComplete((v, throwable) -> {
+                    GatewayResponse relayResponse = gatewayContext.getResponse();
+                    endUpstream(gatewayContext, throwable, throwable != null || (relayResponse != null
+                            && relayResponse.getHttpResponseStatus().code() >= 500));
+                    if (throwable != null && !handler.isHeadWritten()) {
+                        complete(request, null, throwable, gatewayContext, hystrixConfig);
+                        return;
+                    }
+                    accessLog(gatewayContext);
+                });
+    }
+
+    /**
+     * 带熔断降级的路由逻辑，直接在下游请求的CompletableFuture上统计结果，不占用额外的线程
+     * 熔断打开时直接返回降级响应；请求超时由异步客户端的定时器触发，超时或出现异常时返回降级响应
+     * 下游返回5xx计为失败，但仍然原样返回给客户端
+     * @param gatewayContext
+     * @param hystrixConfig
+     */
+    private void routeWithCircuitBreaker(GatewayContext gatewayContext, Optional<Rule.HystrixConfig> hystrixConfig) {
+        Rule.HystrixConfig config = hystrixConfig.get();
+        CircuitBreaker circuitBreaker = CircuitBreaker.getInstance(gatewayContext.getUniqueId(), config);
+        if (!circuitBreaker.tryAcquire()) {
+            fallback(gatewayContext, config, null);
+            return;
+        }
+        Request request;
+        CompletableFuture<Response> future;
+        try {
+            if (config.getTimeoutInMilliseconds() > 0) {
+                gatewayContext.getRequest().setRequestTimeout(config.getTimeoutInMilliseconds());
             }
-        }.execute(); // 执行Hystrix命令。
+            request = gatewayContext.getRequest().build();
+            beginUpstream(gatewayContext);
+            future = AsyncHttpHelper.getInstance().executeRequest(request);
+        } catch (Throwable t) {
+            //请求没有发出时也要回报结果，否则半开状态的探测名额不会释放
+            circuitBreaker.onFailure();
+            endUpstream(gatewayContext, t, true);
+            fallback(gatewayContext, config, t);
+            return;
+        }
+        whenComplete(future, (response, throwable) -> {
+            if (throwable != null || response.getStatusCode() >= 500) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+            if (throwable != null) {
+                endUpstream(gatewayContext, throwable, true);
+                fallback(gatewayContext, config, throwable);
+                return;
+            }
+            complete(request, response, null, gatewayContext, hystrixConfig);
+        });
+    }
+
+    /**
+     * 按whenComplete配置在完成下游请求的线程或者公共线程池中处理响应，与route一致
+     */
+    private static void whenComplete(CompletableFuture<Response> future, BiConsumer<Response, Throwable> action) {
+        if (ConfigLoader.getConfig().isWhenComplete()) {
+            future.whenComplete(action);
+        } else {
+            future.whenCompleteAsync(action);
+        }
+    }
+
+    /**
+     * 熔断降级，有可以使用的过期缓存时返回缓存，超时返回GATEWAY_FALLBACK，其他情况返回配置的降级响应
+     * @param gatewayContext
+     * @param config 熔断配置
+     * @param throwable 下游请求的异常，熔断打开时为null
+     */
+    private static void fallback(GatewayContext gatewayContext, Rule.HystrixConfig config, Throwable throwable) {
+        GatewayResponse staleResponse = ResponseCacheFilter.staleResponse(gatewayContext);
+        if (staleResponse != null) {
+            gatewayContext.setResponse(staleResponse);
+        } else if (throwable instanceof TimeoutException || StringUtils.isEmpty(config.getFallbackResponse())) {
+            gatewayContext.setResponse(GatewayResponse.buildGatewayResponse(ResponseCode.GATEWAY_FALLBACK));
+        } else {
+            gatewayContext.setResponse(GatewayResponse.buildGatewayResponse(config.getFallbackResponse()));
+        }
+        gatewayContext.written();
+        ResponseHelper.writeResponse(gatewayContext);
+        accessLog(gatewayContext);
     }
 
 
-    private void complete(Request request, Response response, Throwable throwable, GatewayContext gatewayContext,
-                          Optional<Rule.HystrixConfig> hystrixConfig) {
-        //请求已经处理完毕 释放请求资源
-        gatewayContext.releaseRequest();
+    void complete(Request request, Response response, Throwable throwable, GatewayContext gatewayContext,
+                  Optional<Rule.HystrixConfig> hystrixConfig) {
+        endUpstream(gatewayContext, throwable, throwable != null
+                || (response != null && response.getStatusCode() >= 500));
         //获取网关上下文规则
         Rule rule = gatewayContext.getRule();
         //获取请求重试次数
         int currentRetryTimes = gatewayContext.getCurrentRetryTimes();
         int confRetryTimes = rule.getRetryConfig().getTimes();
-        //判断是否出现异常 如果是 进行重试
+        //判断是否出现异常 如果是 进行重试 重试次数和全局重试预算都有剩余时才重试
         if ((throwable instanceof TimeoutException || throwable instanceof IOException) &&
-                currentRetryTimes <= confRetryTimes && !hystrixConfig.isPresent()) {
+                currentRetryTimes < confRetryTimes && !hystrixConfig.isPresent()
+                && !gatewayContext.getRequest().isStreaming()
+                && RetryBudget.getInstance().tryWithdraw()) {
             //请求重试
-            doRetry(gatewayContext, currentRetryTimes);
+            doRetry(request, throwable, gatewayContext, hystrixConfig);
             return;
         }
+        respond(request, response, throwable, gatewayContext);
+    }
 
+    /**
+     * 根据下游的响应或异常设置网关响应并写回客户端
+     */
+    private static void respond(Request request, Response response, Throwable throwable,
+                                GatewayContext gatewayContext) {
         try {
+            GatewayResponse staleResponse;
+            //下游出错时优先返回过期的缓存
+            if ((Objects.nonNull(throwable) || response.getStatusCode() >= 500)
+                    && (staleResponse = ResponseCacheFilter.staleResponse(gatewayContext)) != null) {
+                log.warn("serve stale response {}", request.getUrl());
+                gatewayContext.setResponse(staleResponse);
+            }
             //之前出现了异常 执行异常返回逻辑
-            if (Objects.nonNull(throwable)) {
+            else if (Objects.nonNull(throwable)) {
                 String url = request.getUrl();
                 if (throwable instanceof TimeoutException) {
                     log.warn("complete time out {}", url);
@@ -185,6 +333,10 @@ public class RouterFilter implements Filter {
             } else {
                 //没有出现异常直接正常返回
                 gatewayContext.setResponse(GatewayResponse.buildGatewayResponse(response));
+                if (gatewayContext.getResponseCacheKey() != null) {
+                    ResponseCache.getInstance().store(gatewayContext.getResponseCacheKey(),
+                            gatewayContext.getResponseCachePolicy(), gatewayContext.getRequest().getHeaders(), response);
+                }
             }
         } catch (Throwable t) {
             gatewayContext.setThrowable(new ResponseException(ResponseCode.INTERNAL_ERROR));
@@ -192,30 +344,109 @@ public class RouterFilter implements Filter {
             log.error("complete error", t);
         } finally {
             gatewayContext.written();
+            //写回响应的同时释放请求资源，流式转发的请求体一并释放
             ResponseHelper.writeResponse(gatewayContext);
-
             //增加日志记录
-            accessLog.info("{} {} {} {} {} {} {}",
-                    System.currentTimeMillis() - gatewayContext.getRequest().getBeginTime(),
-                    gatewayContext.getRequest().getClientIp(),
-                    gatewayContext.getRequest().getUniqueId(),
-                    gatewayContext.getRequest().getMethod(),
-                    gatewayContext.getRequest().getPath(),
-                    gatewayContext.getResponse().getHttpResponseStatus().code(),
-                    gatewayContext.getResponse().getFutureResponse().getResponseBodyAsBytes().length);
+            accessLog(gatewayContext);
+        }
+    }
 
+    /**
+     * 请求发往下游之前开始计时，负载均衡选中了实例时计入该实例的在途请求数
+     * @param gatewayContext
+     */
+    static void beginUpstream(GatewayContext gatewayContext) {
+        gatewayContext.setUpstreamPending(true);
+        gatewayContext.setUpstreamStartNanos(System.nanoTime());
+        ServiceInstance serviceInstance = gatewayContext.getServiceInstance();
+        if (serviceInstance == null) {
+            return;
         }
+        InstanceStats stats = InstanceStats.of(serviceInstance);
+        stats.begin();
+        gatewayContext.setInstanceStats(stats);
+    }
+
+    /**
+     * 下游请求完成后统计结果，同一次请求只统计一次
+     * 响应时间交给自适应限流器，没有配置负载均衡的路由同样采样
+     * 选中了实例时扣减在途请求数并记录响应时间，请求结果交给异常检测，连续失败或失败率过高的实例会被暂时摘除
+     * @param gatewayContext
+     * @param throwable 下游请求的异常，超时和连接异常交给自适应限流器退避
+     * @param failed 请求异常或下游返回5xx
+     */
+    static void endUpstream(GatewayContext gatewayContext, Throwable throwable, boolean failed) {
+        if (!gatewayContext.isUpstreamPending()) {
+            return;
+        }
+        gatewayContext.setUpstreamPending(false);
+        long rtt = System.nanoTime() - gatewayContext.getUpstreamStartNanos();
+        boolean dropped = AdaptiveConcurrencyLimiter.isDropped(throwable);
+        for (AdaptiveConcurrencyLimiter adaptiveLimiter : gatewayContext.getAdaptiveLimiters()) {
+            adaptiveLimiter.onSample(rtt, failed, dropped);
+        }
+        InstanceStats stats = gatewayContext.getInstanceStats();
+        if (stats != null) {
+            gatewayContext.setInstanceStats(null);
+            stats.end(rtt, failed);
+            if (failed) {
+                OutlierDetector.getInstance().onFailure(stats);
+            } else {
+                OutlierDetector.getInstance().onSuccess(stats);
+            }
+        }
+    }
+
+    /**
+     * 记录访问日志，响应体长度取写回时记录的值，不再重新读取下游响应体
+     * @param gatewayContext
+     */
+    private static void accessLog(GatewayContext gatewayContext) {
+        GatewayResponse response = gatewayContext.getResponse();
+        accessLog.info("{} {} {} {} {} {} {}",
+                System.currentTimeMillis() - gatewayContext.getRequest().getBeginTime(),
+                gatewayContext.getRequest().getClientIp(),
+                gatewayContext.getRequest().getUniqueId(),
+                gatewayContext.getRequest().getMethod(),
+                gatewayContext.getRequest().getPath(),
+                response == null ? 0 : response.getHttpResponseStatus().code(),
+                response == null ? 0 : response.getBodyLength());
     }
 
 
-    private void doRetry(GatewayContext gatewayContext, int retryTimes) {
-        System.out.println("当前重试次数为" + retryTimes);
+    /**
+     * 请求重试
+     * 失败的实例记录到上下文中，重试时重新负载均衡并跳过这些实例，规则没有配置负载均衡时重试原地址
+     * 重试在客户端连接所在的EventLoop上延迟执行，等待时间按重试次数指数增长并随机抖动，避免重试集中到达下游
+     * @param request 上一次发出的请求
+     * @param throwable 上一次请求的异常，重试无法发出时按该异常返回
+     * @param gatewayContext
+     * @param hystrixConfig
+     */
+    private void doRetry(Request request, Throwable throwable, GatewayContext gatewayContext,
+                         Optional<Rule.HystrixConfig> hystrixConfig) {
+        int retryTimes = gatewayContext.getCurrentRetryTimes();
         gatewayContext.setCurrentRetryTimes(retryTimes + 1);
-        try {
-            //调用路由过滤器方法再次进行请求重试
-            doFilter(gatewayContext);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        gatewayContext.addTriedInstance(gatewayContext.getServiceInstance());
+        long delay = backoff(gatewayContext.getRule().getRetryConfig(), retryTimes);
+        log.info("retry {} times after {}ms {}", retryTimes + 1, delay, request.getUrl());
+        gatewayContext.getNettyCtx().executor().schedule(() -> {
+            try {
+                LoadBalanceFilter.reselect(gatewayContext);
+                //调用路由过滤器方法再次进行请求重试
+                doFilter(gatewayContext);
+            } catch (Throwable t) {
+                log.warn("retry failed {}", request.getUrl(), t);
+                respond(request, null, throwable, gatewayContext);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 计算第retryTimes次重试前的等待时间，在[0, min(maxBackoff, backoff * 2^retryTimes)]之间随机选取
+     */
+    static long backoff(Rule.RetryConfig retryConfig, int retryTimes) {
+        long cap = Math.min(retryConfig.getMaxBackoff(), retryConfig.getBackoff() << Math.min(retryTimes, 20));
+        return cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
     }
 }
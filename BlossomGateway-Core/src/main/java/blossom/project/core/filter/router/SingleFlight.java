@@ -0,0 +1,58 @@
+package blossom.project.core.filter.router;
+
+import org.asynchttpclient.Response;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/** SingleFlight类
+ * 合并相同的下游请求，同一个key在请求完成之前只执行一次，后到达的请求共享同一个结果
+ * 请求完成时先移除key再分发结果，之后到达的请求会重新发起下游请求，不会拿到过期的结果
+ */
+public class SingleFlight {
+
+    private static class SingletonHolder {
+        private static final SingleFlight INSTANCE = new SingleFlight();
+    }
+
+    public static SingleFlight getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    private SingleFlight() {
+    }
+
+    /**
+     * 请求key - 正在执行的下游请求
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Response>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * 执行请求，相同key的请求正在执行时直接返回它的结果
+     * @param key 请求key
+     * @param call 发起下游请求，只有第一个到达的请求会调用
+     * @return 共享的下游响应
+     */
+    public CompletableFuture<Response> execute(String key, Supplier<CompletableFuture<Response>> call) {
+        CompletableFuture<Response> shared = new CompletableFuture<>();
+        CompletableFuture<Response> existing = calls.putIfAbsent(key, shared);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            call.get().whenComplete((response, throwable) -> {
+                calls.remove(key, shared);
+                if (throwable != null) {
+                    shared.completeExceptionally(throwable);
+                } else {
+                    shared.complete(response);
+                }
+            });
+        } catch (Throwable t) {
+            calls.remove(key, shared);
+            shared.completeExceptionally(t);
+        }
+        return shared;
+    }
+}
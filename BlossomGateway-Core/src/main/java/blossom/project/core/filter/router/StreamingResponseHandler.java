@@ -0,0 +1,191 @@
+package blossom.project.core.filter.router;
+
+import blossom.project.core.context.GatewayContext;
+import blossom.project.core.helper.ResponseHelper;
+import blossom.project.core.response.GatewayResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.AttributeKey;
+import lombok.extern.slf4j.Slf4j;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.HttpResponseHeaders;
+import org.asynchttpclient.HttpResponseStatus;
+import org.asynchttpclient.handler.ExtendedAsyncHandler;
+import org.asynchttpclient.netty.LazyResponseBodyPart;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 流式响应处理器
+ * 下游响应的状态行和响应头到达后立即写回客户端，响应体逐块转发，网关内不保留完整的响应
+ * 配合LAZY模式的客户端使用时，响应分块中的池化ByteBuf直接写往客户端连接，不经过堆内存拷贝
+ * 客户端连接不可写时暂停读取下游连接，客户端连接恢复可写或者断开后再恢复读取，网关内积压的响应体不超过客户端连接的写高水位
+ * 响应头写回之前出现的异常不在这里处理，由RouterFilter按普通路由的逻辑重试或返回错误
+ */
+@Slf4j
+public class StreamingResponseHandler extends ExtendedAsyncHandler<Void> {
+
+    /**
+     * 客户端连接上正在转发的响应，连接的可写状态变化时由NettyHttpServerHandler通知
+     */
+    public static final AttributeKey<StreamingResponseHandler> RELAY = AttributeKey.valueOf("relay");
+
+    private final GatewayContext gatewayContext;
+
+    private final ChannelHandlerContext nettyCtx;
+
+    private int statusCode;
+
+    /**
+     * 响应头是否已经写回，写回之后出现异常只能断开连接
+     */
+    private volatile boolean headWritten;
+
+    /**
+     * 已转发的响应体字节数
+     */
+    private long bodyLength;
+
+    private GatewayResponse gatewayResponse;
+
+    /**
+     * 下游连接，新建连接或者从连接池取出连接时记录
+     */
+    private volatile Channel upstream;
+
+    /**
+     * 是否暂停了下游连接的读取
+     */
+    private final AtomicBoolean paused = new AtomicBoolean(false);
+
+    public StreamingResponseHandler(GatewayContext gatewayContext) {
+        this.gatewayContext = gatewayContext;
+        this.nettyCtx = gatewayContext.getNettyCtx();
+    }
+
+    public long getBodyLength() {
+        return bodyLength;
+    }
+
+    public boolean isHeadWritten() {
+        return headWritten;
+    }
+
+    @Override
+    public void onTcpConnectSuccess(InetSocketAddress remoteAddress, Channel connection) {
+        upstream = connection;
+    }
+
+    @Override
+    public void onConnectionPooled(Channel connection) {
+        upstream = connection;
+    }
+
+    @Override
+    public State onStatusReceived(HttpResponseStatus responseStatus) {
+        this.statusCode = responseStatus.getStatusCode();
+        return State.CONTINUE;
+    }
+
+    @Override
+    public State onHeadersReceived(HttpResponseHeaders headers) {
+        gatewayResponse = new GatewayResponse();
+        gatewayResponse.setHttpResponseStatus(io.netty.handler.codec.http.HttpResponseStatus.valueOf(statusCode));
+        gatewayContext.setResponse(gatewayResponse);
+
+        HttpResponse head = ResponseHelper.getHttpResponseHead(gatewayContext, statusCode, headers.getHeaders());
+        nettyCtx.channel().attr(RELAY).set(this);
+        nettyCtx.writeAndFlush(head);
+        headWritten = true;
+        return State.CONTINUE;
+    }
+
+    @Override
+    public State onBodyPartReceived(HttpResponseBodyPart bodyPart) {
+        if (!nettyCtx.channel().isActive()) {
+            //客户端已经断开，终止下游请求
+            return State.ABORT;
+        }
+        ByteBuf content;
+        if (bodyPart instanceof LazyResponseBodyPart) {
+            //分块在回调返回后会被客户端释放，写往客户端连接前需要增加引用计数
+            content = ((LazyResponseBodyPart) bodyPart).getBuf().retain();
+        } else {
+            content = Unpooled.wrappedBuffer(bodyPart.getBodyPartBytes());
+        }
+        bodyLength += content.readableBytes();
+        gatewayResponse.setBodyLength(bodyLength);
+        nettyCtx.writeAndFlush(new DefaultHttpContent(content));
+        if (!nettyCtx.channel().isWritable()) {
+            pauseUpstream();
+        }
+        return State.CONTINUE;
+    }
+
+    /**
+     * 客户端连接写缓冲超过高水位，暂停读取下游连接
+     */
+    void pauseUpstream() {
+        Channel channel = upstream;
+        if (channel == null || !paused.compareAndSet(false, true)) {
+            return;
+        }
+        channel.config().setAutoRead(false);
+        //暂停期间客户端连接已经恢复可写或者断开时，不会再收到通知
+        if (nettyCtx.channel().isWritable() || !nettyCtx.channel().isActive()) {
+            resumeUpstream();
+        }
+    }
+
+    /**
+     * 客户端连接恢复可写或者断开时恢复读取下游连接，断开后下一个分块到达时终止下游请求
+     */
+    public void resumeUpstream() {
+        Channel channel = upstream;
+        if (channel != null && paused.compareAndSet(true, false)) {
+            channel.config().setAutoRead(true);
+        }
+    }
+
+    @Override
+    public Void onCompleted() {
+        ChannelFuture future = nettyCtx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        if (!gatewayContext.isKeepAlive()) {
+            future.addListener(ChannelFutureListener.CLOSE);
+        }
+        finish();
+        return null;
+    }
+
+    @Override
+    public void onThrowable(Throwable throwable) {
+        if (headWritten) {
+            //响应已经写出一部分，无法再返回错误信息，只能断开连接
+            log.warn("relay response broken {}", gatewayContext.getRequest().getFinalUrl(), throwable);
+            nettyCtx.close();
+            finish();
+        }
+    }
+
+    /**
+     * 释放请求资源，未写往下游的请求体分块一并丢弃
+     */
+    private void finish() {
+        //下游连接回到连接池之前恢复读取
+        resumeUpstream();
+        nettyCtx.channel().attr(RELAY).compareAndSet(this, null);
+        gatewayContext.releaseRequest();
+        if (!gatewayContext.isCompleted()) {
+            gatewayContext.completed();
+        }
+        gatewayContext.invokeCompletedCallBack();
+    }
+}
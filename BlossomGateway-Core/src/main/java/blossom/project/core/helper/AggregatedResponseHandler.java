@@ -0,0 +1,79 @@
+package blossom.project.core.helper;
+
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.HttpResponseHeaders;
+import org.asynchttpclient.HttpResponseStatus;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.handler.ExtendedAsyncHandler;
+import org.asynchttpclient.netty.NettyResponse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 聚合下游响应的处理器，与异步客户端默认的处理器一致，另外保留响应分块
+ * 需要拷贝响应体的调用方可以逐块读取，不经过聚合成的完整字节数组
+ * 只能配合EAGER模式的客户端使用，LAZY模式的响应分块在回调结束后失效
+ */
+public class AggregatedResponseHandler extends ExtendedAsyncHandler<Response> {
+
+    private HttpResponseStatus status;
+
+    private HttpResponseHeaders headers;
+
+    private final List<HttpResponseBodyPart> bodyParts = new ArrayList<>(1);
+
+    @Override
+    public State onStatusReceived(HttpResponseStatus responseStatus) {
+        this.status = responseStatus;
+        return State.CONTINUE;
+    }
+
+    @Override
+    public State onHeadersReceived(HttpResponseHeaders headers) {
+        if (this.headers == null) {
+            this.headers = headers;
+        } else {
+            //分块传输结尾的响应头合并到已有的响应头中
+            this.headers.getHeaders().add(headers.getHeaders());
+        }
+        return State.CONTINUE;
+    }
+
+    @Override
+    public State onBodyPartReceived(HttpResponseBodyPart bodyPart) {
+        if (bodyPart.length() > 0) {
+            bodyParts.add(bodyPart);
+        }
+        return State.CONTINUE;
+    }
+
+    @Override
+    public Response onCompleted() {
+        return status == null ? null : new AggregatedResponse(status, headers, bodyParts);
+    }
+
+    @Override
+    public void onThrowable(Throwable throwable) {
+        //异常由返回的Future传递给调用方
+    }
+
+    /**
+     * 保留了响应分块的下游响应
+     */
+    public static class AggregatedResponse extends NettyResponse {
+
+        private final List<HttpResponseBodyPart> bodyParts;
+
+        AggregatedResponse(HttpResponseStatus status, HttpResponseHeaders headers,
+                           List<HttpResponseBodyPart> bodyParts) {
+            super(status, headers, bodyParts);
+            this.bodyParts = Collections.unmodifiableList(bodyParts);
+        }
+
+        public List<HttpResponseBodyPart> getBodyParts() {
+            return bodyParts;
+        }
+    }
+}
@@ -15,13 +15,39 @@ public class AsyncHttpHelper {
         return singletonHolder.INSTANCE;
     }
     private AsyncHttpClient asyncHttpClient;
+    /**
+     * 中继转发使用的客户端，响应分块为池化的ByteBuf，未初始化时退回普通客户端
+     */
+    private AsyncHttpClient relayHttpClient;
     public void initialized(AsyncHttpClient asyncHttpClient){this.asyncHttpClient=asyncHttpClient;}
+    public void initialized(AsyncHttpClient asyncHttpClient, AsyncHttpClient relayHttpClient){
+        this.asyncHttpClient=asyncHttpClient;
+        this.relayHttpClient=relayHttpClient;
+    }
+    /**
+     * 执行请求并聚合响应，响应保留了响应分块，存入缓存时可以逐块拷贝
+     */
     public CompletableFuture<Response> executeRequest(Request request){
-        ListenableFuture<Response> future = asyncHttpClient.executeRequest(request);
+        ListenableFuture<Response> future = asyncHttpClient.executeRequest(request, new AggregatedResponseHandler());
         return future.toCompletableFuture();
     }
+    /**
+     * 执行请求并返回可以取消的Future，取消时中断下游连接
+     */
+    public ListenableFuture<Response> executeCancellableRequest(Request request){
+        return asyncHttpClient.executeRequest(request, new AggregatedResponseHandler());
+    }
     public <T> CompletableFuture<T> executeRequest(Request request, AsyncHandler<T> hander){
         ListenableFuture<T> future = asyncHttpClient.executeRequest(request, hander);
         return future.toCompletableFuture();
-}
+    }
+
+    /**
+     * 以中继方式执行请求，handler需要在回调内消费完响应分块
+     */
+    public <T> CompletableFuture<T> executeRelayRequest(Request request, AsyncHandler<T> hander){
+        AsyncHttpClient client = relayHttpClient != null ? relayHttpClient : asyncHttpClient;
+        ListenableFuture<T> future = client.executeRequest(request, hander);
+        return future.toCompletableFuture();
+    }
 }
@@ -5,7 +5,9 @@ import blossom.project.common.constant.BasicConst;
 import blossom.project.common.constant.GatewayConst;
 import blossom.project.common.constant.GatewayProtocol;
 import blossom.project.common.exception.ResponseException;
+import blossom.project.core.cache.RoutePlanCache;
 import blossom.project.core.context.GatewayContext;
+import blossom.project.core.context.RoutePlan;
 import blossom.project.core.request.GatewayRequest;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.*;
@@ -32,17 +34,13 @@ public class RequestHelper {
         //	根据请求对象里的uniqueId，获取资源服务信息(也就是服务定义信息)
         ServiceDefinition serviceDefinition =
                 DynamicConfigManager.getInstance().getServiceDefinition(gateWayRequest.getUniqueId());
-        //	根据请求对象获取服务定义对应的方法调用，然后获取对应的规则
-        ServiceInvoker serviceInvoker = new HttpServiceInvoker();
-        serviceInvoker.setInvokerPath(gateWayRequest.getPath());
-        serviceInvoker.setTimeout(500);
-
-        //根据请求对象获取规则
-        Rule rule = getRule(gateWayRequest, serviceDefinition.getServiceId());
+        //根据请求对象获取路由计划
+        RoutePlan routePlan = getRoutePlan(gateWayRequest, serviceDefinition.getServiceId());
 
         //	构建我们而定GateWayContext对象
         GatewayContext gatewayContext = new GatewayContext(serviceDefinition.getProtocol(), ctx,
-                HttpUtil.isKeepAlive(request), gateWayRequest, rule,0);
+                HttpUtil.isKeepAlive(request), gateWayRequest, routePlan.getRule(),0);
+        gatewayContext.setRoutePlan(routePlan);
 
 
         //后续服务发现做完，这里都要改成动态的--以及在负载均衡算法实现
@@ -95,21 +93,38 @@ public class RequestHelper {
     }
 
     /**
-     * 根据请求对象获取Rule对象
+     * 根据请求对象获取路由计划，规则的匹配方式见RouteTree
      *
      * @param gateWayRequest 请求对象
      * @return
      */
-    private static Rule getRule(GatewayRequest gateWayRequest, String serviceId) {
-        String key = serviceId + "." + gateWayRequest.getPath();
-        Rule rule = DynamicConfigManager.getInstance().getRuleByPath(key);
+    private static RoutePlan getRoutePlan(GatewayRequest gateWayRequest, String serviceId) {
+        RoutePlan routePlan = RoutePlanCache.getInstance().getRoutePlan(serviceId, gateWayRequest.getPath());
+        if (routePlan == null) {
+            throw new ResponseException(PATH_NO_MATCHED);
+        }
+        return routePlan;
+    }
 
-        if (rule != null) {
-            return rule;
+    /**
+     * 在请求体聚合之前根据请求头判断命中的规则是否开启了流式转发
+     * 任何查找失败都视为非流式请求，交给聚合模式统一返回错误信息
+     *
+     * @param request 只包含请求头的请求
+     * @return 是否流式转发
+     */
+    public static boolean isStreaming(HttpRequest request) {
+        String uniqueId = request.headers().get(GatewayConst.UNIQUE_ID);
+        if (StringUtils.isEmpty(uniqueId)) {
+            return false;
+        }
+        ServiceDefinition serviceDefinition = DynamicConfigManager.getInstance().getServiceDefinition(uniqueId);
+        if (serviceDefinition == null) {
+            return false;
         }
-        return DynamicConfigManager.getInstance().getRuleByServiceId(serviceId).stream()
-                .filter(r -> gateWayRequest.getPath().startsWith(r.getPrefix())).findAny()
-                .orElseThrow(() -> new ResponseException(PATH_NO_MATCHED));
+        String path = new QueryStringDecoder(request.uri()).path();
+        RoutePlan routePlan = RoutePlanCache.getInstance().getRoutePlan(serviceDefinition.getServiceId(), path);
+        return routePlan != null && routePlan.getRule().isStreaming();
     }
 
 }
@@ -41,12 +41,16 @@ public class ResponseHelper {
             content = Unpooled.wrappedBuffer(gatewayResponse.getFutureResponse()
                     .getResponseBodyAsByteBuffer());
         }
+        else if(gatewayResponse.getBody() != null) {
+            content = gatewayResponse.getBody();
+        }
         else if(gatewayResponse.getContent() != null) {
             content = Unpooled.wrappedBuffer(gatewayResponse.getContent().getBytes());
         }
         else {
             content = Unpooled.wrappedBuffer(BasicConst.BLANK_SEPARATOR_1.getBytes());
         }
+        gatewayResponse.setBodyLength(content.readableBytes());
 
         if(Objects.isNull(gatewayResponse.getFutureResponse())) {
             DefaultFullHttpResponse httpResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
@@ -57,17 +61,38 @@ public class ResponseHelper {
             httpResponse.headers().set(HttpHeaderNames.CONTENT_LENGTH, httpResponse.content().readableBytes());
             return httpResponse;
         } else {
-            gatewayResponse.getFutureResponse().getHeaders().add(gatewayResponse.getExtraResponseHeaders());
-
             DefaultFullHttpResponse httpResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
                     HttpResponseStatus.valueOf(gatewayResponse.getFutureResponse().getStatusCode()),
                     content);
+            // 额外响应头加在写回的响应上，不修改下游响应对象
             httpResponse.headers().add(gatewayResponse.getFutureResponse().getHeaders());
+            httpResponse.headers().add(gatewayResponse.getExtraResponseHeaders());
             return httpResponse;
         }
     }
 
 
+    /**
+     * 构建流式响应的头部，响应体随后按块写回
+     */
+    public static HttpResponse getHttpResponseHead(IContext ctx, int statusCode, HttpHeaders upstreamHeaders) {
+        DefaultHttpResponse httpResponse = new DefaultHttpResponse(HttpVersion.HTTP_1_1,
+                HttpResponseStatus.valueOf(statusCode));
+        httpResponse.headers().add(upstreamHeaders);
+        GatewayResponse gatewayResponse = (GatewayResponse) ctx.getResponse();
+        if (gatewayResponse != null) {
+            httpResponse.headers().add(gatewayResponse.getExtraResponseHeaders());
+        }
+        // 下游既没有给出长度也不是分块传输时，按分块传输写回
+        if (!HttpUtil.isContentLengthSet(httpResponse) && !HttpUtil.isTransferEncodingChunked(httpResponse)) {
+            HttpUtil.setTransferEncodingChunked(httpResponse, true);
+        }
+        if (ctx.isKeepAlive()) {
+            httpResponse.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+        }
+        return httpResponse;
+    }
+
     /**
      * 写回响应信息方法
      */
@@ -90,6 +115,7 @@ public class ResponseHelper {
             }
             //	2:	设置写回结束状态为： COMPLETED
             context.completed();
+            context.invokeCompletedCallBack();
         }
         else if(context.isCompleted()){
             context.invokeCompletedCallBack();
@@ -7,6 +7,7 @@ import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.EventLoopGroup;
 import lombok.extern.slf4j.Slf4j;
 import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
 import org.asynchttpclient.DefaultAsyncHttpClient;
 import org.asynchttpclient.DefaultAsyncHttpClientConfig;
 import java.io.IOException;
@@ -21,6 +22,8 @@ public class NettyHttpClient implements LifeCycle{
      private final EventLoopGroup eventLoopGroupWoker;
      // 异步HTTP客户端实例
      private AsyncHttpClient asyncHttpClient;
+     // 中继转发使用的异步HTTP客户端，响应体分块直接引用池化的ByteBuf
+     private AsyncHttpClient relayHttpClient;
 
      /**
       * 构造函数，创建NettyHttpClient的实例。
@@ -51,6 +54,9 @@ public class NettyHttpClient implements LifeCycle{
                  .setPooledConnectionIdleTimeout(config.getHttpPooledConnectionIdleTimeout()); // 连接池中空闲连接的超时时间
          // 根据配置创建异步HTTP客户端
          this.asyncHttpClient = new DefaultAsyncHttpClient(builder.build());
+         // LAZY模式的响应分块只在回调期间有效，只能交给逐块消费的AsyncHandler使用，因此单独创建一个客户端
+         builder.setResponseBodyPartFactory(AsyncHttpClientConfig.ResponseBodyPartFactory.LAZY);
+         this.relayHttpClient = new DefaultAsyncHttpClient(builder.build());
      }
      /**
       * 启动客户端，通常在这里进行资源分配和启动必要的服务。
@@ -58,7 +64,7 @@ public class NettyHttpClient implements LifeCycle{
      @Override
      public void start() {
          // 使用AsyncHttpHelper单例模式初始化异步HTTP客户端
-         AsyncHttpHelper.getInstance().initialized(asyncHttpClient);
+         AsyncHttpHelper.getInstance().initialized(asyncHttpClient, relayHttpClient);
      }
 
      /**
@@ -66,11 +72,16 @@ public class NettyHttpClient implements LifeCycle{
       */
      @Override
      public void shutdown() {
+         close(asyncHttpClient);
+         close(relayHttpClient);
+     }
+
+     private void close(AsyncHttpClient client) {
          // 如果客户端实例不为空，则尝试关闭它
-         if (asyncHttpClient != null) {
+         if (client != null) {
              try {
                  // 关闭客户端，并处理可能的异常
-                 this.asyncHttpClient.close();
+                 client.close();
              } catch (IOException e) {
                  // 记录关闭时发生的错误
                  log.error("NettyHttpClient shutdown error", e);
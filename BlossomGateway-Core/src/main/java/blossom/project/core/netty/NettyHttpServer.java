@@ -94,8 +94,9 @@ public class NettyHttpServer implements LifeCycle {
                         // 配置管道中的处理器，如编解码器和自定义处理器
                         ch.pipeline().addLast(
                                 new HttpServerCodec(), // 处理HTTP请求的编解码器
-                                new HttpObjectAggregator(config.getMaxContentLength()), // 聚合HTTP请求
                                 new HttpServerExpectContinueHandler(), // 处理HTTP 100 Continue请求
+                                new NettyHttpStreamingHandler(nettyProcessor), // 流式转发的请求绕过聚合器
+                                new HttpObjectAggregator(config.getMaxContentLength()), // 聚合HTTP请求
                                 new NettyHttpServerHandler(nettyProcessor), // 自定义的处理器
                                 new NettyServerConnectManagerHandler() // 连接管理处理器
                         );
@@ -1,6 +1,7 @@
 package blossom.project.core.netty;
 
 import blossom.project.core.context.HttpRequestWrapper;
+import blossom.project.core.filter.router.StreamingResponseHandler;
 import blossom.project.core.netty.processor.NettyProcessor;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
@@ -42,6 +43,37 @@ public class NettyHttpServerHandler extends ChannelInboundHandlerAdapter {
         // 调用业务逻辑处理器的 process 方法处理请求
         nettyProcessor.process(httpRequestWrapper);
     }
+    /**
+     * 客户端连接恢复可写时，恢复读取正在转发响应的下游连接。
+     *
+     * @param ctx ChannelHandlerContext，提供了操作网络通道的方法。
+     */
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            resumeRelay(ctx);
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    /**
+     * 客户端连接断开时恢复读取下游连接，由转发的响应处理器终止下游请求。
+     *
+     * @param ctx ChannelHandlerContext，提供了操作网络通道的方法。
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        resumeRelay(ctx);
+        super.channelInactive(ctx);
+    }
+
+    private void resumeRelay(ChannelHandlerContext ctx) {
+        StreamingResponseHandler relay = ctx.channel().attr(StreamingResponseHandler.RELAY).get();
+        if (relay != null) {
+            relay.resumeUpstream();
+        }
+    }
+
     /**
      * 处理在处理入站事件时发生的异常。
      *
@@ -0,0 +1,82 @@
+package blossom.project.core.netty;
+
+import blossom.project.core.context.HttpRequestWrapper;
+import blossom.project.core.helper.RequestHelper;
+import blossom.project.core.netty.processor.NettyProcessor;
+import blossom.project.core.request.StreamingBodyGenerator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.*;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 流式转发处理器，位于HttpObjectAggregator之前
+ * 命中开启了streaming的规则时，请求头到达后立即交给核心处理器执行过滤器链并向下游发起请求，
+ * 之后的HttpContent分块不经过聚合，直接投递给StreamingBodyGenerator；其余请求原样交给聚合器处理
+ */
+@Slf4j
+public class NettyHttpStreamingHandler extends ChannelInboundHandlerAdapter {
+
+    private final NettyProcessor nettyProcessor;
+
+    /**
+     * 当前连接上正在上传的流式请求体，为空表示处于聚合模式
+     */
+    private StreamingBodyGenerator streamingBody;
+
+    public NettyHttpStreamingHandler(NettyProcessor nettyProcessor) {
+        this.nettyProcessor = nettyProcessor;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpRequest) {
+            HttpRequest request = (HttpRequest) msg;
+            if (request.decoderResult().isSuccess() && RequestHelper.isStreaming(request)) {
+                startStreaming(ctx, request);
+                return;
+            }
+        }
+        if (streamingBody != null && msg instanceof HttpContent) {
+            HttpContent content = (HttpContent) msg;
+            boolean last = content instanceof LastHttpContent;
+            //分块的引用计数交给生成器，写往下游后释放
+            streamingBody.offer(content.content(), last);
+            if (last) {
+                streamingBody = null;
+            }
+            return;
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    /**
+     * 以请求头构建一个空请求体的FullHttpRequest交给核心处理器，请求体由生成器在后续分块到达时提供
+     */
+    private void startStreaming(ChannelHandlerContext ctx, HttpRequest request) {
+        long contentLength = HttpUtil.isTransferEncodingChunked(request) ? -1L :
+                HttpUtil.getContentLength(request, 0L);
+        streamingBody = new StreamingBodyGenerator(ctx.channel(), contentLength);
+
+        FullHttpRequest head = new DefaultFullHttpRequest(request.protocolVersion(), request.method(),
+                request.uri(), Unpooled.EMPTY_BUFFER, request.headers(), EmptyHttpHeaders.INSTANCE);
+        HttpRequestWrapper httpRequestWrapper = new HttpRequestWrapper();
+        httpRequestWrapper.setCtx(ctx);
+        httpRequestWrapper.setRequest(head);
+        httpRequestWrapper.setStreamingBody(streamingBody);
+        log.debug("streaming request {} {}", request.method(), request.uri());
+
+        nettyProcessor.process(httpRequestWrapper);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        //连接断开时释放还未写往下游的分块
+        if (streamingBody != null) {
+            streamingBody.release();
+            streamingBody = null;
+        }
+        super.channelInactive(ctx);
+    }
+}
@@ -10,7 +10,6 @@ import blossom.project.core.filter.FilterChainFactory;
 import blossom.project.core.filter.GatewayFilterChainChainFactory;
 import blossom.project.core.helper.RequestHelper;
 import blossom.project.core.helper.ResponseHelper;
-import com.netflix.hystrix.exception.HystrixRuntimeException;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.FullHttpRequest;
@@ -32,46 +31,55 @@ public class NettyCoreProcessor implements NettyProcessor{
     public void process(HttpRequestWrapper wrapper) {
         FullHttpRequest request=wrapper.getRequest();
         ChannelHandlerContext ctx = wrapper.getCtx();
+        GatewayContext gatewayContext = null;
         try {
             // 创建并填充 GatewayContext 以保存有关传入请求的信息。
-            GatewayContext gatewayContext = RequestHelper.doContext(request, ctx);
+            gatewayContext = RequestHelper.doContext(request, ctx);
+            // 流式转发的请求体由后续到达的分块提供
+            if (wrapper.getStreamingBody() != null) {
+                gatewayContext.getRequest().setStreamingBody(wrapper.getStreamingBody());
+            }
 
             // 在 GatewayContext 上执行过滤器链逻辑。
             filterChainFactory.buildFilterChain(gatewayContext).doFilter(gatewayContext);
-        }catch (HystrixRuntimeException e){
-            // 通过记录日志并发送内部服务器错误响应处理未知异常。
-            log.error("网关请求超时错误", e);
-            FullHttpResponse httpResponse = ResponseHelper.getHttpResponse(ResponseCode.GATEWAY_FALLBACK);
-            doWriteAndRelease(ctx, request, httpResponse);
-        }
-        catch (LimitedException e) {
+        } catch (LimitedException e) {
             // 通过记录日志并发送内部服务器错误响应处理未知异常。
             log.error("请求过量错误", e);
             FullHttpResponse httpResponse = ResponseHelper.getHttpResponse(ResponseCode.FLOW_CONTROL_ERROR);
-            doWriteAndRelease(ctx, request, httpResponse);
+            doWriteAndRelease(ctx, wrapper, httpResponse, gatewayContext);
         } catch (BaseException e) {
             // 通过记录日志并发送适当的 HTTP 响应处理已知异常。
             log.error("处理错误 {} {}", e.getCode().getCode(), e.getCode().getMessage());
             FullHttpResponse httpResponse = ResponseHelper.getHttpResponse(e.getCode());
-            doWriteAndRelease(ctx, request, httpResponse);
+            doWriteAndRelease(ctx, wrapper, httpResponse, gatewayContext);
         } catch (Throwable t) {
             // 通过记录日志并发送内部服务器错误响应处理未知异常。
             log.error("处理未知错误", t);
             FullHttpResponse httpResponse = ResponseHelper.getHttpResponse(ResponseCode.INTERNAL_ERROR);
-            doWriteAndRelease(ctx, request, httpResponse);
+            doWriteAndRelease(ctx, wrapper, httpResponse, gatewayContext);
         }
     }
     /**
      * 将 HTTP 响应写入通道并释放资源。
      *
      * @param ctx          用于写入响应的 ChannelHandlerContext。
-     * @param request      从客户端接收的 FullHttpRequest。
+     * @param wrapper      从客户端接收的请求，流式转发时包含请求体生成器。
      * @param httpResponse 作为响应发送的 FullHttpResponse。
+     * @param gatewayContext 过滤器中已经占用的许可通过完成回调归还，上下文创建失败时为null。
      */
-    private void doWriteAndRelease(ChannelHandlerContext ctx, FullHttpRequest request, FullHttpResponse httpResponse) {
+    private void doWriteAndRelease(ChannelHandlerContext ctx, HttpRequestWrapper wrapper, FullHttpResponse httpResponse,
+                                   GatewayContext gatewayContext) {
         ctx.writeAndFlush(httpResponse).addListener(ChannelFutureListener.CLOSE);
-        ReferenceCountUtil.release(request);
-
+        if (gatewayContext != null) {
+            //只释放一次，流式转发的请求体一并释放
+            gatewayContext.releaseRequest();
+            gatewayContext.invokeCompletedCallBack();
+        } else {
+            ReferenceCountUtil.release(wrapper.getRequest());
+            if (wrapper.getStreamingBody() != null) {
+                wrapper.getStreamingBody().release();
+            }
+        }
     }
     /**
      * 启动 NettyCoreProcessor。（目前为空方法）
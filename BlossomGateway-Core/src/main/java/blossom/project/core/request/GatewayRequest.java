@@ -120,6 +120,12 @@ public class GatewayRequest implements IGatewayRequest{
     @Getter
     private Map<String,List<String>> postParameters;
 
+    /**
+     * 流式转发时的请求体，为空表示请求体已经聚合在fullHttpRequest中
+     */
+    @Getter
+    private StreamingBodyGenerator streamingBody;
+
 
     /******可修改的请求变量***************************************/
     /**
@@ -187,6 +193,25 @@ public class GatewayRequest implements IGatewayRequest{
         return body;
     }
 
+    /**
+     * 设置流式请求体，下游请求的请求体改为边接收边转发
+     * @param streamingBody
+     */
+    public void setStreamingBody(StreamingBodyGenerator streamingBody) {
+        this.streamingBody = streamingBody;
+        if (streamingBody.getContentLength() != 0) {
+            this.requestBuilder.setBody(streamingBody);
+        }
+    }
+
+    /**
+     * 是否为流式转发的请求
+     * @return
+     */
+    public boolean isStreaming() {
+        return streamingBody != null;
+    }
+
     /**
      * 获取Cookie
      * @param name
@@ -196,9 +221,12 @@ public class GatewayRequest implements IGatewayRequest{
         if(cookieMap == null){
             cookieMap = new HashMap<String,io.netty.handler.codec.http.cookie.Cookie>();
             String cookieStr = getHeaders().get(HttpHeaderNames.COOKIE);
+            if(StringUtils.isEmpty(cookieStr)){
+                return null;
+            }
             Set<io.netty.handler.codec.http.cookie.Cookie> cookies = ServerCookieDecoder.STRICT.decode(cookieStr);
             for(io.netty.handler.codec.http.cookie.Cookie cookie: cookies){
-                cookieMap.put(name,cookie);
+                cookieMap.put(cookie.name(),cookie);
             }
         }
         return cookieMap.get(name);
@@ -303,7 +331,8 @@ public class GatewayRequest implements IGatewayRequest{
     public Request build() {
         requestBuilder.setUrl(getFinalUrl());
         //设置用户id 用于下游的服务使用
-        requestBuilder.addHeader("userId", String.valueOf(userId));
+        //重试时会再次构建请求 使用setHeader避免重复添加
+        requestBuilder.setHeader("userId", String.valueOf(userId));
         return requestBuilder.build();
     }
 
@@ -0,0 +1,157 @@
+package blossom.project.core.request;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import org.asynchttpclient.request.body.Body;
+import org.asynchttpclient.request.body.generator.FeedListener;
+import org.asynchttpclient.request.body.generator.FeedableBodyGenerator;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 流式请求体生成器
+ * 客户端上传的HttpContent分块直接进入队列，由AsyncHttpClient按需取出写往下游服务。
+ * 积压的数据超过高水位时暂停读取客户端连接，降到低水位以下再恢复读取，
+ * 这样单个请求在网关内占用的内存只有少量分块
+ */
+public class StreamingBodyGenerator implements FeedableBodyGenerator {
+
+    /**
+     * 积压字节数高水位，超过后暂停读取客户端连接
+     */
+    private static final long HIGH_WATER_MARK = 256 * 1024;
+
+    /**
+     * 积压字节数低水位，低于后恢复读取客户端连接
+     */
+    private static final long LOW_WATER_MARK = 64 * 1024;
+
+    private final Queue<ByteBuf> queue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong pendingBytes = new AtomicLong();
+
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    /**
+     * 客户端连接，用于做读背压
+     */
+    private final Channel inbound;
+
+    /**
+     * 请求体长度，-1表示分块传输长度未知
+     */
+    private final long contentLength;
+
+    private volatile boolean last;
+
+    private volatile FeedListener listener;
+
+    public StreamingBodyGenerator(Channel inbound, long contentLength) {
+        this.inbound = inbound;
+        this.contentLength = contentLength;
+    }
+
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * 投递一个请求体分块，buf的引用计数由生成器接管
+     *
+     * @param buf    请求体分块
+     * @param isLast 是否为最后一个分块
+     */
+    public void offer(ByteBuf buf, boolean isLast) {
+        if (released.get() || !buf.isReadable()) {
+            buf.release();
+        } else {
+            queue.offer(buf);
+            if (pendingBytes.addAndGet(buf.readableBytes()) > HIGH_WATER_MARK) {
+                inbound.config().setAutoRead(false);
+            }
+            //释放与投递并发时，保证队列中不残留分块
+            if (released.get()) {
+                drain();
+            }
+        }
+        if (isLast) {
+            last = true;
+        }
+        FeedListener feedListener = listener;
+        if (feedListener != null) {
+            feedListener.onContentAdded();
+        }
+    }
+
+    @Override
+    public boolean feed(ByteBuffer buffer, boolean isLast) {
+        offer(Unpooled.wrappedBuffer(buffer), isLast);
+        return true;
+    }
+
+    @Override
+    public void setListener(FeedListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public Body createBody() {
+        return new StreamingBody();
+    }
+
+    /**
+     * 请求结束或者失败时释放尚未写出的分块，并恢复客户端连接的读取
+     */
+    public void release() {
+        if (released.compareAndSet(false, true)) {
+            drain();
+            inbound.config().setAutoRead(true);
+        }
+    }
+
+    private void drain() {
+        ByteBuf buf;
+        while ((buf = queue.poll()) != null) {
+            buf.release();
+        }
+    }
+
+    private final class StreamingBody implements Body {
+
+        @Override
+        public long getContentLength() {
+            return contentLength;
+        }
+
+        @Override
+        public BodyState transferTo(ByteBuf target) {
+            //先读last再读队列，last为true时之前投递的分块一定已经入队
+            boolean done = last;
+            ByteBuf buf = queue.peek();
+            if (buf == null) {
+                return done ? BodyState.STOP : BodyState.SUSPEND;
+            }
+            int size = Math.min(buf.readableBytes(), target.writableBytes());
+            target.writeBytes(buf, size);
+            if (!buf.isReadable()) {
+                queue.poll();
+                buf.release();
+            }
+            if (pendingBytes.addAndGet(-size) < LOW_WATER_MARK && !inbound.config().isAutoRead()
+                    && !released.get()) {
+                inbound.config().setAutoRead(true);
+            }
+            return BodyState.CONTINUE;
+        }
+
+        @Override
+        public void close() {
+            release();
+        }
+    }
+}
@@ -3,6 +3,7 @@ package blossom.project.core.response;
 import blossom.project.common.enums.ResponseCode;
 import blossom.project.common.utils.JSONUtil;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.http.*;
 import lombok.Data;
 import org.asynchttpclient.Response;
@@ -27,6 +28,11 @@ public class GatewayResponse {
      */
     private String content;
 
+    /**
+     * 响应体，写回时直接使用，写回后由Netty释放
+     */
+    private ByteBuf body;
+
     /**
      * 异步返回对象
      */
@@ -37,6 +43,11 @@ public class GatewayResponse {
      */
     private HttpResponseStatus httpResponseStatus;
 
+    /**
+     * 写回客户端的响应体字节数
+     */
+    private long bodyLength;
+
 
     public GatewayResponse() {
 
@@ -11,7 +11,7 @@ import java.util.concurrent.locks.ReentrantLock;
 /*jedis连接池工具包*/
 @Slf4j
 public class JedisPoolUtil {
-    public static JedisPool jedisPool = null;
+    public static volatile JedisPool jedisPool = null;
     private String host;
     private int port;
     private int maxTotal;
@@ -38,28 +38,24 @@ public class JedisPoolUtil {
         }
     }
     private void initialPool(){
-        if(lock.tryLock()){
-            try {
-                lock.lock();
-                initialConfig();;
-                JedisPoolConfig config = new JedisPoolConfig();
-                config.setMaxTotal(maxTotal);
-                config.setMaxIdle(maxIdle);
-                config.setMaxWaitMillis(maxWaitMillis);
-                config.setTestOnBorrow(testOnBorrow);
-                jedisPool = new JedisPool(config, host, port);
-            }catch(Exception e){
-                log.debug("init redis pool failed:{}",e.getMessage());
-            }finally{
-                lock.unlock();
+        //其他线程正在初始化时等待其完成 初始化过的连接池不再重复创建
+        lock.lock();
+        try {
+            if (jedisPool != null) {
+                return;
             }
-        }else{
-                log.debug("some other is init pool,just wait 1 second");
-                try {
-                    Thread.sleep(1000);
-                }catch(InterruptedException e){
-                    e.printStackTrace();
-                }
+            initialConfig();
+            JedisPoolConfig config = new JedisPoolConfig();
+            config.setMaxTotal(maxTotal);
+            config.setMaxIdle(maxIdle);
+            config.setMinIdle(minIdle);
+            config.setMaxWaitMillis(maxWaitMillis);
+            config.setTestOnBorrow(testOnBorrow);
+            jedisPool = new JedisPool(config, host, port);
+        }catch(Exception e){
+            log.warn("init redis pool failed:{}",e.getMessage());
+        }finally{
+            lock.unlock();
         }
     }
     public Jedis getJedis() {
@@ -67,10 +63,13 @@ public class JedisPoolUtil {
         if (jedisPool == null) {
             initialPool();
         }
+        if (jedisPool == null) {
+            return null;
+        }
         try {
             return jedisPool.getResource();
         } catch (Exception e) {
-            log.debug("getJedis() throws : {}" + e.getMessage());
+            log.warn("getJedis() throws : {}", e.getMessage());
         }
         return null;
     }
@@ -252,37 +252,67 @@ public class JedisUtil {
         }
     }
     /**
-     * 执行Lua脚本
-     * @param key 键值
-     * @param limit 限制
-     * @param expire 过期时间
-     * @return 执行结果
+     * 计数限流脚本，KEYS[1]为限流key，ARGV[1]为时间窗口，ARGV[2]为窗口内允许的次数
+     * 固定窗口，窗口交界处最多可能放行两倍的请求
      */
-    public Object executeScript(String key, int limit, int expire){
-        Jedis jedis = jedisPool.getJedis();
-        String lua = buildLuaScript();
-        //加载Lua脚本到Redis中 以获得脚本的SHA-1散列值
-        String scriptLoad =jedis.scriptLoad(lua);
-        try {
-            //尝试执行Lua脚本
-            Object result = jedis.evalsha(scriptLoad, Arrays.asList(key), Arrays.asList(String.valueOf(expire), String.valueOf(limit)));
-            System.out.println(result);
-            return result;
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            if (jedis != null) {
-                try {
-                    jedis.close();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
-        }
-        return null;
-    }
+    public static final LuaScript LIMIT_SCRIPT = new LuaScript(buildLuaScript());
+
+    /**
+     * 滑动日志限流脚本，有序集合中保存窗口内每个请求的时间，结果精确，内存占用与窗口内的请求数成正比
+     * KEYS[1]为限流key，ARGV[1]为时间窗口（秒），ARGV[2]为窗口内允许的次数，ARGV[3]为请求的唯一标识
+     */
+    public static final LuaScript SLIDING_LOG_SCRIPT = new LuaScript(buildSlidingLogScript());
+
+    /**
+     * 滑动计数限流脚本，按上一个窗口的计数与其在滑动窗口内所占的时间比例估算请求数，每个窗口只占用一个计数
+     * 两个窗口的计数是KEYS[1]哈希中以窗口序号为名的字段，脚本只访问一个key，可以在Redis集群中执行
+     * KEYS[1]为限流key，ARGV[1]为时间窗口（秒），ARGV[2]为窗口内允许的次数
+     */
+    public static final LuaScript SLIDING_COUNTER_SCRIPT = new LuaScript(buildSlidingCounterScript());
 
+    /**
+     * 使用Redis的时钟，各网关节点的时钟偏差不影响结果，精确到毫秒
+     * 脚本中读取TIME后再写入，需要按命令复制
+     */
+    private static final String REDIS_NOW_MILLIS = "redis.replicate_commands()\n" +
+            "local time = redis.call('time')\n" +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n";
 
+    private static String buildSlidingLogScript() {
+        return REDIS_NOW_MILLIS +
+                "local window = tonumber(ARGV[1]) * 1000\n" +
+                "redis.call('zremrangebyscore', KEYS[1], '-inf', now - window)\n" +
+                "if redis.call('zcard', KEYS[1]) >= tonumber(ARGV[2]) then\n" +
+                "\treturn 0\n" +
+                "end\n" +
+                "redis.call('zadd', KEYS[1], now, ARGV[3])\n" +
+                "redis.call('pexpire', KEYS[1], window)\n" +
+                "return 1\n";
+    }
+
+    private static String buildSlidingCounterScript() {
+        return REDIS_NOW_MILLIS +
+                "local window = tonumber(ARGV[1]) * 1000\n" +
+                "local index = math.floor(now / window)\n" +
+                "local field = tostring(index)\n" +
+                "local counts = redis.call('hmget', KEYS[1], field, tostring(index - 1))\n" +
+                "local current = tonumber(counts[1] or '0')\n" +
+                "local previous = tonumber(counts[2] or '0')\n" +
+                "local weight = (window - (now - index * window)) / window\n" +
+                "if previous * weight + current >= tonumber(ARGV[2]) then\n" +
+                "\treturn 0\n" +
+                "end\n" +
+                "redis.call('hincrby', KEYS[1], field, 1)\n" +
+                "if redis.call('hlen', KEYS[1]) > 2 then\n" +
+                "\tfor _, old in ipairs(redis.call('hkeys', KEYS[1])) do\n" +
+                "\t\tif tonumber(old) < index - 1 then\n" +
+                "\t\t\tredis.call('hdel', KEYS[1], old)\n" +
+                "\t\tend\n" +
+                "\tend\n" +
+                "end\n" +
+                "redis.call('pexpire', KEYS[1], window * 2)\n" +
+                "return 1\n";
+    }
 
     // 构造lua脚本
     private static String buildLuaScript() {
@@ -0,0 +1,51 @@
+package blossom.project.core.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/** LuaScript类
+ * Redis Lua脚本，SHA1在本地计算一次，执行时只发送EVALSHA
+ * Redis重启或执行过SCRIPT FLUSH之后返回NOSCRIPT，此时用SCRIPT LOAD重新载入脚本，再执行一次EVALSHA
+ */
+public final class LuaScript {
+
+    private static final String NO_SCRIPT = "NOSCRIPT";
+
+    private final String script;
+
+    private final String sha;
+
+    public LuaScript(String script) {
+        this.script = script;
+        this.sha = sha1(script);
+    }
+
+    public String getScript() {
+        return script;
+    }
+
+    public String getSha() {
+        return sha;
+    }
+
+    /**
+     * 是否是脚本不存在的错误
+     */
+    public static boolean isNoScript(Throwable throwable) {
+        return throwable != null && throwable.getMessage() != null && throwable.getMessage().startsWith(NO_SCRIPT);
+    }
+
+    private static String sha1(String script) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(script.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
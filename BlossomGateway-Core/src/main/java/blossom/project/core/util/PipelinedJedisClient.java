@@ -0,0 +1,162 @@
+package blossom.project.core.util;
+
+import blossom.project.core.Config;
+import blossom.project.core.ConfigLoader;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/** PipelinedJedisClient类
+ * 异步执行Lua脚本，调用线程只把命令放入队列，由单独的线程批量写入同一个Pipeline
+ * 空闲时每条命令单独发送，负载越高一次往返携带的命令越多，不额外等待凑批
+ * 队列满或超过redisPipelineCommandTimeoutMillis没有返回时直接失败，由调用方决定放行还是拒绝
+ */
+@Slf4j
+public class PipelinedJedisClient {
+
+    /**
+     * 一次往返最多携带的命令数
+     */
+    private final int maxBatchSize;
+
+    /**
+     * 命令从入队到返回的最长时间，Redis阻塞时调用方不会一直等待，超时后的返回结果直接丢弃
+     */
+    private final long commandTimeoutMillis;
+
+    private final BlockingQueue<Command> queue;
+
+    private final JedisPoolUtil jedisPool = new JedisPoolUtil();
+
+    private PipelinedJedisClient(Config config) {
+        this.maxBatchSize = config.getRedisPipelineBatchSize();
+        this.commandTimeoutMillis = config.getRedisPipelineCommandTimeoutMillis();
+        this.queue = new LinkedBlockingQueue<>(config.getRedisPipelineMaxPending());
+        Thread flusher = new Thread(this::flushLoop, "redis-pipeline");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    private static class SingletonInstance {
+        private static final PipelinedJedisClient INSTANCE = new PipelinedJedisClient(ConfigLoader.getConfig());
+    }
+
+    public static PipelinedJedisClient getInstance() {
+        return SingletonInstance.INSTANCE;
+    }
+
+    /**
+     * 异步执行Lua脚本
+     * @param script 脚本
+     * @param keys 脚本的KEYS
+     * @param args 脚本的ARGV
+     * @return 脚本的返回值，Redis不可用、队列已满或超时时异常结束
+     */
+    public CompletableFuture<Object> evalsha(LuaScript script, List<String> keys, List<String> args) {
+        Command command = new Command(script, keys, args);
+        if (!queue.offer(command)) {
+            command.future.completeExceptionally(new RejectedExecutionException("redis pipeline queue is full"));
+            return command.future;
+        }
+        return command.future.orTimeout(commandTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void flushLoop() {
+        List<Command> batch = new ArrayList<>(maxBatchSize);
+        while (true) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatchSize - 1);
+                execute(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Throwable t) {
+                log.error("redis pipeline error", t);
+                for (Command command : batch) {
+                    command.future.completeExceptionally(t);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void execute(List<Command> batch) {
+        Jedis jedis = jedisPool.getJedis();
+        if (jedis == null) {
+            throw new IllegalStateException("redis connection is not available");
+        }
+        try {
+            List<Command> missing = sync(jedis, batch);
+            if (missing.isEmpty()) {
+                return;
+            }
+            //Redis中没有脚本 载入之后重新执行这部分命令
+            Set<LuaScript> scripts = new LinkedHashSet<>();
+            for (Command command : missing) {
+                scripts.add(command.script);
+            }
+            for (LuaScript script : scripts) {
+                jedis.scriptLoad(script.getScript());
+            }
+            for (Command command : sync(jedis, missing)) {
+                command.future.completeExceptionally(new IllegalStateException("redis script not loaded"));
+            }
+        } finally {
+            jedis.close();
+        }
+    }
+
+    /**
+     * 在一次往返中执行全部命令
+     * @return 因为脚本不存在而失败的命令
+     */
+    private static List<Command> sync(Jedis jedis, List<Command> commands) {
+        Pipeline pipeline = jedis.pipelined();
+        List<Response<Object>> responses = new ArrayList<>(commands.size());
+        for (Command command : commands) {
+            responses.add(pipeline.evalsha(command.script.getSha(), command.keys, command.args));
+        }
+        pipeline.sync();
+        List<Command> missing = new ArrayList<>(0);
+        for (int i = 0; i < commands.size(); i++) {
+            Command command = commands.get(i);
+            try {
+                command.future.complete(responses.get(i).get());
+            } catch (JedisDataException e) {
+                if (LuaScript.isNoScript(e)) {
+                    missing.add(command);
+                } else {
+                    command.future.completeExceptionally(e);
+                }
+            }
+        }
+        return missing;
+    }
+
+    private static final class Command {
+        private final LuaScript script;
+        private final List<String> keys;
+        private final List<String> args;
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        private Command(LuaScript script, List<String> keys, List<String> args) {
+            this.script = script;
+            this.keys = keys;
+            this.args = args;
+        }
+    }
+}
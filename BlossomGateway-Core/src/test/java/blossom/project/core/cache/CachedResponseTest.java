@@ -0,0 +1,80 @@
+package blossom.project.core.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**CachedResponseTest类
+ */
+public class CachedResponseTest {
+
+    @Test
+    public void freshWithinTtl() {
+        CachedResponse cached = cached(Unpooled.EMPTY_BUFFER, 60_000, 0, 0);
+
+        assertTrue(cached.isFresh());
+        assertTrue(cached.isStaleWhileRevalidate());
+        assertEquals(cached.getStoredAtMillis() + 60_000, cached.getExpireAtMillis());
+    }
+
+    @Test
+    public void staleWindowsAfterTtl() {
+        CachedResponse cached = cached(Unpooled.EMPTY_BUFFER, 0, 60_000, 0);
+
+        assertFalse(cached.isFresh());
+        assertTrue(cached.isStaleWhileRevalidate());
+        assertFalse(cached.isStaleIfError());
+        assertEquals(60_000, cached.getRetentionMillis());
+
+        cached = cached(Unpooled.EMPTY_BUFFER, 0, 0, 30_000);
+        assertFalse(cached.isStaleWhileRevalidate());
+        assertTrue(cached.isStaleIfError());
+    }
+
+    @Test
+    public void holdersKeepBodyAfterEviction() {
+        ByteBuf body = Unpooled.copiedBuffer("cached", StandardCharsets.UTF_8);
+        CachedResponse cached = cached(body, 60_000, 0, 0);
+
+        //缓存之外的持有者取得自己的引用后，缓存淘汰不影响响应体
+        cached.retain();
+        cached.release();
+        assertEquals(1, body.refCnt());
+
+        ByteBuf written = cached.retainedBody();
+        assertEquals(2, body.refCnt());
+        written.release();
+
+        CachedResponse renewed = cached.renew();
+        cached.release();
+        assertEquals(1, body.refCnt());
+        written = renewed.retainedBody();
+        assertEquals("cached", written.toString(StandardCharsets.UTF_8));
+        written.release();
+
+        renewed.release();
+        assertEquals(0, body.refCnt());
+    }
+
+    @Test
+    public void ttlFollowsCacheControl() {
+        assertEquals(30, ResponseCache.ttlSeconds(null, 30));
+        assertEquals(0, ResponseCache.ttlSeconds("no-store", 30));
+        assertEquals(0, ResponseCache.ttlSeconds("private, max-age=60", 30));
+        assertEquals(60, ResponseCache.ttlSeconds("public, max-age=60", 30));
+        assertEquals(120, ResponseCache.ttlSeconds("max-age=60, s-maxage=120", 30));
+    }
+
+    private static CachedResponse cached(ByteBuf body, long ttlMillis, long staleWhileRevalidateMillis,
+                                         long staleIfErrorMillis) {
+        return new CachedResponse(200, new DefaultHttpHeaders(), body, "\"v1\"", ttlMillis,
+                staleWhileRevalidateMillis, staleIfErrorMillis);
+    }
+}
@@ -0,0 +1,80 @@
+package blossom.project.core.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**GatewayCacheManagerTest类
+ */
+public class GatewayCacheManagerTest {
+
+    private final GatewayCacheManager manager = new GatewayCacheManager();
+
+    @Test
+    public void defaultSpecIsBounded() {
+        Cache<String, String> cache = manager.create("default");
+        Policy.Eviction<String, String> eviction = cache.policy().eviction().get();
+
+        assertFalse(eviction.isWeighted());
+        assertEquals(CacheSpec.DEFAULT_MAXIMUM_SIZE, eviction.getMaximum());
+    }
+
+    @Test
+    public void maximumWeightReplacesMaximumSize() {
+        Cache<String, String> cache = manager.create("weighted",
+                CacheSpec.<String>newSpec().maximumWeight(1024, (key, value) -> value.length()));
+        Policy.Eviction<String, String> eviction = cache.policy().eviction().get();
+
+        assertTrue(eviction.isWeighted());
+        assertEquals(1024, eviction.getMaximum());
+    }
+
+    @Test
+    public void statsRecordedByDefault() {
+        Cache<String, String> recorded = manager.create("recorded");
+        Cache<String, String> unrecorded = manager.create("unrecorded", CacheSpec.<String>newSpec().recordStats(false));
+        recorded.getIfPresent("missing");
+        unrecorded.getIfPresent("missing");
+
+        assertEquals(1, recorded.stats().missCount());
+        assertEquals(0, unrecorded.stats().missCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refreshWithoutLoaderRejected() {
+        manager.create("refresh", CacheSpec.<String>newSpec().refreshAfterWrite(Duration.ofSeconds(1)));
+    }
+
+    @Test
+    public void removeByCacheId() {
+        Cache<String, String> cache = manager.create("remove");
+        cache.put("a", "1");
+        cache.put("b", "2");
+
+        manager.remove("remove", "a");
+        assertNull(cache.getIfPresent("a"));
+        assertEquals("2", cache.getIfPresent("b"));
+        manager.remove("remove");
+        assertNull(cache.getIfPresent("b"));
+    }
+
+    @Test
+    public void metricsBoundBeforeAndAfterCreation() {
+        manager.create("before");
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        manager.bindTo(registry);
+        manager.create("after");
+
+        assertNotNull(registry.find("cache.size").tag("cache", "before").gauge());
+        assertNotNull(registry.find("cache.size").tag("cache", "after").gauge());
+    }
+}
@@ -0,0 +1,50 @@
+package blossom.project.core.cache;
+
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaders;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**ResponseCacheTest类
+ */
+public class ResponseCacheTest {
+
+    @Test
+    public void varyNamesAreNormalized() {
+        HttpHeaders upstream = new DefaultHttpHeaders()
+                .add("Vary", "Accept-Encoding, Accept-Language")
+                .add("Vary", "accept-encoding");
+
+        assertEquals(Arrays.asList("accept-encoding", "accept-language"), ResponseCache.varyNames(upstream));
+        assertEquals(Collections.emptyList(), ResponseCache.varyNames(new DefaultHttpHeaders()));
+        assertNull(ResponseCache.varyNames(new DefaultHttpHeaders().add("Vary", "Accept, *")));
+    }
+
+    @Test
+    public void variantKeyIncludesVaryHeaderValues() {
+        HttpHeaders gzip = new DefaultHttpHeaders().add("Accept-Encoding", "gzip");
+        HttpHeaders identity = new DefaultHttpHeaders();
+
+        assertEquals("svc|/a", ResponseCache.variantKey("svc|/a", Collections.emptyList(), gzip));
+        String gzipKey = ResponseCache.variantKey("svc|/a", Collections.singletonList("accept-encoding"), gzip);
+        String identityKey = ResponseCache.variantKey("svc|/a", Collections.singletonList("accept-encoding"), identity);
+        assertEquals("svc|/a|vary:accept-encoding=gzip", gzipKey);
+        assertNotEquals(gzipKey, identityKey);
+    }
+
+    @Test
+    public void sharedOnlyWithPublicOrSharedMaxAge() {
+        assertTrue(ResponseCache.isShared("public, max-age=60"));
+        assertTrue(ResponseCache.isShared("max-age=60, s-maxage=120"));
+        assertFalse(ResponseCache.isShared("max-age=60"));
+        assertFalse(ResponseCache.isShared(null));
+    }
+}
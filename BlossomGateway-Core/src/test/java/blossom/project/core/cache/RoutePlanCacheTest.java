@@ -0,0 +1,77 @@
+package blossom.project.core.cache;
+
+import blossom.project.common.config.DynamicConfigManager;
+import blossom.project.common.config.Rule;
+import blossom.project.core.context.RoutePlan;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**RoutePlanCacheTest类
+ */
+public class RoutePlanCacheTest {
+
+    private static final String SERVICE_ID = "route-plan-test";
+
+    @Test
+    public void planReusedUntilRulesChange() {
+        Rule rule = rule("plan-reuse", "/ping");
+        DynamicConfigManager.getInstance().putAllRule(Collections.singletonList(rule));
+
+        RoutePlan first = RoutePlanCache.getInstance().getRoutePlan(SERVICE_ID, "/ping");
+        assertSame(rule, first.getRule());
+        assertSame(first, RoutePlanCache.getInstance().getRoutePlan(SERVICE_ID, "/ping"));
+
+        Rule changed = rule("plan-reuse", "/ping");
+        DynamicConfigManager.getInstance().putAllRule(Collections.singletonList(changed));
+        RoutePlan rebuilt = RoutePlanCache.getInstance().getRoutePlan(SERVICE_ID, "/ping");
+        assertNotSame(first, rebuilt);
+        assertSame(changed, rebuilt.getRule());
+    }
+
+    @Test
+    public void unmatchedPathHasNoPlan() {
+        DynamicConfigManager.getInstance().putAllRule(Collections.singletonList(rule("plan-miss", "/ping")));
+
+        assertNull(RoutePlanCache.getInstance().getRoutePlan(SERVICE_ID, "/pong"));
+    }
+
+    @Test
+    public void pathFlowControlOnlyForItsPath() {
+        Rule rule = rule("plan-flow", "/a", "/b");
+        Rule.FlowControlConfig pathA = flowControl("path", "/a");
+        Rule.FlowControlConfig service = flowControl("service", SERVICE_ID);
+        rule.getFlowControlConfigs().add(pathA);
+        rule.getFlowControlConfigs().add(service);
+        DynamicConfigManager.getInstance().putAllRule(Collections.singletonList(rule));
+
+        RoutePlan planA = RoutePlanCache.getInstance().getRoutePlan(SERVICE_ID, "/a");
+        RoutePlan planB = RoutePlanCache.getInstance().getRoutePlan(SERVICE_ID, "/b");
+        assertEquals(new HashSet<>(Arrays.asList(pathA, service)), new HashSet<>(planA.getFlowControlConfigs()));
+        assertEquals(Collections.singletonList(service), planB.getFlowControlConfigs());
+    }
+
+    private static Rule rule(String id, String... paths) {
+        Rule rule = new Rule();
+        rule.setId(id);
+        rule.setServiceId(SERVICE_ID);
+        rule.setPaths(Arrays.asList(paths));
+        return rule;
+    }
+
+    private static Rule.FlowControlConfig flowControl(String type, String value) {
+        Rule.FlowControlConfig config = new Rule.FlowControlConfig();
+        config.setType(type);
+        config.setValue(value);
+        config.setModel("Singleton");
+        config.setConfig("{\"duration\":1,\"permits\":10}");
+        return config;
+    }
+}
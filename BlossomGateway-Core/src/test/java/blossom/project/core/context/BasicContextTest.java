@@ -0,0 +1,62 @@
+package blossom.project.core.context;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**BasicContextTest类
+ */
+public class BasicContextTest {
+
+    @Test
+    public void callbacksRunOnceUnderConcurrentCompletion() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int round = 0; round < 200; round++) {
+                BasicContext ctx = new BasicContext("http", null, false);
+                AtomicInteger released = new AtomicInteger();
+                ctx.setCompletedCallBack(c -> released.incrementAndGet());
+                ctx.setCompletedCallBack(c -> released.incrementAndGet());
+
+                CountDownLatch start = new CountDownLatch(1);
+                CountDownLatch done = new CountDownLatch(4);
+                for (int i = 0; i < 4; i++) {
+                    executor.execute(() -> {
+                        try {
+                            start.await();
+                            ctx.invokeCompletedCallBack();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } finally {
+                            done.countDown();
+                        }
+                    });
+                }
+                start.countDown();
+                assertTrue(done.await(5, TimeUnit.SECONDS));
+                assertEquals(2, released.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void callbackRegisteredAfterCompletionRunsOnNextInvoke() {
+        BasicContext ctx = new BasicContext("http", null, false);
+        AtomicInteger calls = new AtomicInteger();
+        ctx.invokeCompletedCallBack();
+        ctx.setCompletedCallBack(c -> calls.incrementAndGet());
+
+        ctx.invokeCompletedCallBack();
+        ctx.invokeCompletedCallBack();
+        assertEquals(1, calls.get());
+    }
+}
@@ -0,0 +1,357 @@
+package blossom.project.core.filter.cache;
+
+import blossom.project.common.config.Rule;
+import blossom.project.core.ConfigLoader;
+import blossom.project.core.cache.CachedResponse;
+import blossom.project.core.cache.ResponseCache;
+import blossom.project.core.context.GatewayContext;
+import blossom.project.core.helper.AsyncHttpHelper;
+import blossom.project.core.netty.NettyHttpServerHandler;
+import blossom.project.core.request.GatewayRequest;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.DefaultAsyncHttpClient;
+import org.asynchttpclient.Response;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static blossom.project.common.constant.FilterConst.RESPONSE_CACHE_FILTER_ID;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**ResponseCacheFilterTest类
+ */
+public class ResponseCacheFilterTest {
+
+    private static final String REVALIDATE_PATH = "/revalidate";
+
+    /**
+     * 响应体超过堆外缓存阈值的路径
+     */
+    private static final String LARGE_PATH = "/large";
+
+    /**
+     * 下游收到的请求数，按路径统计
+     */
+    private static final Map<String, AtomicInteger> HITS = new ConcurrentHashMap<>();
+
+    /**
+     * 放行下游对条件请求的响应
+     */
+    private static final CountDownLatch REVALIDATE_LATCH = new CountDownLatch(1);
+
+    private static volatile String ifNoneMatch;
+
+    private static HttpServer upstream;
+
+    private static AsyncHttpClient asyncHttpClient;
+
+    private final ResponseCacheFilter filter = new ResponseCacheFilter();
+
+    @BeforeClass
+    public static void start() throws IOException {
+        if (ConfigLoader.getConfig() == null) {
+            ConfigLoader.getInstance().load(new String[0]);
+        }
+        upstream = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        upstream.setExecutor(Executors.newCachedThreadPool());
+        upstream.createContext("/", ResponseCacheFilterTest::handle);
+        upstream.start();
+        asyncHttpClient = new DefaultAsyncHttpClient();
+        AsyncHttpHelper.getInstance().initialized(asyncHttpClient);
+    }
+
+    @AfterClass
+    public static void stop() throws IOException {
+        REVALIDATE_LATCH.countDown();
+        asyncHttpClient.close();
+        upstream.stop(0);
+    }
+
+    @Test
+    public void cachedResponseServedBeforeRouting() throws Exception {
+        EmbeddedChannel client = new EmbeddedChannel(new NettyHttpServerHandler(null));
+        GatewayContext miss = context(client, "/items", HttpHeaderNames.ACCEPT_LANGUAGE, "zh");
+        filter.doFilter(miss);
+        assertFalse(miss.isTerminated());
+        assertNotNull(miss.getResponseCacheKey());
+        store(miss);
+
+        GatewayContext hit = context(client, "/items", HttpHeaderNames.ACCEPT_LANGUAGE, "zh");
+        filter.doFilter(hit);
+        assertTrue(hit.isTerminated());
+        FullHttpResponse response = client.readOutbound();
+        assertEquals(HttpResponseStatus.OK, response.status());
+        assertEquals("/items", response.content().toString(StandardCharsets.UTF_8));
+        assertEquals("\"v1\"", response.headers().get(HttpHeaderNames.ETAG));
+        response.release();
+        assertEquals(1, HITS.get("/items").get());
+
+        //Vary中的请求头不同时不命中
+        GatewayContext variant = context(client, "/items", HttpHeaderNames.ACCEPT_LANGUAGE, "en");
+        filter.doFilter(variant);
+        assertFalse(variant.isTerminated());
+        assertNotNull(variant.getResponseCacheKey());
+
+        //请求的Cache-Control为no-store时不使用缓存
+        GatewayContext bypass = context(client, "/items", HttpHeaderNames.ACCEPT_LANGUAGE, "zh",
+                HttpHeaderNames.CACHE_CONTROL, "no-store");
+        filter.doFilter(bypass);
+        assertFalse(bypass.isTerminated());
+        assertNull(bypass.getResponseCacheKey());
+        assertNull(client.readOutbound());
+    }
+
+    @Test
+    public void matchingIfNoneMatchReturnsNotModified() throws Exception {
+        EmbeddedChannel client = new EmbeddedChannel(new NettyHttpServerHandler(null));
+        GatewayContext miss = context(client, "/etag");
+        filter.doFilter(miss);
+        store(miss);
+
+        GatewayContext conditional = context(client, "/etag", HttpHeaderNames.IF_NONE_MATCH, "W/\"v1\"");
+        filter.doFilter(conditional);
+        assertTrue(conditional.isTerminated());
+        FullHttpResponse response = client.readOutbound();
+        assertEquals(HttpResponseStatus.NOT_MODIFIED, response.status());
+        assertEquals(0, response.content().readableBytes());
+        assertEquals("\"v1\"", response.headers().get(HttpHeaderNames.ETAG));
+        response.release();
+    }
+
+    @Test
+    public void uncacheableResponsesNotStored() throws Exception {
+        assertNotStored("/no-store");
+        assertNotStored("/cookie");
+        //带有身份信息的请求只缓存下游明确允许共享的响应
+        assertNotStored("/account", HttpHeaderNames.AUTHORIZATION, "Bearer token");
+    }
+
+    @Test
+    public void largeBodyCopiedOffHeap() throws Exception {
+        EmbeddedChannel client = new EmbeddedChannel(new NettyHttpServerHandler(null));
+        GatewayContext miss = context(client, LARGE_PATH);
+        filter.doFilter(miss);
+        store(miss);
+
+        CachedResponse cached = ResponseCache.getInstance().acquire(miss.getResponseCacheKey());
+        assertNotNull(cached);
+        try {
+            assertTrue(cached.getBody().isDirect());
+            byte[] bytes = new byte[cached.getBody().readableBytes()];
+            cached.getBody().getBytes(cached.getBody().readerIndex(), bytes);
+            assertArrayEquals(largeBody(), bytes);
+        } finally {
+            cached.release();
+        }
+    }
+
+    @Test
+    public void staleWhileRevalidateServedWithSingleRevalidation() throws Exception {
+        EmbeddedChannel client = new EmbeddedChannel(new NettyHttpServerHandler(null));
+        GatewayContext miss = context(client, REVALIDATE_PATH);
+        filter.doFilter(miss);
+        String key = miss.getResponseCacheKey();
+        assertNotNull(key);
+        ByteBuf body = Unpooled.copiedBuffer("stale", StandardCharsets.UTF_8);
+        CachedResponse stale = new CachedResponse(HttpResponseStatus.OK.code(), new DefaultHttpHeaders(), body,
+                "\"v1\"", 1000, 60000, 0);
+        ResponseCache.getInstance().renew(key, stale);
+        stale.release();
+        Thread.sleep(1100);
+
+        //刷新请求返回之前的两个请求都直接返回过期的缓存，只发出一次刷新请求
+        for (int i = 0; i < 2; i++) {
+            GatewayContext ctx = context(client, REVALIDATE_PATH);
+            filter.doFilter(ctx);
+            assertTrue(ctx.isTerminated());
+            FullHttpResponse response = client.readOutbound();
+            assertEquals(HttpResponseStatus.OK, response.status());
+            assertEquals("stale", response.content().toString(StandardCharsets.UTF_8));
+            response.release();
+        }
+        REVALIDATE_LATCH.countDown();
+
+        //下游返回304后重新计时
+        await(() -> isFresh(key));
+        assertEquals(1, HITS.get(REVALIDATE_PATH).get());
+        assertEquals("\"v1\"", ifNoneMatch);
+        GatewayContext fresh = context(client, REVALIDATE_PATH);
+        filter.doFilter(fresh);
+        assertTrue(fresh.isTerminated());
+        FullHttpResponse response = client.readOutbound();
+        assertEquals("stale", response.content().toString(StandardCharsets.UTF_8));
+        response.release();
+        assertEquals(1, HITS.get(REVALIDATE_PATH).get());
+
+        //替换下来的条目异步释放，最后只剩缓存持有的引用
+        await(() -> body.refCnt() == 1);
+    }
+
+    @Test
+    public void ifNoneMatchUsesWeakComparison() {
+        assertTrue(ResponseCacheFilter.matches("\"v1\"", "\"v1\""));
+        assertTrue(ResponseCacheFilter.matches("W/\"v1\"", "\"v1\""));
+        assertTrue(ResponseCacheFilter.matches("\"v0\", W/\"v1\"", "W/\"v1\""));
+        assertTrue(ResponseCacheFilter.matches("*", "\"v1\""));
+        assertFalse(ResponseCacheFilter.matches("\"v2\"", "\"v1\""));
+    }
+
+    @Test
+    public void authenticatedRequests() {
+        assertFalse(ResponseCacheFilter.isAuthenticated(request()));
+
+        GatewayRequest bearer = request();
+        bearer.getHeaders().set(HttpHeaderNames.AUTHORIZATION, "Bearer token");
+        assertTrue(ResponseCacheFilter.isAuthenticated(bearer));
+
+        GatewayRequest jwt = request();
+        jwt.setUserId(1314520L);
+        assertTrue(ResponseCacheFilter.isAuthenticated(jwt));
+    }
+
+    @Test
+    public void keyedByUser() {
+        assertTrue(ResponseCacheFilter.isKeyedByUser("path, userId"));
+        assertFalse(ResponseCacheFilter.isKeyedByUser("path,query"));
+    }
+
+    private void assertNotStored(String path, CharSequence... headers) throws Exception {
+        EmbeddedChannel client = new EmbeddedChannel(new NettyHttpServerHandler(null));
+        GatewayContext miss = context(client, path, headers);
+        filter.doFilter(miss);
+        store(miss);
+
+        GatewayContext next = context(client, path, headers);
+        filter.doFilter(next);
+        assertFalse(next.isTerminated());
+        assertNull(client.readOutbound());
+    }
+
+    /**
+     * 向下游发出请求并存入缓存，与RouterFilter写回响应时的处理一致
+     */
+    private static void store(GatewayContext ctx) throws Exception {
+        Response response = AsyncHttpHelper.getInstance().executeRequest(ctx.getRequest().build())
+                .get(5, TimeUnit.SECONDS);
+        ResponseCache.getInstance().store(ctx.getResponseCacheKey(), ctx.getResponseCachePolicy(),
+                ctx.getRequest().getHeaders(), response);
+    }
+
+    /**
+     * 下游服务，按路径返回不同的缓存响应头，/revalidate的条件请求在放行之前一直等待，然后返回304
+     */
+    private static void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        HITS.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+        if (REVALIDATE_PATH.equals(path)) {
+            ifNoneMatch = exchange.getRequestHeaders().getFirst(HttpHeaderNames.IF_NONE_MATCH.toString());
+            try {
+                REVALIDATE_LATCH.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().set(HttpHeaderNames.ETAG.toString(), "\"v1\"");
+            exchange.sendResponseHeaders(HttpResponseStatus.NOT_MODIFIED.code(), -1);
+            exchange.close();
+            return;
+        }
+        Headers headers = exchange.getResponseHeaders();
+        if ("/no-store".equals(path)) {
+            headers.set(HttpHeaderNames.CACHE_CONTROL.toString(), "no-store");
+        } else {
+            headers.set(HttpHeaderNames.CACHE_CONTROL.toString(), "max-age=60");
+            headers.set(HttpHeaderNames.ETAG.toString(), "\"v1\"");
+            headers.set(HttpHeaderNames.VARY.toString(), HttpHeaderNames.ACCEPT_LANGUAGE.toString());
+        }
+        if ("/cookie".equals(path)) {
+            headers.set(HttpHeaderNames.SET_COOKIE.toString(), "session=1");
+        }
+        byte[] body = LARGE_PATH.equals(path) ? largeBody() : path.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(HttpResponseStatus.OK.code(), body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    private static byte[] largeBody() {
+        byte[] body = new byte[ConfigLoader.getConfig().getResponseCacheOffHeapThreshold() * 2];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) i;
+        }
+        return body;
+    }
+
+    private static boolean isFresh(String key) {
+        CachedResponse cached = ResponseCache.getInstance().acquire(key);
+        if (cached == null) {
+            return false;
+        }
+        try {
+            return cached.isFresh();
+        } finally {
+            cached.release();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 指向测试下游服务的请求上下文，规则配置了响应缓存
+     * @param headers 请求头名称和值交替排列
+     */
+    private static GatewayContext context(EmbeddedChannel client, String path, CharSequence... headers) {
+        DefaultFullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, path);
+        for (int i = 0; i < headers.length; i += 2) {
+            httpRequest.headers().set(headers[i], headers[i + 1]);
+        }
+        GatewayRequest request = new GatewayRequest("cache-test:1.0", StandardCharsets.UTF_8, "127.0.0.1",
+                "127.0.0.1:" + upstream.getAddress().getPort(), path, HttpMethod.GET, null,
+                httpRequest.headers(), httpRequest);
+        Rule.FilterConfig filterConfig = new Rule.FilterConfig();
+        filterConfig.setId(RESPONSE_CACHE_FILTER_ID);
+        filterConfig.setConfig("{\"ttl\":60,\"stale_while_revalidate\":60,\"stale_if_error\":60}");
+        Rule rule = new Rule();
+        rule.getFilterConfigs().add(filterConfig);
+        return new GatewayContext("http", client.pipeline().firstContext(), true, request, rule, 0);
+    }
+
+    private static GatewayRequest request() {
+        DefaultFullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/items");
+        return new GatewayRequest("cache-test:1.0", StandardCharsets.UTF_8, "127.0.0.1", "127.0.0.1:8080",
+                "/items", HttpMethod.GET, null, httpRequest.headers(), httpRequest);
+    }
+}
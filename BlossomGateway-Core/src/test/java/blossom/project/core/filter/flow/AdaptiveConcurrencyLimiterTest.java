@@ -0,0 +1,130 @@
+package blossom.project.core.filter.flow;
+
+import blossom.project.common.config.Rule;
+import blossom.project.core.context.GatewayContext;
+import blossom.project.core.request.GatewayRequest;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**AdaptiveConcurrencyLimiterTest类
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(5);
+
+    @Test
+    public void serverErrorsDoNotBackOff() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("5xx", 100);
+        window(limiter, 20, 20, 0);
+
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    public void dropRateAboveThresholdBacksOff() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("drop", 100);
+        window(limiter, 20, 0, 2);
+
+        assertEquals(18, limiter.getLimit());
+    }
+
+    @Test
+    public void isolatedDropBelowThresholdKeepsLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("isolated", 100);
+        window(limiter, 40, 0, 1);
+
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    public void saturatedWithStableLatencyGrows() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("grow", 100);
+        //在途请求达到限制的一半，说明流量足以用满限制
+        acquire(limiter, 10);
+        window(limiter, 20, 0, 0);
+        acquire(limiter, 1);
+        window(limiter, 20, 0, 0);
+
+        assertEquals(21, limiter.getLimit());
+    }
+
+    @Test
+    public void unsaturatedKeepsLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("unsaturated", 100);
+        acquire(limiter, 2);
+        window(limiter, 20, 0, 0);
+        window(limiter, 20, 0, 0);
+
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    public void risingLatencyShrinks() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("shrink", 100);
+        acquire(limiter, 10);
+        window(limiter, 20, 0, 0);
+        acquire(limiter, 1);
+        //响应时间升到长期RTT的4倍，梯度取下限0.5
+        window(limiter, 20, 0, 0, RTT * 4);
+
+        assertEquals(19, limiter.getLimit());
+    }
+
+    @Test
+    public void limitNeverExceedsMax() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("max", 20);
+        acquire(limiter, 10);
+        window(limiter, 20, 0, 0);
+
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    public void dropClassification() {
+        assertTrue(AdaptiveConcurrencyLimiter.isDropped(new TimeoutException()));
+        assertTrue(AdaptiveConcurrencyLimiter.isDropped(new ConnectException()));
+        assertTrue(AdaptiveConcurrencyLimiter.isDropped(new IOException()));
+        assertFalse(AdaptiveConcurrencyLimiter.isDropped(null));
+        assertFalse(AdaptiveConcurrencyLimiter.isDropped(new IllegalStateException()));
+    }
+
+    /**
+     * 在一个统计窗口内回报samples个结果，其中failures个5xx、drops个超时，最后一个结果在窗口结束后回报以触发结算
+     */
+    private static void window(AdaptiveConcurrencyLimiter limiter, int samples, int failures, int drops)
+            throws InterruptedException {
+        window(limiter, samples, failures, drops, RTT);
+    }
+
+    private static void window(AdaptiveConcurrencyLimiter limiter, int samples, int failures, int drops, long rtt)
+            throws InterruptedException {
+        for (int i = 0; i < samples; i++) {
+            if (i == samples - 1) {
+                Thread.sleep(150);
+            }
+            limiter.onSample(rtt, i < failures + drops, i < drops);
+        }
+    }
+
+    private static void acquire(AdaptiveConcurrencyLimiter limiter, int count) {
+        for (int i = 0; i < count; i++) {
+            DefaultFullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/ping");
+            GatewayRequest request = new GatewayRequest("adaptive-test:1.0", StandardCharsets.UTF_8, "127.0.0.1",
+                    "127.0.0.1:8080", "/ping", HttpMethod.GET, null, httpRequest.headers(), httpRequest);
+            limiter.doFlowControlFilter(new GatewayContext("http", null, false, request, new Rule(), 0), null,
+                    "adaptive-test");
+        }
+    }
+}
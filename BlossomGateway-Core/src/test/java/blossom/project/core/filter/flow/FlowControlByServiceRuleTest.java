@@ -0,0 +1,153 @@
+package blossom.project.core.filter.flow;
+
+import blossom.project.common.config.Rule;
+import blossom.project.common.exception.LimitedException;
+import blossom.project.core.context.GatewayContext;
+import blossom.project.core.request.GatewayRequest;
+import blossom.project.core.util.LuaScript;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**FlowControlByServiceRuleTest类
+ */
+public class FlowControlByServiceRuleTest {
+
+    @Test
+    public void concurrencyLimitReturnsPermitsOnCompletion() {
+        FlowControlByServiceRule rule = new FlowControlByServiceRule("service-flow-test-concurrency", null);
+        Rule.FlowControlConfig config = config("{\"concurrency\":2}");
+        GatewayContext first = context();
+        rule.doFlowControlFilter(first, config, "service-flow-test-concurrency");
+        rule.doFlowControlFilter(context(), config, "service-flow-test-concurrency");
+        assertLimited(rule, config, "service-flow-test-concurrency");
+
+        first.invokeCompletedCallBack();
+        //完成回调只执行一次，许可不会重复归还
+        first.invokeCompletedCallBack();
+        assertEquals(1, rule.getInflight());
+        rule.doFlowControlFilter(context(), config, "service-flow-test-concurrency");
+        assertEquals(2, rule.getInflight());
+    }
+
+    @Test
+    public void rateLimitedRequestTakesNoConcurrency() {
+        FlowControlByServiceRule rule = new FlowControlByServiceRule("service-flow-test-rate", null);
+        Rule.FlowControlConfig config = config("{\"duration\":60,\"permits\":1,\"concurrency\":5}");
+        rule.doFlowControlFilter(context(), config, "service-flow-test-rate");
+
+        assertLimited(rule, config, "service-flow-test-rate");
+        assertEquals(1, rule.getInflight());
+    }
+
+    @Test
+    public void asyncRateLimitTakesConcurrencyAfterPassing() {
+        CompletableFuture<Object> redis = new CompletableFuture<>();
+        FlowControlByServiceRule rule = new FlowControlByServiceRule("service-flow-test-async-pass", redis(redis));
+        GatewayContext ctx = context();
+        rule.doFlowControlFilter(ctx, config("distributed", "{\"duration\":60,\"permits\":10,\"concurrency\":1}"),
+                "service-flow-test-async-pass");
+        CompletableFuture<Void> suspension = ctx.takeSuspension();
+
+        //等待Redis结果期间不占用并发许可
+        assertEquals(0, rule.getInflight());
+        redis.complete(1L);
+        suspension.join();
+        assertEquals(1, rule.getInflight());
+        ctx.invokeCompletedCallBack();
+        assertEquals(0, rule.getInflight());
+    }
+
+    @Test
+    public void asyncRateLimitedRequestTakesNoConcurrency() {
+        CompletableFuture<Object> redis = new CompletableFuture<>();
+        FlowControlByServiceRule rule = new FlowControlByServiceRule("service-flow-test-async-limited", redis(redis));
+        GatewayContext ctx = context();
+        rule.doFlowControlFilter(ctx, config("distributed", "{\"duration\":60,\"permits\":10,\"concurrency\":1}"),
+                "service-flow-test-async-limited");
+        CompletableFuture<Void> suspension = ctx.takeSuspension();
+
+        redis.complete(0L);
+        try {
+            suspension.join();
+            fail();
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof LimitedException);
+        }
+        assertEquals(0, rule.getInflight());
+    }
+
+    @Test
+    public void completedAsyncResultCheckedSynchronously() {
+        FlowControlByServiceRule rule = new FlowControlByServiceRule("service-flow-test-async-done",
+                redis(CompletableFuture.completedFuture(1L)));
+        GatewayContext ctx = context();
+        rule.doFlowControlFilter(ctx, config("distributed", "{\"duration\":60,\"permits\":10,\"concurrency\":1}"),
+                "service-flow-test-async-done");
+
+        assertNull(ctx.takeSuspension());
+        assertEquals(1, rule.getInflight());
+        assertLimited(rule, config("distributed", "{\"duration\":60,\"permits\":10,\"concurrency\":1}"),
+                "service-flow-test-async-done");
+    }
+
+    @Test
+    public void sharedByAllPathsOfService() {
+        assertSame(FlowControlByServiceRule.getInstance("service-flow-test-shared"),
+                FlowControlByServiceRule.getInstance("service-flow-test-shared"));
+    }
+
+    private static void assertLimited(FlowControlByServiceRule rule, Rule.FlowControlConfig config, String serviceId) {
+        int inflight = rule.getInflight();
+        try {
+            rule.doFlowControlFilter(context(), config, serviceId);
+            fail();
+        } catch (LimitedException e) {
+            assertEquals(inflight, rule.getInflight());
+        }
+    }
+
+    private static Rule.FlowControlConfig config(String config) {
+        return config("Singleton", config);
+    }
+
+    private static Rule.FlowControlConfig config(String model, String config) {
+        Rule.FlowControlConfig flowControlConfig = new Rule.FlowControlConfig();
+        flowControlConfig.setType("service");
+        flowControlConfig.setValue("service-flow-test");
+        flowControlConfig.setModel(model);
+        flowControlConfig.setConfig(config);
+        return flowControlConfig;
+    }
+
+    /**
+     * 脚本执行结果固定为result的Redis限流器
+     */
+    private static RedisCountLimiter redis(CompletableFuture<Object> result) {
+        return new RedisCountLimiter() {
+            @Override
+            CompletableFuture<Object> evalsha(LuaScript script, String key, List<String> args) {
+                return result;
+            }
+        };
+    }
+
+    private static GatewayContext context() {
+        DefaultFullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/ping");
+        GatewayRequest request = new GatewayRequest("service-flow-test:1.0", StandardCharsets.UTF_8, "127.0.0.1",
+                "127.0.0.1:8080", "/ping", HttpMethod.GET, null, httpRequest.headers(), httpRequest);
+        return new GatewayContext("http", null, false, request, new Rule(), 0);
+    }
+}
@@ -0,0 +1,131 @@
+package blossom.project.core.filter.flow;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**LeasedQuotaLimiterTest类
+ */
+public class LeasedQuotaLimiterTest {
+
+    @Test
+    public void localPermitsServedWithoutRedis() {
+        QuotaScript script = new QuotaScript(60000);
+        //每次租用100 * 0.1 = 10个许可
+        LeasedQuotaLimiter limiter = new LeasedQuotaLimiter("leased-test", 60, 100, 0.1, script);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.acquire().join());
+        }
+        assertEquals(1, script.calls);
+
+        //剩余一半时提前续租
+        assertTrue(limiter.acquire().join());
+        assertEquals(2, script.calls);
+        for (int i = 0; i < 9; i++) {
+            assertTrue(limiter.acquire().join());
+        }
+        assertEquals(2, script.calls);
+        assertEquals(20, script.used);
+    }
+
+    @Test
+    public void neverExceedsWindowPermits() {
+        QuotaScript script = new QuotaScript(60000);
+        LeasedQuotaLimiter limiter = new LeasedQuotaLimiter("leased-test", 60, 20, 0.3, script);
+        int passed = 0;
+        for (int i = 0; i < 50; i++) {
+            if (limiter.acquire().join()) {
+                passed++;
+            }
+        }
+
+        assertEquals(20, passed);
+        assertEquals(20, script.used);
+    }
+
+    @Test
+    public void exhaustedWindowRejectsWithoutRedis() {
+        QuotaScript script = new QuotaScript(60000);
+        LeasedQuotaLimiter limiter = new LeasedQuotaLimiter("leased-test", 60, 1, 0.05, script);
+        assertTrue(limiter.acquire().join());
+        assertFalse(limiter.acquire().join());
+        int calls = script.calls;
+
+        for (int i = 0; i < 10; i++) {
+            assertFalse(limiter.acquire().join());
+        }
+        assertEquals(calls, script.calls);
+    }
+
+    @Test
+    public void expiredWindowDiscardsLeftovers() throws InterruptedException {
+        QuotaScript script = new QuotaScript(50);
+        LeasedQuotaLimiter limiter = new LeasedQuotaLimiter("leased-test", 60, 100, 0.1, script);
+        assertTrue(limiter.acquire().join());
+        assertEquals(1, script.calls);
+
+        Thread.sleep(80);
+        assertTrue(limiter.acquire().join());
+        assertEquals(2, script.calls);
+    }
+
+    @Test
+    public void waitersShareOneLease() {
+        CompletableFuture<Object> pending = new CompletableFuture<>();
+        int[] calls = new int[1];
+        LeasedQuotaLimiter limiter = new LeasedQuotaLimiter("leased-test", 60, 100, 0.1, (keys, args) -> {
+            calls[0]++;
+            return pending;
+        });
+        CompletableFuture<Boolean> first = limiter.acquire();
+        CompletableFuture<Boolean> second = limiter.acquire();
+        assertFalse(first.isDone());
+        assertEquals(1, calls[0]);
+
+        pending.complete(Arrays.asList(10L, 60000L));
+        assertTrue(first.join());
+        assertTrue(second.join());
+    }
+
+    @Test
+    public void redisFailureFailsOpen() {
+        CompletableFuture<Object> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException());
+        LeasedQuotaLimiter limiter = new LeasedQuotaLimiter("leased-test", 60, 100, 0.1, (keys, args) -> failed);
+
+        assertTrue(limiter.acquire().join());
+    }
+
+    /**
+     * 按租用脚本的逻辑在内存中计数，窗口剩余时间固定为ttlMillis
+     */
+    private static class QuotaScript implements BiFunction<List<String>, List<String>, CompletableFuture<Object>> {
+
+        private final long ttlMillis;
+
+        private long used;
+
+        private int calls;
+
+        QuotaScript(long ttlMillis) {
+            this.ttlMillis = ttlMillis;
+        }
+
+        @Override
+        public CompletableFuture<Object> apply(List<String> keys, List<String> args) {
+            calls++;
+            long grant = Math.min(Long.parseLong(args.get(2)), Long.parseLong(args.get(1)) - used);
+            if (grant > 0) {
+                used += grant;
+            }
+            return CompletableFuture.completedFuture(Arrays.asList(Math.max(0, grant), ttlMillis));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package blossom.project.core.filter.flow;
+
+import blossom.project.core.util.JedisUtil;
+import blossom.project.core.util.LuaScript;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**RedisCountLimiterTest类
+ */
+public class RedisCountLimiterTest {
+
+    @Test
+    public void modelsUseTheirOwnScriptAndKey() {
+        RecordingLimiter limiter = new RecordingLimiter(CompletableFuture.completedFuture(1L));
+
+        limiter.doFlowControlAsync("distributed", "svc./a", 10, 60);
+        assertSame(JedisUtil.LIMIT_SCRIPT, limiter.script);
+        assertEquals("svc./a", limiter.key);
+        limiter.doFlowControlAsync("sliding_log", "svc./a", 10, 60);
+        assertSame(JedisUtil.SLIDING_LOG_SCRIPT, limiter.script);
+        assertEquals("svc./a:log", limiter.key);
+        limiter.doFlowControlAsync("sliding_counter", "svc./a", 10, 60);
+        assertSame(JedisUtil.SLIDING_COUNTER_SCRIPT, limiter.script);
+        assertEquals("svc./a:counter", limiter.key);
+        assertEquals("60", limiter.args.get(0));
+        assertEquals("10", limiter.args.get(1));
+    }
+
+    @Test
+    public void slidingLogMembersAreUnique() {
+        RecordingLimiter limiter = new RecordingLimiter(CompletableFuture.completedFuture(1L));
+        limiter.doFlowControlAsync("sliding_log", "svc./log", 10, 60);
+        String first = limiter.args.get(2);
+        limiter.doFlowControlAsync("sliding_log", "svc./log", 10, 60);
+
+        //同一毫秒内的请求也要作为不同的成员写入有序集合
+        assertNotEquals(first, limiter.args.get(2));
+    }
+
+    @Test
+    public void scriptResultDecidesPass() {
+        assertTrue(new RecordingLimiter(CompletableFuture.completedFuture(1L))
+                .doFlowControlAsync("sliding_counter", "svc./pass", 10, 60).join());
+        assertFalse(new RecordingLimiter(CompletableFuture.completedFuture(0L))
+                .doFlowControlAsync("sliding_counter", "svc./limited", 10, 60).join());
+    }
+
+    @Test
+    public void redisFailureFailsOpen() {
+        CompletableFuture<Object> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException());
+
+        assertTrue(new RecordingLimiter(failed).doFlowControlAsync("sliding_log", "svc./down", 10, 60).join());
+    }
+
+    @Test
+    public void redisModels() {
+        assertTrue(RedisCountLimiter.isRedisModel("distributed"));
+        assertTrue(RedisCountLimiter.isRedisModel("SLIDING_LOG"));
+        assertTrue(RedisCountLimiter.isRedisModel("sliding_counter"));
+        assertFalse(RedisCountLimiter.isRedisModel("Singleton"));
+        assertFalse(RedisCountLimiter.isRedisModel("leased"));
+    }
+
+    /**
+     * 记录最后一次执行的脚本，返回固定的结果
+     */
+    private static class RecordingLimiter extends RedisCountLimiter {
+
+        private final CompletableFuture<Object> result;
+
+        private LuaScript script;
+
+        private String key;
+
+        private List<String> args;
+
+        RecordingLimiter(CompletableFuture<Object> result) {
+            this.result = result;
+        }
+
+        @Override
+        CompletableFuture<Object> evalsha(LuaScript script, String key, List<String> args) {
+            this.script = script;
+            this.key = key;
+            this.args = args;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package blossom.project.core.filter.flow;
+
+import blossom.project.common.config.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**TokenBucketLimiterTest类
+ */
+public class TokenBucketLimiterTest {
+
+    @Test
+    public void fullBucketAllowsBurst() {
+        //每100ms产生一个令牌，桶容量为5
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 10, 5);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+
+        assertFalse(limiter.tryAcquire());
+    }
+
+    @Test
+    public void tokensRefillOverTime() throws InterruptedException {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 10, 1);
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+
+        Thread.sleep(120);
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+    }
+
+    @Test
+    public void idleDoesNotAccumulateBeyondBurst() throws InterruptedException {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 10, 2);
+        Thread.sleep(500);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+    }
+
+    @Test
+    public void multiplePermits() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 10, 5);
+
+        assertFalse(limiter.tryAcquire(6));
+        //获取失败不消耗令牌
+        assertTrue(limiter.tryAcquire(5));
+        assertFalse(limiter.tryAcquire());
+    }
+
+    @Test
+    public void concurrentAcquiresNeverExceedBurst() throws InterruptedException {
+        //每分钟60个令牌，测试期间不会补充
+        TokenBucketLimiter limiter = new TokenBucketLimiter(60, 60, 100);
+        AtomicInteger acquired = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(8);
+        for (int i = 0; i < 8; i++) {
+            new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    if (limiter.tryAcquire()) {
+                        acquired.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+
+        assertEquals(100, acquired.get());
+    }
+
+    @Test
+    public void instanceKeptUntilConfigChanges() {
+        TokenBucketLimiter limiter = TokenBucketLimiter.getInstance("token-test", config("{\"duration\":1,\"permits\":10}"));
+
+        assertSame(limiter, TokenBucketLimiter.getInstance("token-test", config("{\"duration\":1,\"permits\":10}")));
+        assertNotSame(limiter, TokenBucketLimiter.getInstance("token-test",
+                config("{\"duration\":1,\"permits\":10,\"burst\":20}")));
+        assertNull(TokenBucketLimiter.getInstance("token-test", config("{}")));
+    }
+
+    private static Rule.FlowControlConfig config(String config) {
+        Rule.FlowControlConfig flowControlConfig = new Rule.FlowControlConfig();
+        flowControlConfig.setType("path");
+        flowControlConfig.setValue("/token");
+        flowControlConfig.setModel("Singleton");
+        flowControlConfig.setConfig(config);
+        return flowControlConfig;
+    }
+}
@@ -0,0 +1,103 @@
+package blossom.project.core.filter.loadbalance;
+
+import blossom.project.common.config.Rule;
+import blossom.project.common.config.ServiceInstance;
+import blossom.project.core.context.GatewayContext;
+import blossom.project.core.request.GatewayRequest;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static blossom.project.core.filter.loadbalance.LeastRequestLoadBalanceRuleTest.inflight;
+import static blossom.project.core.filter.loadbalance.WeightRoundRobinLoadBalanceRuleTest.instance;
+import static blossom.project.core.filter.loadbalance.WeightRoundRobinLoadBalanceRuleTest.register;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**ConsistentHashLoadBalanceRuleTest类
+ */
+public class ConsistentHashLoadBalanceRuleTest {
+
+    private static final String HASH_KEY = "header:x-user";
+
+    @Test
+    public void sameKeySameInstance() {
+        String uniqueId = "hash-test-sticky:1.0";
+        register(uniqueId, instance(uniqueId, "10.6.0.1", 1), instance(uniqueId, "10.6.0.2", 1),
+                instance(uniqueId, "10.6.0.3", 1));
+        ConsistentHashLoadBalanceRule rule = new ConsistentHashLoadBalanceRule(uniqueId, HASH_KEY, 0);
+
+        ServiceInstance first = rule.choose(context(uniqueId, "user-42"), false);
+        for (int i = 0; i < 100; i++) {
+            assertSame(first, rule.choose(context(uniqueId, "user-42"), false));
+        }
+    }
+
+    @Test
+    public void addingInstanceOnlyMovesKeysToIt() {
+        String uniqueId = "hash-test-remap:1.0";
+        ServiceInstance[] instances = {instance(uniqueId, "10.6.1.1", 1), instance(uniqueId, "10.6.1.2", 1),
+                instance(uniqueId, "10.6.1.3", 1), instance(uniqueId, "10.6.1.4", 1)};
+        register(uniqueId, instances);
+        ConsistentHashLoadBalanceRule rule = new ConsistentHashLoadBalanceRule(uniqueId, HASH_KEY, 0);
+        Map<String, String> before = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            String key = "user-" + i;
+            before.put(key, rule.choose(context(uniqueId, key), false).getServiceInstanceId());
+        }
+
+        ServiceInstance added = instance(uniqueId, "10.6.1.5", 1);
+        register(uniqueId, instances[0], instances[1], instances[2], instances[3], added);
+        int moved = 0;
+        for (Map.Entry<String, String> entry : before.entrySet()) {
+            String after = rule.choose(context(uniqueId, entry.getKey()), false).getServiceInstanceId();
+            if (!after.equals(entry.getValue())) {
+                assertEquals(added.getServiceInstanceId(), after);
+                moved++;
+            }
+        }
+        //理想情况下迁移1/5的键
+        assertTrue(moved > 100 && moved < 300);
+    }
+
+    @Test
+    public void overloadedOwnerIsSkipped() {
+        String uniqueId = "hash-test-bounded:1.0";
+        ServiceInstance a = instance(uniqueId, "10.6.2.1", 1);
+        ServiceInstance b = instance(uniqueId, "10.6.2.2", 1);
+        register(uniqueId, a, b);
+        ConsistentHashLoadBalanceRule rule = new ConsistentHashLoadBalanceRule(uniqueId, HASH_KEY, 1.25);
+        ServiceInstance owner = rule.choose(context(uniqueId, "user-7"), false);
+
+        //上限为ceil(1.25 * (10 + 1) / 2) = 7，归属实例超过上限后顺着哈希环选择下一个实例
+        inflight(owner, 10);
+        assertNotSame(owner, rule.choose(context(uniqueId, "user-7"), false));
+    }
+
+    @Test
+    public void missingKeyFallsBackToRandom() {
+        String uniqueId = "hash-test-missing:1.0";
+        register(uniqueId, instance(uniqueId, "10.6.3.1", 1), instance(uniqueId, "10.6.3.2", 1));
+        ConsistentHashLoadBalanceRule rule = new ConsistentHashLoadBalanceRule(uniqueId, HASH_KEY, 0);
+
+        assertNotNull(rule.choose(context(uniqueId, null), false));
+    }
+
+    private static GatewayContext context(String uniqueId, String user) {
+        DefaultFullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/ping");
+        if (user != null) {
+            httpRequest.headers().set("x-user", user);
+        }
+        GatewayRequest request = new GatewayRequest(uniqueId, StandardCharsets.UTF_8, "127.0.0.1", "127.0.0.1:8080",
+                "/ping", HttpMethod.GET, null, httpRequest.headers(), httpRequest);
+        return new GatewayContext("http", null, false, request, new Rule(), 0);
+    }
+}
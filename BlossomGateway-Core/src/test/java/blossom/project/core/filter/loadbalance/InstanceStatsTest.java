@@ -0,0 +1,75 @@
+package blossom.project.core.filter.loadbalance;
+
+import blossom.project.common.config.ServiceInstance;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**InstanceStatsTest类
+ */
+public class InstanceStatsTest {
+
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void fastFailureDoesNotLowerCost() {
+        InstanceStats stats = new InstanceStats("10.0.0.1:8080");
+        stats.begin();
+        stats.end(SLOW, false);
+        double cost = stats.getCost();
+
+        stats.begin();
+        stats.end(FAST, true);
+        assertTrue(stats.getCost() >= cost * 2);
+    }
+
+    @Test
+    public void failureWithoutSampleIsSkipped() {
+        InstanceStats stats = new InstanceStats("10.0.0.2:8080");
+        stats.begin();
+        stats.end(FAST, true);
+
+        assertEquals(0, stats.getCost(), 0);
+    }
+
+    @Test
+    public void abandonOnlyReleasesInflight() {
+        InstanceStats stats = new InstanceStats("10.0.0.3:8080");
+        stats.begin();
+        stats.end(SLOW, false);
+        double cost = stats.getCost();
+
+        stats.begin();
+        assertEquals(1, stats.getInflight());
+        stats.abandon();
+        assertEquals(0, stats.getInflight());
+        assertEquals(cost, stats.getCost(), 0);
+    }
+
+    @Test
+    public void retainAllEvictsRemovedInstances() {
+        ServiceInstance kept = instance("10.0.1.1:8080");
+        ServiceInstance removed = instance("10.0.1.2:8080");
+        InstanceStats keptStats = InstanceStats.of(kept);
+        InstanceStats removedStats = InstanceStats.of(removed);
+
+        InstanceStats.retainAll(Collections.singleton(kept.getServiceInstanceId()));
+
+        assertSame(keptStats, InstanceStats.of(kept));
+        assertNotSame(removedStats, InstanceStats.of(removed));
+    }
+
+    private static ServiceInstance instance(String serviceInstanceId) {
+        ServiceInstance instance = new ServiceInstance();
+        instance.setServiceInstanceId(serviceInstanceId);
+        return instance;
+    }
+}
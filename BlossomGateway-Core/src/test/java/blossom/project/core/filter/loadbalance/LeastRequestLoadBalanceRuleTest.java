@@ -0,0 +1,55 @@
+package blossom.project.core.filter.loadbalance;
+
+import blossom.project.common.config.ServiceInstance;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static blossom.project.core.filter.loadbalance.WeightRoundRobinLoadBalanceRuleTest.instance;
+import static blossom.project.core.filter.loadbalance.WeightRoundRobinLoadBalanceRuleTest.register;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**LeastRequestLoadBalanceRuleTest类
+ */
+public class LeastRequestLoadBalanceRuleTest {
+
+    @Test
+    public void choosesFewestInflight() {
+        String uniqueId = "least-test-min:1.0";
+        ServiceInstance busy = instance(uniqueId, "10.3.0.1", 1);
+        ServiceInstance idle = instance(uniqueId, "10.3.0.2", 1);
+        ServiceInstance medium = instance(uniqueId, "10.3.0.3", 1);
+        register(uniqueId, busy, idle, medium);
+        inflight(busy, 5);
+        inflight(medium, 2);
+        LeastRequestLoadBalanceRule rule = new LeastRequestLoadBalanceRule(uniqueId);
+
+        for (int i = 0; i < 20; i++) {
+            assertSame(idle, rule.choose(uniqueId, false));
+        }
+    }
+
+    @Test
+    public void tiesAreSpreadAcrossInstances() {
+        String uniqueId = "least-test-tie:1.0";
+        ServiceInstance a = instance(uniqueId, "10.3.1.1", 1);
+        ServiceInstance b = instance(uniqueId, "10.3.1.2", 1);
+        register(uniqueId, a, b);
+        LeastRequestLoadBalanceRule rule = new LeastRequestLoadBalanceRule(uniqueId);
+
+        Set<ServiceInstance> chosen = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            chosen.add(rule.choose(uniqueId, false));
+        }
+        assertEquals(2, chosen.size());
+    }
+
+    static void inflight(ServiceInstance instance, int count) {
+        InstanceStats stats = InstanceStats.of(instance);
+        for (int i = 0; i < count; i++) {
+            stats.begin();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package blossom.project.core.filter.loadbalance;
+
+import blossom.project.common.config.DynamicConfigManager;
+import blossom.project.common.config.Rule;
+import blossom.project.common.config.ServiceInstance;
+import blossom.project.core.context.GatewayContext;
+import blossom.project.core.context.RoutePlan;
+import blossom.project.core.request.GatewayRequest;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import static blossom.project.common.constant.FilterConst.LOAD_BALANCE_FILTER_ID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**LoadBalanceFilterTest类
+ */
+public class LoadBalanceFilterTest {
+
+    @Test
+    public void reselectWithoutLoadBalanceRuleKeepsHost() {
+        GatewayContext ctx = context("lb-test-none:1.0", new Rule());
+
+        assertFalse(LoadBalanceFilter.reselect(ctx));
+        assertEquals("127.0.0.1:8080", ctx.getRequest().getModifyHost());
+    }
+
+    @Test
+    public void reselectSkipsTriedInstance() {
+        String uniqueId = "lb-test-rr:1.0";
+        Set<ServiceInstance> instances = new HashSet<>();
+        instances.add(instance(uniqueId, "10.0.0.1", 80));
+        instances.add(instance(uniqueId, "10.0.0.2", 80));
+        DynamicConfigManager.getInstance().addServiceInstance(uniqueId, instances);
+
+        GatewayContext ctx = context(uniqueId, roundRobinRule("lb-test-rr"));
+
+        LoadBalanceFilter.select(ctx);
+        ServiceInstance first = ctx.getServiceInstance();
+        ctx.addTriedInstance(first);
+
+        assertTrue(LoadBalanceFilter.reselect(ctx));
+        ServiceInstance second = ctx.getServiceInstance();
+        assertFalse(first.getServiceInstanceId().equals(second.getServiceInstanceId()));
+        assertEquals(second.getIp() + ":" + second.getPort(), ctx.getRequest().getModifyHost());
+    }
+
+    @Test
+    public void chooseOtherLeavesContextUntouched() {
+        String uniqueId = "lb-test-hedge:1.0";
+        ServiceInstance primary = instance(uniqueId, "10.0.1.1", 80);
+        Set<ServiceInstance> instances = new HashSet<>();
+        instances.add(primary);
+        instances.add(instance(uniqueId, "10.0.1.2", 80));
+        DynamicConfigManager.getInstance().addServiceInstance(uniqueId, instances);
+        GatewayContext ctx = context(uniqueId, roundRobinRule("lb-test-hedge"));
+        ctx.setServiceInstance(primary);
+
+        ServiceInstance other = LoadBalanceFilter.chooseOther(ctx, primary);
+
+        assertEquals("10.0.1.2", other.getIp());
+        assertSame(primary, ctx.getServiceInstance());
+        assertEquals("127.0.0.1:8080", ctx.getRequest().getModifyHost());
+        assertFalse(ctx.isTriedInstance(primary));
+    }
+
+    @Test
+    public void chooseOtherWithoutAlternative() {
+        String uniqueId = "lb-test-single:1.0";
+        ServiceInstance primary = instance(uniqueId, "10.0.2.1", 80);
+        Set<ServiceInstance> instances = new HashSet<>();
+        instances.add(primary);
+        DynamicConfigManager.getInstance().addServiceInstance(uniqueId, instances);
+
+        assertNull(LoadBalanceFilter.chooseOther(context(uniqueId, roundRobinRule("lb-test-single")), primary));
+        assertNull(LoadBalanceFilter.chooseOther(context(uniqueId, new Rule()), primary));
+    }
+
+    @Test
+    public void versionsOfSameServiceKeepSeparateState() {
+        String v1 = "lb-test-versions:1.0";
+        String v2 = "lb-test-versions:2.0";
+        ServiceInstance heavy = instance(v1, "10.0.3.1", 80);
+        heavy.setWeight(2);
+        ServiceInstance light = instance(v1, "10.0.3.2", 80);
+        light.setWeight(1);
+        Set<ServiceInstance> instances = new HashSet<>();
+        instances.add(heavy);
+        instances.add(light);
+        DynamicConfigManager.getInstance().addServiceInstance(v1, instances);
+        Set<ServiceInstance> other = new HashSet<>();
+        other.add(instance(v2, "10.0.3.3", 80));
+        DynamicConfigManager.getInstance().addServiceInstance(v2, other);
+
+        Rule rule = loadBalanceRule("lb-test-versions", "WeightRoundRobin");
+        RoutePlan routePlan = new RoutePlan(0, rule, Optional.empty(), Collections.emptyList(),
+                LoadBalanceFilter.getLoadBalanceRules(rule), null);
+        GatewayContext first = context(v1, rule);
+        first.setRoutePlan(routePlan);
+        GatewayContext second = context(v2, rule);
+        second.setRoutePlan(routePlan);
+        assertNotSame(LoadBalanceFilter.getLoadBalanceRule(first), LoadBalanceFilter.getLoadBalanceRule(second));
+        assertSame(LoadBalanceFilter.getLoadBalanceRule(first), LoadBalanceFilter.getLoadBalanceRule(rule, v1));
+
+        //两个版本交替请求时各自按权重轮询
+        int heavyCount = 0;
+        for (int i = 0; i < 6; i++) {
+            LoadBalanceFilter.select(first);
+            if (heavy.getServiceInstanceId().equals(first.getServiceInstance().getServiceInstanceId())) {
+                heavyCount++;
+            }
+            LoadBalanceFilter.select(second);
+        }
+        assertEquals(4, heavyCount);
+    }
+
+    private static Rule roundRobinRule(String serviceId) {
+        return loadBalanceRule(serviceId, "RoundRobin");
+    }
+
+    private static Rule loadBalanceRule(String serviceId, String strategy) {
+        Rule.FilterConfig filterConfig = new Rule.FilterConfig();
+        filterConfig.setId(LOAD_BALANCE_FILTER_ID);
+        filterConfig.setConfig("{\"load_balance\":\"" + strategy + "\"}");
+        Rule rule = new Rule();
+        rule.setServiceId(serviceId);
+        rule.getFilterConfigs().add(filterConfig);
+        return rule;
+    }
+
+    private static GatewayContext context(String uniqueId, Rule rule) {
+        DefaultFullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/ping");
+        GatewayRequest request = new GatewayRequest(uniqueId, StandardCharsets.UTF_8, "127.0.0.1", "127.0.0.1:8080",
+                "/ping", HttpMethod.GET, null, httpRequest.headers(), httpRequest);
+        return new GatewayContext("http", null, false, request, rule, 0);
+    }
+
+    private static ServiceInstance instance(String uniqueId, String ip, int port) {
+        ServiceInstance instance = new ServiceInstance();
+        instance.setServiceInstanceId(ip + ":" + port);
+        instance.setUniqueId(uniqueId);
+        instance.setIp(ip);
+        instance.setPort(port);
+        instance.setWeight(100);
+        return instance;
+    }
+}
@@ -0,0 +1,100 @@
+package blossom.project.core.filter.loadbalance;
+
+import blossom.project.common.config.ServiceInstance;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static blossom.project.core.filter.loadbalance.WeightRoundRobinLoadBalanceRuleTest.instance;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**OutlierDetectorTest类
+ */
+public class OutlierDetectorTest {
+
+    private final OutlierDetector detector = OutlierDetector.getInstance();
+
+    @Test
+    public void consecutiveFailuresEject() {
+        ServiceInstance[] instances = instances("10.7.0.");
+        InstanceStats stats = InstanceStats.of(instances[0]);
+        for (int i = 0; i < 4; i++) {
+            detector.onFailure(stats);
+        }
+        assertFalse(stats.isEjected());
+        assertSame(instances, detector.filter(instances));
+
+        detector.onFailure(stats);
+        assertTrue(stats.isEjected());
+        assertEquals(TimeUnit.SECONDS.toNanos(30), stats.ejectedUntilNanos - stats.lastEjectedNanos);
+        ServiceInstance[] filtered = detector.filter(instances);
+        assertArrayEquals(new ServiceInstance[]{instances[1], instances[2]}, filtered);
+        //摘除状态不变时返回同一个数组
+        assertSame(filtered, detector.filter(instances));
+    }
+
+    @Test
+    public void successResetsConsecutiveFailures() {
+        ServiceInstance[] instances = instances("10.7.1.");
+        InstanceStats stats = InstanceStats.of(instances[0]);
+        for (int i = 0; i < 4; i++) {
+            detector.onFailure(stats);
+        }
+        detector.onSuccess(stats);
+        for (int i = 0; i < 4; i++) {
+            detector.onFailure(stats);
+        }
+
+        assertFalse(stats.isEjected());
+    }
+
+    @Test
+    public void failureRateEjects() {
+        ServiceInstance[] instances = instances("10.7.2.");
+        InstanceStats stats = InstanceStats.of(instances[0]);
+        //交替成功和失败，连续失败次数不会达到阈值，第20个请求时失败率达到50%
+        for (int i = 0; i < 19; i++) {
+            if (i % 2 == 0) {
+                detector.onFailure(stats);
+            } else {
+                detector.onSuccess(stats);
+            }
+        }
+        assertFalse(stats.isEjected());
+
+        detector.onSuccess(stats);
+        assertFalse(stats.isEjected());
+        detector.onFailure(stats);
+        assertTrue(stats.isEjected());
+    }
+
+    @Test
+    public void ejectionCappedAtHalfOfInstances() {
+        ServiceInstance a = instance("outlier-test-cap:1.0", "10.7.3.1", 1);
+        ServiceInstance b = instance("outlier-test-cap:1.0", "10.7.3.2", 1);
+        ServiceInstance[] instances = {a, b};
+        eject(InstanceStats.of(a));
+        assertArrayEquals(new ServiceInstance[]{b}, detector.filter(instances));
+
+        //全部实例都被摘除时不做摘除
+        eject(InstanceStats.of(b));
+        assertSame(instances, detector.filter(instances));
+    }
+
+    private void eject(InstanceStats stats) {
+        for (int i = 0; i < 5; i++) {
+            detector.onFailure(stats);
+        }
+        assertTrue(stats.isEjected());
+    }
+
+    private static ServiceInstance[] instances(String prefix) {
+        String uniqueId = "outlier-test-" + prefix + ":1.0";
+        return new ServiceInstance[]{instance(uniqueId, prefix + "1", 1), instance(uniqueId, prefix + "2", 1),
+                instance(uniqueId, prefix + "3", 1)};
+    }
+}
@@ -0,0 +1,72 @@
+package blossom.project.core.filter.loadbalance;
+
+import blossom.project.common.config.ServiceInstance;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static blossom.project.core.filter.loadbalance.WeightRoundRobinLoadBalanceRuleTest.instance;
+import static blossom.project.core.filter.loadbalance.WeightRoundRobinLoadBalanceRuleTest.register;
+import static org.junit.Assert.assertSame;
+
+/**PeakEwmaLoadBalanceRuleTest类
+ */
+public class PeakEwmaLoadBalanceRuleTest {
+
+    @Test
+    public void prefersLowerLatency() {
+        String uniqueId = "ewma-test-latency:1.0";
+        ServiceInstance fast = instance(uniqueId, "10.5.0.1", 1);
+        ServiceInstance slow = instance(uniqueId, "10.5.0.2", 1);
+        register(uniqueId, fast, slow);
+        sample(fast, 5, false);
+        sample(slow, 200, false);
+        PeakEwmaLoadBalanceRule rule = new PeakEwmaLoadBalanceRule(uniqueId);
+
+        for (int i = 0; i < 50; i++) {
+            assertSame(fast, rule.choose(uniqueId, false));
+        }
+    }
+
+    @Test
+    public void fastFailuresDoNotAttractTraffic() {
+        String uniqueId = "ewma-test-failure:1.0";
+        ServiceInstance healthy = instance(uniqueId, "10.5.1.1", 1);
+        ServiceInstance failing = instance(uniqueId, "10.5.1.2", 1);
+        register(uniqueId, healthy, failing);
+        sample(healthy, 20, false);
+        sample(failing, 20, false);
+        //失败请求立即返回，按失败惩罚计入后代价高于正常实例
+        sample(failing, 1, true);
+        PeakEwmaLoadBalanceRule rule = new PeakEwmaLoadBalanceRule(uniqueId);
+
+        for (int i = 0; i < 50; i++) {
+            assertSame(healthy, rule.choose(uniqueId, false));
+        }
+    }
+
+    @Test
+    public void inflightRaisesCost() {
+        String uniqueId = "ewma-test-inflight:1.0";
+        ServiceInstance queued = instance(uniqueId, "10.5.2.1", 1);
+        ServiceInstance free = instance(uniqueId, "10.5.2.2", 1);
+        register(uniqueId, queued, free);
+        sample(queued, 10, false);
+        sample(free, 30, false);
+        //延迟均值10ms但有4个在途请求，代价50ms，高于空闲实例的30ms
+        for (int i = 0; i < 4; i++) {
+            InstanceStats.of(queued).begin();
+        }
+        PeakEwmaLoadBalanceRule rule = new PeakEwmaLoadBalanceRule(uniqueId);
+
+        for (int i = 0; i < 50; i++) {
+            assertSame(free, rule.choose(uniqueId, false));
+        }
+    }
+
+    private static void sample(ServiceInstance instance, long rttMillis, boolean failed) {
+        InstanceStats stats = InstanceStats.of(instance);
+        stats.begin();
+        stats.end(TimeUnit.MILLISECONDS.toNanos(rttMillis), failed);
+    }
+}
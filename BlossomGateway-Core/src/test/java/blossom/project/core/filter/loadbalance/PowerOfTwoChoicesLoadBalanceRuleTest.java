@@ -0,0 +1,64 @@
+package blossom.project.core.filter.loadbalance;
+
+import blossom.project.common.config.ServiceInstance;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static blossom.project.core.filter.loadbalance.LeastRequestLoadBalanceRuleTest.inflight;
+import static blossom.project.core.filter.loadbalance.WeightRoundRobinLoadBalanceRuleTest.instance;
+import static blossom.project.core.filter.loadbalance.WeightRoundRobinLoadBalanceRuleTest.register;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**PowerOfTwoChoicesLoadBalanceRuleTest类
+ */
+public class PowerOfTwoChoicesLoadBalanceRuleTest {
+
+    @Test
+    public void busiestInstanceIsNeverChosen() {
+        String uniqueId = "p2c-test-busiest:1.0";
+        ServiceInstance a = instance(uniqueId, "10.4.0.1", 1);
+        ServiceInstance b = instance(uniqueId, "10.4.0.2", 1);
+        ServiceInstance busiest = instance(uniqueId, "10.4.0.3", 1);
+        register(uniqueId, a, b, busiest);
+        inflight(a, 1);
+        inflight(b, 2);
+        inflight(busiest, 10);
+        PowerOfTwoChoicesLoadBalanceRule rule = new PowerOfTwoChoicesLoadBalanceRule(uniqueId);
+
+        //两个候选实例不同，负载最高的实例总会输给另一个候选
+        Set<ServiceInstance> chosen = new HashSet<>();
+        for (int i = 0; i < 500; i++) {
+            ServiceInstance instance = rule.choose(uniqueId, false);
+            assertNotSame(busiest, instance);
+            chosen.add(instance);
+        }
+        assertEquals(2, chosen.size());
+    }
+
+    @Test
+    public void twoInstancesAlwaysLessLoaded() {
+        String uniqueId = "p2c-test-pair:1.0";
+        ServiceInstance light = instance(uniqueId, "10.4.1.1", 1);
+        ServiceInstance heavy = instance(uniqueId, "10.4.1.2", 1);
+        register(uniqueId, light, heavy);
+        inflight(heavy, 3);
+        PowerOfTwoChoicesLoadBalanceRule rule = new PowerOfTwoChoicesLoadBalanceRule(uniqueId);
+
+        for (int i = 0; i < 100; i++) {
+            assertSame(light, rule.choose(uniqueId, false));
+        }
+    }
+
+    @Test
+    public void singleInstance() {
+        String uniqueId = "p2c-test-single:1.0";
+        ServiceInstance only = instance(uniqueId, "10.4.2.1", 1);
+        register(uniqueId, only);
+
+        assertSame(only, new PowerOfTwoChoicesLoadBalanceRule(uniqueId).choose(uniqueId, false));
+    }
+}
@@ -0,0 +1,65 @@
+package blossom.project.core.filter.loadbalance;
+
+import blossom.project.common.config.ServiceInstance;
+import org.junit.Test;
+
+import static blossom.project.core.filter.loadbalance.WeightRoundRobinLoadBalanceRuleTest.instance;
+import static blossom.project.core.filter.loadbalance.WeightRoundRobinLoadBalanceRuleTest.register;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**WeightRandomLoadBalanceRuleTest类
+ */
+public class WeightRandomLoadBalanceRuleTest {
+
+    private static final int SAMPLES = 100000;
+
+    @Test
+    public void choiceFrequencyFollowsWeights() {
+        String uniqueId = "wr-test-ratio:1.0";
+        ServiceInstance a = instance(uniqueId, "10.2.0.1", 1);
+        ServiceInstance b = instance(uniqueId, "10.2.0.2", 2);
+        ServiceInstance c = instance(uniqueId, "10.2.0.3", 7);
+        register(uniqueId, a, b, c);
+        WeightRandomLoadBalanceRule rule = new WeightRandomLoadBalanceRule(uniqueId);
+
+        int[] counts = new int[3];
+        for (int i = 0; i < SAMPLES; i++) {
+            ServiceInstance chosen = rule.choose(uniqueId, false);
+            counts[chosen == a ? 0 : chosen == b ? 1 : 2]++;
+        }
+        assertEquals(0.1, (double) counts[0] / SAMPLES, 0.01);
+        assertEquals(0.2, (double) counts[1] / SAMPLES, 0.01);
+        assertEquals(0.7, (double) counts[2] / SAMPLES, 0.01);
+    }
+
+    @Test
+    public void zeroWeightIsNeverChosen() {
+        String uniqueId = "wr-test-zero:1.0";
+        ServiceInstance drained = instance(uniqueId, "10.2.1.1", 0);
+        ServiceInstance active = instance(uniqueId, "10.2.1.2", 5);
+        register(uniqueId, drained, active);
+        WeightRandomLoadBalanceRule rule = new WeightRandomLoadBalanceRule(uniqueId);
+
+        for (int i = 0; i < 1000; i++) {
+            assertSame(active, rule.choose(uniqueId, false));
+        }
+    }
+
+    @Test
+    public void allZeroWeightsChooseUniformly() {
+        String uniqueId = "wr-test-all-zero:1.0";
+        ServiceInstance a = instance(uniqueId, "10.2.2.1", 0);
+        ServiceInstance b = instance(uniqueId, "10.2.2.2", 0);
+        register(uniqueId, a, b);
+        WeightRandomLoadBalanceRule rule = new WeightRandomLoadBalanceRule(uniqueId);
+
+        int chosenA = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            if (rule.choose(uniqueId, false) == a) {
+                chosenA++;
+            }
+        }
+        assertEquals(0.5, (double) chosenA / SAMPLES, 0.01);
+    }
+}
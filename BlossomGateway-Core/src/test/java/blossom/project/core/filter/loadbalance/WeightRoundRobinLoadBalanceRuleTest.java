@@ -0,0 +1,110 @@
+package blossom.project.core.filter.loadbalance;
+
+import blossom.project.common.config.DynamicConfigManager;
+import blossom.project.common.config.ServiceInstance;
+import blossom.project.common.constant.GatewayConst;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**WeightRoundRobinLoadBalanceRuleTest类
+ */
+public class WeightRoundRobinLoadBalanceRuleTest {
+
+    @Test
+    public void smoothWeightedSequence() {
+        String uniqueId = "wrr-test-smooth:1.0";
+        ServiceInstance a = instance(uniqueId, "10.1.0.1", 5);
+        ServiceInstance b = instance(uniqueId, "10.1.0.2", 1);
+        ServiceInstance c = instance(uniqueId, "10.1.0.3", 1);
+        register(uniqueId, a, b, c);
+        WeightRoundRobinLoadBalanceRule rule = new WeightRoundRobinLoadBalanceRule(uniqueId);
+
+        //权重5:1:1时高权重实例的请求被打散，不会连续选中5次
+        ServiceInstance[] expected = {a, a, b, a, c, a, a};
+        for (int round = 0; round < 3; round++) {
+            for (ServiceInstance instance : expected) {
+                assertSame(instance, rule.choose(uniqueId, false));
+            }
+        }
+    }
+
+    @Test
+    public void zeroWeightIsNeverChosen() {
+        String uniqueId = "wrr-test-zero:1.0";
+        ServiceInstance drained = instance(uniqueId, "10.1.1.1", 0);
+        ServiceInstance active = instance(uniqueId, "10.1.1.2", 1);
+        register(uniqueId, drained, active);
+        WeightRoundRobinLoadBalanceRule rule = new WeightRoundRobinLoadBalanceRule(uniqueId);
+
+        for (int i = 0; i < 10; i++) {
+            assertSame(active, rule.choose(uniqueId, false));
+        }
+    }
+
+    @Test
+    public void allZeroWeightsFallBackToRoundRobin() {
+        String uniqueId = "wrr-test-all-zero:1.0";
+        ServiceInstance a = instance(uniqueId, "10.1.2.1", 0);
+        ServiceInstance b = instance(uniqueId, "10.1.2.2", 0);
+        register(uniqueId, a, b);
+        WeightRoundRobinLoadBalanceRule rule = new WeightRoundRobinLoadBalanceRule(uniqueId);
+
+        int chosenA = 0;
+        for (int i = 0; i < 10; i++) {
+            if (rule.choose(uniqueId, false) == a) {
+                chosenA++;
+            }
+        }
+        assertEquals(5, chosenA);
+    }
+
+    @Test
+    public void snapshotChangeRebuildsWeights() {
+        String uniqueId = "wrr-test-rebuild:1.0";
+        ServiceInstance a = instance(uniqueId, "10.1.3.1", 1);
+        register(uniqueId, a);
+        WeightRoundRobinLoadBalanceRule rule = new WeightRoundRobinLoadBalanceRule(uniqueId);
+        assertSame(a, rule.choose(uniqueId, false));
+
+        ServiceInstance b = instance(uniqueId, "10.1.3.2", 3);
+        register(uniqueId, a, b);
+        int chosenB = 0;
+        for (int i = 0; i < 8; i++) {
+            if (rule.choose(uniqueId, false) == b) {
+                chosenB++;
+            }
+        }
+        assertEquals(6, chosenB);
+    }
+
+    @Test
+    public void missingWeightUsesDefault() {
+        ServiceInstance instance = new ServiceInstance();
+        assertEquals(GatewayConst.DEFAULT_WEIGHT, WeightRoundRobinLoadBalanceRule.weightOf(instance));
+        instance.setWeight(-3);
+        assertEquals(0, WeightRoundRobinLoadBalanceRule.weightOf(instance));
+    }
+
+    static void register(String uniqueId, ServiceInstance... instances) {
+        Set<ServiceInstance> set = new HashSet<>();
+        for (ServiceInstance instance : instances) {
+            set.add(instance);
+        }
+        DynamicConfigManager.getInstance().addServiceInstance(uniqueId, set);
+    }
+
+    static ServiceInstance instance(String uniqueId, String ip, Integer weight) {
+        ServiceInstance instance = new ServiceInstance();
+        instance.setServiceInstanceId(ip + ":80");
+        instance.setUniqueId(uniqueId);
+        instance.setIp(ip);
+        instance.setPort(80);
+        instance.setWeight(weight);
+        return instance;
+    }
+}
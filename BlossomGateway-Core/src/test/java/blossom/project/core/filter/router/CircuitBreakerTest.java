@@ -0,0 +1,135 @@
+package blossom.project.core.filter.router;
+
+import blossom.project.common.config.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**CircuitBreakerTest类
+ */
+public class CircuitBreakerTest {
+
+    private static final long WAIT_MILLIS = 50;
+
+    @Test
+    public void opensAtFailureRateAfterMinimumCalls() {
+        CircuitBreaker breaker = CircuitBreaker.getInstance("breaker-test-open", config("/open", 10, 4, 2));
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onSuccess();
+        assertTrue(breaker.tryAcquire());
+
+        //4个请求中2个失败，失败率达到50%
+        breaker.onFailure();
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void staysClosedBelowMinimumCalls() {
+        CircuitBreaker breaker = CircuitBreaker.getInstance("breaker-test-minimum", config("/minimum", 10, 4, 2));
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure();
+        }
+
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void slidingWindowForgetsOldFailures() {
+        CircuitBreaker breaker = CircuitBreaker.getInstance("breaker-test-window", config("/window", 4, 4, 2));
+        breaker.onFailure();
+        for (int i = 0; i < 4; i++) {
+            breaker.onSuccess();
+        }
+
+        //最早的失败已滑出窗口，窗口内只有1个失败
+        breaker.onFailure();
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void concurrentRecordingKeepsWindowConsistent() throws InterruptedException {
+        CircuitBreaker breaker = CircuitBreaker.getInstance("breaker-test-concurrent", config("/concurrent", 100, 100, 2));
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    assertTrue(breaker.tryAcquire());
+                    breaker.onSuccess();
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 0; i < 49; i++) {
+            breaker.onFailure();
+        }
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void halfOpenClosesAfterPermittedSuccesses() throws InterruptedException {
+        CircuitBreaker breaker = open("/half-open-close");
+        Thread.sleep(WAIT_MILLIS + 20);
+
+        //半开状态只放行2个探测请求
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        breaker.onSuccess();
+        assertFalse(breaker.tryAcquire());
+        breaker.onSuccess();
+
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void halfOpenFailureReopens() throws InterruptedException {
+        CircuitBreaker breaker = open("/half-open-failure");
+        Thread.sleep(WAIT_MILLIS + 20);
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void recreatedWhenConfigChanges() {
+        CircuitBreaker breaker = CircuitBreaker.getInstance("breaker-test-config", config("/config", 10, 4, 2));
+
+        assertSame(breaker, CircuitBreaker.getInstance("breaker-test-config", config("/config", 10, 4, 2)));
+        assertNotSame(breaker, CircuitBreaker.getInstance("breaker-test-config", config("/config", 20, 4, 2)));
+    }
+
+    private static CircuitBreaker open(String path) {
+        CircuitBreaker breaker = CircuitBreaker.getInstance("breaker-test", config(path, 10, 2, 2));
+        breaker.onFailure();
+        breaker.onFailure();
+        assertFalse(breaker.tryAcquire());
+        return breaker;
+    }
+
+    private static Rule.HystrixConfig config(String path, int slidingWindowSize, int minimumNumberOfCalls,
+                                             int permittedNumberOfCallsInHalfOpenState) {
+        Rule.HystrixConfig config = new Rule.HystrixConfig();
+        config.setPath(path);
+        config.setFailureRateThreshold(50);
+        config.setSlidingWindowSize(slidingWindowSize);
+        config.setMinimumNumberOfCalls(minimumNumberOfCalls);
+        config.setWaitDurationInOpenState(WAIT_MILLIS);
+        config.setPermittedNumberOfCallsInHalfOpenState(permittedNumberOfCallsInHalfOpenState);
+        return config;
+    }
+}
@@ -0,0 +1,43 @@
+package blossom.project.core.filter.router;
+
+import blossom.project.common.config.ServiceInstance;
+import org.asynchttpclient.Request;
+import org.asynchttpclient.RequestBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**HedgedRouteTest类
+ */
+public class HedgedRouteTest {
+
+    @Test
+    public void copyReplacesOnlyTargetHost() {
+        Request primary = new RequestBuilder("GET")
+                .setUrl("http://10.0.0.1:8080/api/orders?page=2&size=10")
+                .setHeader("userId", "7")
+                .build();
+        ServiceInstance instance = new ServiceInstance();
+        instance.setIp("10.0.0.2");
+        instance.setPort(9090);
+
+        Request hedged = HedgedRoute.copy(primary, instance);
+
+        assertEquals("http://10.0.0.2:9090/api/orders?page=2&size=10", hedged.getUrl());
+        assertEquals("GET", hedged.getMethod());
+        assertEquals("7", hedged.getHeaders().get("userId"));
+        //第一个请求不受影响
+        assertEquals("http://10.0.0.1:8080/api/orders?page=2&size=10", primary.getUrl());
+    }
+
+    @Test
+    public void failureWaitsForPendingAttempt() {
+        assertTrue(HedgedRoute.settles(false, 1));
+        assertTrue(HedgedRoute.settles(false, 0));
+        //5xx或异常在另一个请求在途时不生效
+        assertFalse(HedgedRoute.settles(true, 1));
+        assertTrue(HedgedRoute.settles(true, 0));
+    }
+}
@@ -0,0 +1,53 @@
+package blossom.project.core.filter.router;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**RetryBudgetTest类
+ */
+public class RetryBudgetTest {
+
+    @Test
+    public void startsFullAndDrains() {
+        RetryBudget budget = new RetryBudget(0.2, 3);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(budget.tryWithdraw());
+        }
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    public void depositsAccumulateByRatio() {
+        RetryBudget budget = new RetryBudget(0.2, 3);
+        drain(budget);
+
+        //每5个首次请求存入一次重试
+        for (int i = 0; i < 4; i++) {
+            budget.deposit();
+        }
+        assertFalse(budget.tryWithdraw());
+        budget.deposit();
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    public void balanceCappedAtMaxRetries() {
+        RetryBudget budget = new RetryBudget(0.5, 2);
+        drain(budget);
+        for (int i = 0; i < 100; i++) {
+            budget.deposit();
+        }
+
+        assertTrue(budget.tryWithdraw());
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+
+    private static void drain(RetryBudget budget) {
+        while (budget.tryWithdraw()) {
+        }
+    }
+}
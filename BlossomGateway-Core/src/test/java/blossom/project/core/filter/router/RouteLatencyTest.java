@@ -0,0 +1,73 @@
+package blossom.project.core.filter.router;
+
+import org.junit.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**RouteLatencyTest类
+ */
+public class RouteLatencyTest {
+
+    @Test
+    public void bucketUpperBoundWithinRelativeError() {
+        for (long micros = 0; micros < 4096; micros++) {
+            assertBucket(micros);
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertBucket(ThreadLocalRandom.current().nextLong(1L << 31));
+        }
+        //超出范围的值计入最后一个桶
+        assertEquals(RouteLatency.bucket(Long.MAX_VALUE), RouteLatency.bucket((1L << 32) - 1));
+    }
+
+    @Test
+    public void noPercentileBelowMinimumSamples() {
+        RouteLatency latency = RouteLatency.of("latency-test-minimum");
+        for (int i = 0; i < 63; i++) {
+            latency.record(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertEquals(-1, latency.percentile(95));
+
+        latency.record(TimeUnit.MILLISECONDS.toNanos(10));
+        assertTrue(latency.percentile(95) >= TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    @Test
+    public void percentileOfUniformSamples() {
+        RouteLatency latency = RouteLatency.of("latency-test-uniform");
+        for (int i = 1; i <= 100; i++) {
+            latency.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        assertApproximately(50, latency.percentile(50));
+        assertApproximately(95, latency.percentile(95));
+        assertApproximately(100, latency.percentile(100));
+    }
+
+    @Test
+    public void oldWindowsForgotten() {
+        RouteLatency latency = RouteLatency.of("latency-test-window");
+        for (int i = 0; i < 1024; i++) {
+            latency.record(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        for (int i = 0; i < 2048; i++) {
+            latency.record(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        //100毫秒的样本所在的窗口已经被替换
+        assertApproximately(1, latency.percentile(99));
+    }
+
+    private static void assertBucket(long micros) {
+        long upperBound = RouteLatency.upperBound(RouteLatency.bucket(micros));
+        assertTrue(upperBound >= micros);
+        assertTrue(upperBound <= micros + micros / 8);
+    }
+
+    private static void assertApproximately(long expectedMillis, long nanos) {
+        long expected = TimeUnit.MILLISECONDS.toNanos(expectedMillis);
+        assertTrue(nanos >= expected && nanos <= expected + expected / 8);
+    }
+}
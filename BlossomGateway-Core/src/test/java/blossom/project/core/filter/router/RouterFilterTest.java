@@ -0,0 +1,194 @@
+package blossom.project.core.filter.router;
+
+import blossom.project.common.config.Rule;
+import blossom.project.core.ConfigLoader;
+import blossom.project.core.cache.CachedResponse;
+import blossom.project.core.cache.ResponseCache;
+import blossom.project.core.context.GatewayContext;
+import blossom.project.core.filter.cache.ResponseCacheFilter;
+import blossom.project.core.filter.flow.AdaptiveConcurrencyLimiter;
+import blossom.project.core.netty.NettyHttpServerHandler;
+import blossom.project.core.request.GatewayRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+
+import static blossom.project.common.constant.FilterConst.RESPONSE_CACHE_FILTER_ID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**RouterFilterTest类
+ */
+public class RouterFilterTest {
+
+    @BeforeClass
+    public static void loadConfig() {
+        if (ConfigLoader.getConfig() == null) {
+            ConfigLoader.getInstance().load(new String[0]);
+        }
+    }
+
+    @Test
+    public void adaptiveLimiterSampledWithoutLoadBalance() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("no-lb", 100);
+        GatewayContext ctx = context();
+        ctx.addAdaptiveLimiter(limiter);
+
+        for (int i = 0; i < 10; i++) {
+            if (i == 9) {
+                Thread.sleep(150);
+            }
+            RouterFilter.beginUpstream(ctx);
+            RouterFilter.endUpstream(ctx, new TimeoutException(), true);
+            //同一次下游请求只统计一次
+            RouterFilter.endUpstream(ctx, new TimeoutException(), true);
+        }
+
+        assertNull(ctx.getInstanceStats());
+        assertFalse(ctx.isUpstreamPending());
+        assertEquals(18, limiter.getLimit());
+    }
+
+    @Test
+    public void backoffGrowsExponentiallyUpToMax() {
+        Rule.RetryConfig retryConfig = new Rule.RetryConfig();
+        retryConfig.setBackoff(50);
+        retryConfig.setMaxBackoff(1000);
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(RouterFilter.backoff(retryConfig, 0) <= 50);
+            assertTrue(RouterFilter.backoff(retryConfig, 2) <= 200);
+            assertTrue(RouterFilter.backoff(retryConfig, 10) <= 1000);
+            //重试次数很大时不会移位溢出
+            assertTrue(RouterFilter.backoff(retryConfig, 100) <= 1000);
+        }
+        //随机抖动在上限内均匀分布，不会总是取到上限
+        long max = 0;
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            long delay = RouterFilter.backoff(retryConfig, 10);
+            max = Math.max(max, delay);
+            min = Math.min(min, delay);
+        }
+        assertTrue(max > 500 && min < 500);
+    }
+
+    @Test
+    public void zeroBackoffRetriesImmediately() {
+        Rule.RetryConfig retryConfig = new Rule.RetryConfig();
+        retryConfig.setBackoff(0);
+
+        assertEquals(0, RouterFilter.backoff(retryConfig, 3));
+    }
+
+    @Test
+    public void staleResponseServedOnTimeout() throws Exception {
+        assertStaleServedOnError("/stale-timeout", new TimeoutException());
+    }
+
+    @Test
+    public void staleResponseServedOnConnectionError() throws Exception {
+        assertStaleServedOnError("/stale-io", new IOException("connection reset"));
+    }
+
+    @Test
+    public void staleResponseServedWhenCircuitOpen() throws Exception {
+        Rule rule = cacheRule();
+        Rule.HystrixConfig hystrixConfig = new Rule.HystrixConfig();
+        hystrixConfig.setPath("/stale-open");
+        hystrixConfig.setMinimumNumberOfCalls(2);
+        rule.getHystrixConfigs().add(hystrixConfig);
+        ByteBuf body = cacheStale(rule, "/stale-open");
+        CircuitBreaker breaker = CircuitBreaker.getInstance("stale-test:1.0", hystrixConfig);
+        breaker.onFailure();
+        breaker.onFailure();
+        assertFalse(breaker.tryAcquire());
+
+        EmbeddedChannel client = new EmbeddedChannel(new NettyHttpServerHandler(null));
+        GatewayContext ctx = staleContext(client, rule, "/stale-open");
+        new ResponseCacheFilter().doFilter(ctx);
+        new RouterFilter().doFilter(ctx);
+
+        assertStaleWritten(client, body);
+    }
+
+    private static void assertStaleServedOnError(String path, Throwable throwable) throws Exception {
+        Rule rule = cacheRule();
+        ByteBuf body = cacheStale(rule, path);
+        EmbeddedChannel client = new EmbeddedChannel(new NettyHttpServerHandler(null));
+        GatewayContext ctx = staleContext(client, rule, path);
+        new ResponseCacheFilter().doFilter(ctx);
+        assertNotNull(ctx.getStaleResponse());
+        assertEquals(2, body.refCnt());
+
+        new RouterFilter().complete(ctx.getRequest().build(), null, throwable, ctx, Optional.empty());
+
+        assertStaleWritten(client, body);
+    }
+
+    /**
+     * 写回的是过期的缓存，上下文持有的引用在写回后释放，只剩缓存持有的引用
+     */
+    private static void assertStaleWritten(EmbeddedChannel client, ByteBuf body) {
+        FullHttpResponse response = client.readOutbound();
+        assertEquals(HttpResponseStatus.OK, response.status());
+        assertEquals("stale", response.content().toString(StandardCharsets.UTF_8));
+        response.release();
+        assertEquals(1, body.refCnt());
+    }
+
+    /**
+     * 存入一个已经过期、只能在下游出错时返回的缓存
+     * @return 缓存的响应体
+     */
+    private static ByteBuf cacheStale(Rule rule, String path) throws Exception {
+        GatewayContext miss = staleContext(null, rule, path);
+        new ResponseCacheFilter().doFilter(miss);
+        ByteBuf body = Unpooled.copiedBuffer("stale", StandardCharsets.UTF_8);
+        CachedResponse stale = new CachedResponse(HttpResponseStatus.OK.code(), new DefaultHttpHeaders(), body,
+                null, 0, 0, 60000);
+        ResponseCache.getInstance().renew(miss.getResponseCacheKey(), stale);
+        stale.release();
+        return body;
+    }
+
+    private static Rule cacheRule() {
+        Rule.FilterConfig filterConfig = new Rule.FilterConfig();
+        filterConfig.setId(RESPONSE_CACHE_FILTER_ID);
+        filterConfig.setConfig("{\"ttl\":60,\"stale_if_error\":60}");
+        Rule rule = new Rule();
+        rule.getFilterConfigs().add(filterConfig);
+        return rule;
+    }
+
+    private static GatewayContext staleContext(EmbeddedChannel client, Rule rule, String path) {
+        DefaultFullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, path);
+        GatewayRequest request = new GatewayRequest("stale-test:1.0", StandardCharsets.UTF_8, "127.0.0.1",
+                "127.0.0.1:8080", path, HttpMethod.GET, null, httpRequest.headers(), httpRequest);
+        return new GatewayContext("http", client == null ? null : client.pipeline().firstContext(), true,
+                request, rule, 0);
+    }
+
+    private static GatewayContext context() {
+        DefaultFullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/ping");
+        GatewayRequest request = new GatewayRequest("router-test:1.0", StandardCharsets.UTF_8, "127.0.0.1",
+                "127.0.0.1:8080", "/ping", HttpMethod.GET, null, httpRequest.headers(), httpRequest);
+        return new GatewayContext("http", null, false, request, new Rule(), 0);
+    }
+}
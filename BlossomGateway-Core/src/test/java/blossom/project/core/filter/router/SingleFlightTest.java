@@ -0,0 +1,115 @@
+package blossom.project.core.filter.router;
+
+import org.asynchttpclient.Response;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**SingleFlightTest类
+ */
+public class SingleFlightTest {
+
+    private final SingleFlight singleFlight = SingleFlight.getInstance();
+
+    @Test
+    public void concurrentCallsShareOneUpstream() throws Exception {
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        CompletableFuture<Response> upstream = new CompletableFuture<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        CompletableFuture<?>[] results = new CompletableFuture[32];
+        CountDownLatch arrived = new CountDownLatch(results.length);
+        for (int i = 0; i < results.length; i++) {
+            results[i] = CompletableFuture.supplyAsync(() -> {
+                await(start);
+                CompletableFuture<Response> future = singleFlight.execute("single-flight-test-concurrent", () -> {
+                    upstreamCalls.incrementAndGet();
+                    return upstream;
+                });
+                arrived.countDown();
+                return future;
+            }, executor).thenCompose(future -> future);
+        }
+        start.countDown();
+        //所有请求都到达后再完成下游请求
+        assertTrue(arrived.await(1, TimeUnit.SECONDS));
+        upstream.complete(null);
+
+        CompletableFuture.allOf(results).get(1, TimeUnit.SECONDS);
+        executor.shutdown();
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    public void completedCallIsNotReused() {
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        CompletableFuture<Response> first = singleFlight.execute("single-flight-test-completed", () -> {
+            upstreamCalls.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        });
+        assertTrue(first.isDone());
+
+        CompletableFuture<Response> second = singleFlight.execute("single-flight-test-completed", () -> {
+            upstreamCalls.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        assertNotSame(first, second);
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    public void differentKeysDoNotCoalesce() {
+        CompletableFuture<Response> a = singleFlight.execute("single-flight-test-a", CompletableFuture::new);
+        CompletableFuture<Response> b = singleFlight.execute("single-flight-test-b", CompletableFuture::new);
+
+        assertNotSame(a, b);
+        assertSame(a, singleFlight.execute("single-flight-test-a", CompletableFuture::new));
+    }
+
+    @Test
+    public void failureIsSharedThenRetried() {
+        CompletableFuture<Response> upstream = new CompletableFuture<>();
+        CompletableFuture<Response> first = singleFlight.execute("single-flight-test-failure", () -> upstream);
+        CompletableFuture<Response> joined = singleFlight.execute("single-flight-test-failure", CompletableFuture::new);
+        assertSame(first, joined);
+
+        upstream.completeExceptionally(new IllegalStateException());
+        assertTrue(first.isCompletedExceptionally());
+        //失败后key已移除，重试会重新发起下游请求
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        singleFlight.execute("single-flight-test-failure", () -> {
+            upstreamCalls.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    public void throwingCallIsNotLeftInFlight() {
+        CompletableFuture<Response> failed = singleFlight.execute("single-flight-test-throw", () -> {
+            throw new IllegalStateException();
+        });
+        assertTrue(failed.isCompletedExceptionally());
+
+        CompletableFuture<Response> retried = singleFlight.execute("single-flight-test-throw", CompletableFuture::new);
+        assertNotSame(failed, retried);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
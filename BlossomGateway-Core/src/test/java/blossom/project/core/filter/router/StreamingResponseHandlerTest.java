@@ -0,0 +1,109 @@
+package blossom.project.core.filter.router;
+
+import blossom.project.common.config.Rule;
+import blossom.project.core.context.GatewayContext;
+import blossom.project.core.netty.NettyHttpServerHandler;
+import blossom.project.core.request.GatewayRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpVersion;
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.HttpResponseHeaders;
+import org.asynchttpclient.netty.LazyResponseBodyPart;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**StreamingResponseHandlerTest类
+ */
+public class StreamingResponseHandlerTest {
+
+    @Test
+    public void pauseUpstreamUntilClientWritable() {
+        EmbeddedChannel client = new EmbeddedChannel(new NettyHttpServerHandler(null));
+        EmbeddedChannel upstream = new EmbeddedChannel();
+        StreamingResponseHandler handler = handler(client);
+        handler.onTcpConnectSuccess(null, upstream);
+        client.attr(StreamingResponseHandler.RELAY).set(handler);
+
+        client.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        client.runPendingTasks();
+        handler.pauseUpstream();
+        assertFalse(upstream.config().isAutoRead());
+
+        client.unsafe().outboundBuffer().setUserDefinedWritability(1, true);
+        client.runPendingTasks();
+        assertTrue(upstream.config().isAutoRead());
+    }
+
+    @Test
+    public void resumeUpstreamWhenClientClosed() {
+        EmbeddedChannel client = new EmbeddedChannel(new NettyHttpServerHandler(null));
+        EmbeddedChannel upstream = new EmbeddedChannel();
+        StreamingResponseHandler handler = handler(client);
+        handler.onConnectionPooled(upstream);
+        client.attr(StreamingResponseHandler.RELAY).set(handler);
+
+        client.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        handler.pauseUpstream();
+        assertFalse(upstream.config().isAutoRead());
+
+        //客户端断开后恢复读取，下一个分块到达时终止下游请求
+        client.close();
+        assertTrue(upstream.config().isAutoRead());
+
+        //已经断开时暂停后立即恢复
+        handler.pauseUpstream();
+        assertTrue(upstream.config().isAutoRead());
+    }
+
+    @Test
+    public void lazyBodyPartRelayedWithoutCopy() {
+        EmbeddedChannel client = new EmbeddedChannel(new NettyHttpServerHandler(null));
+        StreamingResponseHandler handler = handler(client);
+        handler.onHeadersReceived(new HttpResponseHeaders(new DefaultHttpHeaders()));
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer().writeBytes("hello".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(AsyncHandler.State.CONTINUE, handler.onBodyPartReceived(new LazyResponseBodyPart(buf, false)));
+        //回调返回后下游客户端释放分块，写往客户端的仍是同一个ByteBuf
+        buf.release();
+        assertTrue(client.readOutbound() instanceof HttpResponse);
+        HttpContent content = client.readOutbound();
+        assertSame(buf, content.content());
+        assertEquals(1, buf.refCnt());
+        assertEquals(5, handler.getBodyLength());
+        content.release();
+    }
+
+    @Test
+    public void bodyPartNotRetainedAfterClientClosed() {
+        EmbeddedChannel client = new EmbeddedChannel(new NettyHttpServerHandler(null));
+        StreamingResponseHandler handler = handler(client);
+        handler.onHeadersReceived(new HttpResponseHeaders(new DefaultHttpHeaders()));
+        client.close();
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer().writeBytes("hello".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(AsyncHandler.State.ABORT, handler.onBodyPartReceived(new LazyResponseBodyPart(buf, false)));
+        assertEquals(1, buf.refCnt());
+        buf.release();
+    }
+
+    private static StreamingResponseHandler handler(EmbeddedChannel client) {
+        DefaultFullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/download");
+        GatewayRequest request = new GatewayRequest("relay:1.0", StandardCharsets.UTF_8, "127.0.0.1",
+                "127.0.0.1:8080", "/download", HttpMethod.GET, null, httpRequest.headers(), httpRequest);
+        GatewayContext ctx = new GatewayContext("http", client.pipeline().firstContext(), true, request, new Rule(), 0);
+        return new StreamingResponseHandler(ctx);
+    }
+}
@@ -0,0 +1,76 @@
+package blossom.project.core.request;
+
+import blossom.project.common.config.Rule;
+import blossom.project.core.context.GatewayContext;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import org.asynchttpclient.request.body.Body;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**StreamingBodyGeneratorTest类
+ */
+public class StreamingBodyGeneratorTest {
+
+    @Test
+    public void pauseAboveHighWaterMarkAndResumeAfterDrain() throws Exception {
+        EmbeddedChannel inbound = new EmbeddedChannel();
+        StreamingBodyGenerator generator = new StreamingBodyGenerator(inbound, -1);
+        generator.offer(Unpooled.wrappedBuffer(new byte[200 * 1024]), false);
+        assertTrue(inbound.config().isAutoRead());
+        generator.offer(Unpooled.wrappedBuffer(new byte[100 * 1024]), true);
+        assertFalse(inbound.config().isAutoRead());
+
+        Body body = generator.createBody();
+        ByteBuf target = Unpooled.buffer(300 * 1024);
+        while (body.transferTo(target) == Body.BodyState.CONTINUE) {
+        }
+        assertEquals(300 * 1024, target.readableBytes());
+        assertTrue(inbound.config().isAutoRead());
+    }
+
+    @Test
+    public void releaseDropsPendingChunks() {
+        EmbeddedChannel inbound = new EmbeddedChannel();
+        StreamingBodyGenerator generator = new StreamingBodyGenerator(inbound, -1);
+        ByteBuf pending = Unpooled.copiedBuffer("pending", StandardCharsets.UTF_8);
+        generator.offer(pending, false);
+
+        generator.release();
+        assertEquals(0, pending.refCnt());
+        assertTrue(inbound.config().isAutoRead());
+
+        //释放之后到达的分块直接丢弃
+        ByteBuf late = Unpooled.copiedBuffer("late", StandardCharsets.UTF_8);
+        generator.offer(late, true);
+        assertEquals(0, late.refCnt());
+    }
+
+    @Test
+    public void contextReleaseDrainsStreamingBody() {
+        EmbeddedChannel inbound = new EmbeddedChannel();
+        DefaultFullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+        GatewayRequest request = new GatewayRequest("upload:1.0", StandardCharsets.UTF_8, "127.0.0.1",
+                "127.0.0.1:8080", "/upload", HttpMethod.POST, null, httpRequest.headers(), httpRequest);
+        StreamingBodyGenerator generator = new StreamingBodyGenerator(inbound, -1);
+        request.setStreamingBody(generator);
+        ByteBuf pending = Unpooled.copiedBuffer("pending", StandardCharsets.UTF_8);
+        generator.offer(pending, false);
+        GatewayContext ctx = new GatewayContext("http", null, false, request, new Rule(), 0);
+
+        ctx.releaseRequest();
+        ctx.releaseRequest();
+
+        assertEquals(0, pending.refCnt());
+        assertEquals(0, httpRequest.refCnt());
+    }
+}
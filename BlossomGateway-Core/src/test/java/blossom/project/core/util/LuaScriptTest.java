@@ -0,0 +1,54 @@
+package blossom.project.core.util;
+
+import org.junit.Test;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**LuaScriptTest类
+ */
+public class LuaScriptTest {
+
+    @Test
+    public void shaMatchesRedisScriptLoad() {
+        //与redis-cli SCRIPT LOAD "return 1"的返回值一致
+        assertEquals("e0e1f9fabfc9d4800c877a703b823ac0578ff8db", new LuaScript("return 1").getSha());
+    }
+
+    @Test
+    public void noScriptDetection() {
+        assertTrue(LuaScript.isNoScript(new JedisDataException("NOSCRIPT No matching script. Please use EVAL.")));
+        assertFalse(LuaScript.isNoScript(new JedisDataException("ERR wrong number of arguments")));
+        assertFalse(LuaScript.isNoScript(new IllegalStateException()));
+        assertFalse(LuaScript.isNoScript(null));
+    }
+
+    @Test
+    public void limitScriptsUseDistinctShas() {
+        assertNotEquals(JedisUtil.LIMIT_SCRIPT.getSha(), JedisUtil.SLIDING_LOG_SCRIPT.getSha());
+        assertNotEquals(JedisUtil.SLIDING_LOG_SCRIPT.getSha(), JedisUtil.SLIDING_COUNTER_SCRIPT.getSha());
+        assertEquals(40, JedisUtil.SLIDING_COUNTER_SCRIPT.getSha().length());
+    }
+
+    @Test
+    public void slidingScriptsReplicateCommandsBeforeWriting() {
+        //读取TIME之后再写入，脚本必须按命令复制
+        for (LuaScript script : new LuaScript[]{JedisUtil.SLIDING_LOG_SCRIPT, JedisUtil.SLIDING_COUNTER_SCRIPT}) {
+            String body = script.getScript();
+            assertTrue(body.startsWith("redis.replicate_commands()"));
+            assertTrue(body.indexOf("redis.call('time')") < body.indexOf("KEYS[1]"));
+        }
+    }
+
+    @Test
+    public void slidingCounterUsesSingleKey() {
+        //两个窗口的计数在同一个哈希中，不拼接其他key
+        String body = JedisUtil.SLIDING_COUNTER_SCRIPT.getScript();
+        assertFalse(body.contains("KEYS[1] .."));
+        assertTrue(body.contains("redis.call('hincrby', KEYS[1], field, 1)"));
+        assertTrue(body.contains("redis.call('pexpire', KEYS[1], window * 2)"));
+    }
+}